@@ -1,5 +1,6 @@
 package com.dbms.yadbms.common.serializer;
 
+import static com.dbms.yadbms.common.utils.Constants.MAX_PAGE_SIZE;
 import static com.dbms.yadbms.common.utils.Constants.PAGE_SIZE;
 
 import com.esotericsoftware.kryo.Kryo;
@@ -81,7 +82,8 @@ public final class KryoSerializer {
   }
 
   public synchronized byte[] toBytes(Object value) {
-    try (ByteBufferOutput output = new ByteBufferOutput(PAGE_SIZE)) {
+    // Values are stored in pages, so they may grow up to the largest page size.
+    try (ByteBufferOutput output = new ByteBufferOutput(PAGE_SIZE, MAX_PAGE_SIZE)) {
       kryo.writeObjectOrNull(output, value, value.getClass());
       return output.toBytes();
     }
@@ -1,7 +1,9 @@
 package com.dbms.yadbms.common.utils;
 
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -59,6 +61,51 @@ public class Channel<T> {
     }
   }
 
+  /**
+   * Gets an element from the channel, waiting at most the given time for one to arrive.
+   *
+   * @param timeout how long to wait; 0 or less only takes an element already there
+   * @param unit unit of the timeout
+   * @return the element from the channel, or null if none arrived in time
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    channelIOLock.lock();
+    try {
+      while (q.isEmpty()) {
+        if (nanos <= 0) {
+          return null;
+        }
+        nanos = notEmptyConditionVariable.awaitNanos(nanos);
+      }
+      return q.poll();
+    } finally {
+      channelIOLock.unlock();
+    }
+  }
+
+  /**
+   * Moves the elements already in the channel to a collection, without waiting for more.
+   *
+   * @param target the collection the elements are added to, in channel order
+   * @param maxElements most elements moved
+   * @return the number of elements moved
+   */
+  public int drainTo(Collection<? super T> target, int maxElements) {
+    channelIOLock.lock();
+    try {
+      int moved = 0;
+      while (moved < maxElements && !q.isEmpty()) {
+        target.add(q.poll());
+        moved++;
+      }
+      return moved;
+    } finally {
+      channelIOLock.unlock();
+    }
+  }
+
   /**
    * Checks if the channel is empty.
    *
@@ -7,13 +7,24 @@ public final class Constants {
   /** starting size of file on disk */
   public static final long DEFAULT_DB_IO_SIZE = 16;
 
-  /** size of data page in byte */
+  /** default size of data page in byte; each database file records its own in its header */
   public static final int PAGE_SIZE = 4096; // 4kB
 
+  /** smallest and largest page size a database file may use */
+  public static final int MIN_PAGE_SIZE = 1024;
+
+  public static final int MAX_PAGE_SIZE = 64 * 1024;
+
   public static final int LRU_REPLACER_K = 10;
 
+  /** number of pages a sequential table scan reads ahead of its position */
+  public static final int SCAN_READ_AHEAD_PAGES = 8;
+
+  /** number of frames a large table scan recycles instead of flooding the buffer pool */
+  public static final int SCAN_RING_SIZE = 32;
+
   public static final int INTERNAL_PAGE_SIZE = 32;
 
-  public static final int TABLE_PAGE_HEADER_SIZE = 24; // can adjust as needed
+  public static final int TABLE_PAGE_HEADER_SIZE = 8; // nextPageId(4) + tuples(2) + deleted(2)
   public static final int TUPLE_INFO_SIZE = 16 + 4 + 4; // offset(4) + size(4) + meta(16)
 }
@@ -48,6 +48,32 @@ class ChannelTest {
     }
   }
 
+  @Test
+  void testPollTimesOutWhenEmpty() throws InterruptedException {
+    Channel<Integer> channel = new Channel<>();
+    assertNull(channel.poll(0, TimeUnit.MILLISECONDS), "nothing to take without waiting");
+
+    long start = System.nanoTime();
+    assertNull(channel.poll(20, TimeUnit.MILLISECONDS));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+
+    channel.put(7);
+    assertEquals(7, channel.poll(0, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void testDrainToTakesQueuedElementsInOrder() {
+    Channel<Integer> channel = new Channel<>();
+    for (int i = 0; i < 5; i++) {
+      channel.put(i);
+    }
+    List<Integer> drained = new ArrayList<>();
+    assertEquals(3, channel.drainTo(drained, 3));
+    assertEquals(2, channel.drainTo(drained, 10));
+    assertEquals(0, channel.drainTo(drained, 10), "draining never waits");
+    assertEquals(List.of(0, 1, 2, 3, 4), drained);
+  }
+
   @Test
   void testMultipleProducersConsumers() throws Exception {
     Channel<Integer> channel = new Channel<>();
@@ -0,0 +1,39 @@
+package com.dbms.yadbms.common.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for the LatencyHistogram class. */
+class LatencyHistogramTest {
+
+  @Test
+  void testPercentilesWithinBucketPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long v = 1; v <= 1000; v++) {
+      histogram.record(v * 1000);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1_000_000, histogram.getMax());
+    assertEquals(500_500, histogram.getMean(), 0.5);
+
+    long p50 = histogram.getValueAtPercentile(50);
+    assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.125, "p50 was " + p50);
+    long p99 = histogram.getValueAtPercentile(99);
+    assertTrue(p99 >= 990_000 && p99 <= 1_000_000, "p99 was " + p99);
+    assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  void testSmallValuesAreExactAndResetClears() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(3);
+    histogram.record(-5);
+    assertEquals(0, histogram.getValueAtPercentile(50));
+    assertEquals(3, histogram.getValueAtPercentile(100));
+
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getValueAtPercentile(99));
+  }
+}
@@ -0,0 +1,84 @@
+package com.dbms.yadbms.buffer;
+
+import com.dbms.yadbms.config.PageId;
+
+/**
+ * Buffer access strategy for one bulk operation, such as a large sequential scan or a bulk load.
+ * Pages the operation faults in go to a small private ring of frames, and once the ring is full
+ * every further miss recycles the oldest ring frame instead of evicting from the shared pool. A
+ * scan much larger than the pool then only displaces a ring's worth of pages, and the hot working
+ * set of other queries stays resident.
+ *
+ * <p>Pages are routed to partitions, so the ring is split into one ring per partition. Hits are
+ * served from the shared pool as usual, and a ring frame that is pinned by someone else when its
+ * turn comes is left alone and replaced in the ring by a frame from the pool.
+ *
+ * <p>A strategy belongs to a single operation and must not be shared between threads. Obtain one
+ * from {@link BufferPoolManager#ringStrategy(int)}.
+ */
+public final class BufferAccessStrategy {
+
+  /** Ring frames per partition; null slots are not filled yet. */
+  private final FrameHeader[][] rings;
+
+  /** Page each ring frame was loaded with, to notice frames the shared pool has reused since. */
+  private final int[][] ringPages;
+
+  /** Slot of each partition's ring that the next miss recycles. */
+  private final int[] next;
+
+  /**
+   * @param ringSizes ring size of every partition, each at least 1
+   */
+  BufferAccessStrategy(int[] ringSizes) {
+    this.rings = new FrameHeader[ringSizes.length][];
+    this.ringPages = new int[ringSizes.length][];
+    this.next = new int[ringSizes.length];
+    for (int i = 0; i < ringSizes.length; i++) {
+      rings[i] = new FrameHeader[ringSizes[i]];
+      ringPages[i] = new int[ringSizes[i]];
+    }
+  }
+
+  /**
+   * Advances the partition's ring and returns the frame in the new slot, provided it still holds
+   * the page this strategy loaded into it. Caller must hold the partition latch.
+   *
+   * @param partition index of the partition
+   * @return the frame to recycle, or null if the slot is empty or its frame was reused since
+   */
+  FrameHeader advance(int partition) {
+    FrameHeader[] ring = rings[partition];
+    int slot = (next[partition] + 1) % ring.length;
+    next[partition] = slot;
+    FrameHeader frame = ring[slot];
+    if (frame == null) {
+      return null;
+    }
+    PageId held = frame.getPageId();
+    return held != null && held.getValue() == ringPages[partition][slot] ? frame : null;
+  }
+
+  /**
+   * Records the frame a page is being loaded into in the current slot of the partition's ring.
+   *
+   * @param partition index of the partition
+   * @param frame the frame now used by this strategy
+   * @param pageId the page loaded into it
+   */
+  void remember(int partition, FrameHeader frame, PageId pageId) {
+    rings[partition][next[partition]] = frame;
+    ringPages[partition][next[partition]] = pageId.getValue();
+  }
+
+  /**
+   * @return total number of frames the strategy may cycle through
+   */
+  public int getRingSize() {
+    int size = 0;
+    for (FrameHeader[] ring : rings) {
+      size += ring.length;
+    }
+    return size;
+  }
+}
@@ -1,195 +1,552 @@
 package com.dbms.yadbms.buffer;
 
-import static com.dbms.yadbms.common.utils.Constants.LRU_REPLACER_K;
-
-import com.dbms.yadbms.buffer.replacer.LRUKReplacer;
 import com.dbms.yadbms.common.exceptions.DBException;
 import com.dbms.yadbms.common.exceptions.ErrorType;
+import com.dbms.yadbms.config.BufferPoolConfig;
 import com.dbms.yadbms.config.FrameId;
 import com.dbms.yadbms.config.PageId;
 import com.dbms.yadbms.storage.disk.DiskManager;
-import com.dbms.yadbms.storage.disk.DiskRequest;
 import com.dbms.yadbms.storage.disk.DiskScheduler;
+import com.dbms.yadbms.storage.disk.StorageBackend;
 import com.dbms.yadbms.storage.page.ReadPageGuard;
 import com.dbms.yadbms.storage.page.WritePageGuard;
-import java.util.*;
-import java.util.concurrent.locks.ReentrantLock;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * BufferPoolManager caches disk pages in memory frames. The pool can be split into partitions:
+ * each page id hashes to exactly one partition, and every partition has its own page table, free
+ * list, replacer and latch, so accesses to pages of different partitions never contend.
+ */
 @Slf4j
 public class BufferPoolManager {
-  private final int numFrames;
+  /** Optimistic attempts at a page read before falling back to a latched read. */
+  private static final int OPTIMISTIC_ATTEMPTS = 3;
 
-  private final DiskManager diskManager;
+  /** One in this many optimistic reads refreshes the page's recency in the replacer. */
+  private static final int OPTIMISTIC_TOUCH_INTERVAL = 64;
 
-  private final int kDistance = LRU_REPLACER_K;
+  /** Frames currently in use; {@link #resize} changes it. */
+  private volatile int numFrames;
 
-  private final ReentrantLock bpmLock;
+  /** Most frames the pool can grow to. */
+  private final int maxFrames;
 
-  private PageId nextPageId;
+  private final DiskManager diskManager;
 
-  private final List<FrameHeader> frames;
+  /** Size of every frame, taken from the database file. */
+  @Getter private final int pageSize;
 
-  private final Map<PageId, FrameId> pageTable;
+  private final AtomicInteger nextPageId;
 
-  private final Queue<FrameId> freeFrames;
+  private final List<FrameHeader> frames;
 
-  private final LRUKReplacer replacer;
+  private final BufferPoolPartition[] partitions;
 
   private final DiskScheduler diskScheduler;
 
+  /** Background writer keeping frames clean ahead of eviction; null when disabled. */
+  private final PageCleaner pageCleaner;
+
+  @Getter private final BufferPoolMetrics metrics;
+
+  /** Where the resident page list is saved; null when warm-up is disabled. */
+  private final Path warmupFile;
+
+  /** Saves the resident page list periodically; null when it is only saved at shut down. */
+  private final ScheduledExecutorService warmupSaver;
+
   public BufferPoolManager(int numFrames, DiskManager diskManager) {
+    this(numFrames, diskManager, BufferPoolConfig.builder().build());
+  }
+
+  /**
+   * @param numFrames total number of frames in the pool
+   * @param diskManager the disk manager backing the pool
+   * @param numPartitions number of independently latched partitions, between 1 and numFrames
+   */
+  public BufferPoolManager(int numFrames, DiskManager diskManager, int numPartitions) {
+    this(numFrames, diskManager, BufferPoolConfig.builder().numPartitions(numPartitions).build());
+  }
+
+  /**
+   * @param numFrames total number of frames in the pool
+   * @param diskManager the disk manager backing the pool
+   * @param config partitioning, memory and sizing options of the pool
+   */
+  public BufferPoolManager(int numFrames, DiskManager diskManager, BufferPoolConfig config) {
+    int numPartitions = config.getNumPartitions();
+    if (numPartitions < 1 || numPartitions > numFrames) {
+      throw new DBException(
+          ErrorType.INVALID_ARGUMENT,
+          "numPartitions must be in [1, " + numFrames + "], got " + numPartitions);
+    }
+    int maxFrames = config.getMaxFrames() == 0 ? numFrames : config.getMaxFrames();
+    if (maxFrames < numFrames) {
+      throw new DBException(
+          ErrorType.INVALID_ARGUMENT,
+          "maxFrames must be at least numFrames " + numFrames + ", got " + maxFrames);
+    }
     this.numFrames = numFrames;
+    this.maxFrames = maxFrames;
     this.diskManager = diskManager;
-    this.bpmLock = new ReentrantLock();
-    this.nextPageId = PageId.store(0);
-    this.frames = new ArrayList<>(numFrames);
-    this.pageTable = new HashMap<>(numFrames);
-    this.freeFrames = new ArrayDeque<>(0);
+    this.pageSize = diskManager.getPageSize();
+    this.nextPageId = new AtomicInteger(0);
+    this.frames = new ArrayList<>(maxFrames);
+
+    // Frames get their memory from the partition as they come into use. Direct I/O transfers
+    // straight from frame memory, so it always gets aligned off-heap frames.
+    boolean offHeap = config.isOffHeap() || diskManager.getBackend() == StorageBackend.DIRECT;
+    FrameArena arena = offHeap ? new FrameArena(maxFrames, pageSize) : null;
+    IntFunction<ByteBuffer> bufferFactory =
+        arena == null ? i -> ByteBuffer.allocate(pageSize) : arena::slice;
+    for (int i = 0; i < maxFrames; i++) {
+      frames.add(new FrameHeader(FrameId.store(i), null));
+    }
 
-    for (int i = 0; i < numFrames; i++) {
-      frames.add(new FrameHeader(FrameId.store(i)));
-      freeFrames.add(FrameId.store(i));
+    this.diskScheduler =
+        new DiskScheduler(
+            diskManager,
+            config.getDiskWorkers(),
+            config.getGroupCommitMaxWrites(),
+            config.getGroupCommitDelayMicros());
+    this.metrics = new BufferPoolMetrics(this::freeFrameCount, this::pinnedFrameCount);
+
+    // Spread frames evenly; the first (numFrames % numPartitions) partitions get one extra.
+    this.partitions = new BufferPoolPartition[numPartitions];
+    int firstFrame = 0;
+    for (int i = 0; i < numPartitions; i++) {
+      int rangeFrames = share(maxFrames, i, numPartitions);
+      partitions[i] =
+          new BufferPoolPartition(
+              i,
+              frames,
+              firstFrame,
+              rangeFrames,
+              share(numFrames, i, numPartitions),
+              bufferFactory,
+              diskScheduler,
+              config.getReplacer(),
+              metrics);
+      firstFrame += rangeFrames;
     }
 
-    this.replacer = new LRUKReplacer(numFrames);
-    this.diskScheduler = new DiskScheduler(diskManager);
+    this.pageCleaner =
+        config.getCleanerWatermark() > 0
+            ? new PageCleaner(
+                partitions,
+                diskManager,
+                diskScheduler,
+                metrics,
+                config.getCleanerWatermark(),
+                config.getCleanerBatchSize(),
+                config.getCleanerIntervalMillis())
+            : null;
+
+    this.warmupFile = config.getWarmupFile();
+    this.warmupSaver =
+        warmupFile != null && config.getWarmupIntervalMillis() > 0
+            ? startWarmupSaver(config.getWarmupIntervalMillis())
+            : null;
+    if (warmupFile != null && Files.exists(warmupFile)) {
+      try {
+        log.info("Prewarming {} pages", prewarm(warmupFile));
+      } catch (DBException e) {
+        log.error("Prewarm from {} failed: {}", warmupFile, e.getMessage());
+      }
+    }
   }
 
-  public int size() {
-    return numFrames;
+  private ScheduledExecutorService startWarmupSaver(long intervalMillis) {
+    ScheduledExecutorService saver =
+        Executors.newSingleThreadScheduledExecutor(
+            task -> {
+              Thread thread = new Thread(task, "BufferPool-WarmupSaver-Thread");
+              thread.setDaemon(true);
+              return thread;
+            });
+    saver.scheduleWithFixedDelay(
+        () -> {
+          try {
+            saveResidentPages(warmupFile);
+          } catch (DBException e) {
+            log.error("Saving resident pages to {} failed: {}", warmupFile, e.getMessage());
+          }
+        },
+        intervalMillis,
+        intervalMillis,
+        TimeUnit.MILLISECONDS);
+    return saver;
   }
 
-  public Optional<ReadPageGuard> checkedReadPage(PageId pageId) {
-    bpmLock.lock();
-    try {
-      // Case 1: already resident
-      FrameId frameId = pageTable.get(pageId);
-      if (frameId != null) {
-        touchForUse(frameId);
-        return Optional.of(
-            new ReadPageGuard(
-                frames.get(frameId.getValue()), pageId, bpmLock, replacer, diskScheduler));
+  /**
+   * Stops the background threads of the pool, writing resident dirty pages back with one {@link
+   * #flushAllPages} pass and saving the resident page list if warm-up is enabled. No page guard may
+   * be held while the pool shuts down.
+   */
+  public void shutDown() {
+    if (warmupSaver != null) {
+      warmupSaver.shutdown();
+      try {
+        warmupSaver.awaitTermination(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
       }
+    }
+    if (pageCleaner != null) {
+      pageCleaner.shutDown();
+    }
+    try {
+      flushAllPages();
+    } catch (DBException e) {
+      log.error("Flushing dirty pages at shut down failed: {}", e.getMessage());
+    }
+    if (warmupFile != null) {
+      saveResidentPages(warmupFile);
+    }
+    diskScheduler.shutDown();
+  }
 
-      // Case 2: need a frame (free or evicted), then read from disk
-      Optional<FrameId> acquiredFrameId = acquireFrameId();
-      if (acquiredFrameId.isEmpty()) return Optional.empty();
-
-      FrameId fid = acquiredFrameId.get();
-      FrameHeader frameHeader = frames.get(fid.getValue());
+  /**
+   * Write every dirty page back to disk, as fast as the disk allows. See {@link #checkpoint}.
+   *
+   * @return number of pages written
+   */
+  public int flushAllPages() {
+    return checkpoint(0);
+  }
 
-      // Bring page from disk into this frame
-      DiskRequest read =
-          DiskRequest.builder().isWrite(false).pageId(pageId).data(frameHeader.getData()).build();
-      diskScheduler.schedule(read);
+  /**
+   * Checkpoint the pool: write the pages that are dirty when the call starts back to disk, sorted
+   * by file offset and in batches of adjacent pages, and sync the file once at the end. Pages stay
+   * readable meanwhile; the caller must not hold a write guard, as writers are waited for.
+   *
+   * @param maxBytesPerSecond target write rate so a checkpoint leaves room for foreground I/O, or 0
+   *     for no limit
+   * @return number of pages written
+   */
+  public int checkpoint(long maxBytesPerSecond) {
+    if (maxBytesPerSecond < 0) {
+      throw new DBException(
+          ErrorType.INVALID_ARGUMENT,
+          "maxBytesPerSecond must not be negative, got " + maxBytesPerSecond);
+    }
+    return new Checkpoint(partitions, diskManager, metrics, maxBytesPerSecond).run();
+  }
 
-      frameHeader.setPageId(pageId);
-      frameHeader.clearDirty();
-      pageTable.put(pageId, fid);
-      touchForUse(fid);
+  public int size() {
+    return numFrames;
+  }
 
-      return Optional.of(new ReadPageGuard(frameHeader, pageId, bpmLock, replacer, diskScheduler));
-    } finally {
-      bpmLock.unlock();
+  /**
+   * Grow or shrink the pool while it is in use. Growing adds frames to the free lists at once.
+   * Shrinking first stops handing out the frames that go away, then evicts them one by one as they
+   * become unpinned, writing dirty pages back, and returns when all of them are released. The
+   * calling thread must not hold page guards while shrinking, as it waits for pins to drop.
+   *
+   * @param newNumFrames new number of frames, between the number of partitions and the {@code
+   *     maxFrames} the pool was configured with
+   */
+  public synchronized void resize(int newNumFrames) {
+    if (newNumFrames < partitions.length || newNumFrames > maxFrames) {
+      throw new DBException(
+          ErrorType.INVALID_ARGUMENT,
+          "Pool size must be in [" + partitions.length + ", " + maxFrames + "], got "
+              + newNumFrames);
+    }
+    for (int i = 0; i < partitions.length; i++) {
+      partitions[i].resize(share(newNumFrames, i, partitions.length));
     }
+    numFrames = newNumFrames;
   }
 
-  public Optional<WritePageGuard> checkedPageWrite(PageId pageId) {
-    bpmLock.lock();
-    try {
-      // Case 1: already resident
-      FrameId frameId = pageTable.get(pageId);
-      if (frameId != null) {
-        touchForUse(frameId);
-        return Optional.of(
-            new WritePageGuard(
-                frames.get(frameId.getValue()), pageId, bpmLock, replacer, diskScheduler));
+  /** Frames partition {@code i} gets out of {@code total}; the first partitions take the rest. */
+  private static int share(int total, int i, int numPartitions) {
+    return total / numPartitions + (i < total % numPartitions ? 1 : 0);
+  }
+
+  public int getNumPartitions() {
+    return partitions.length;
+  }
+
+  /**
+   * Read a page without latching or pinning it. The reader is applied to the frame bytes of a
+   * resident page while writers may be changing them, and its result is only returned if the frame
+   * was neither written to nor reused meanwhile; otherwise it is retried, and after a few failed
+   * attempts, or if the page is not resident, being written or being evicted, the page is read
+   * under a shared latch instead. Concurrent optimistic readers of a page therefore write no shared
+   * memory.
+   *
+   * <p>The reader may see a torn page on a failed attempt, so it must not have side effects, must
+   * stay within bounds on garbage input, and anything it throws is treated as a failed attempt.
+   *
+   * @param pageId the page to read
+   * @param reader computes the result from the page bytes, e.g. a lookup in a page view
+   * @return the result of the reader on a consistent image of the page
+   */
+  public <T> T readOptimistically(PageId pageId, Function<ByteBuffer, T> reader) {
+    BufferPoolPartition partition = partitionOf(pageId);
+    for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+      FrameHeader frame = partition.residentFrame(pageId.getValue());
+      if (frame == null) {
+        break;
+      }
+      long stamp = frame.tryOptimisticRead();
+      if (stamp == 0) {
+        break; // a writer holds the page; wait for it on the latch
+      }
+      long version = frame.getVersion();
+      if ((version & 1) != 0 || frame.getPinCount() < 0) {
+        break; // being evicted or loaded; the latched read waits for that
+      }
+      ByteBuffer buffer = frame.getBuffer();
+      if (!holds(frame, pageId) || buffer == null) {
+        continue;
       }
+      T result;
+      try {
+        result = reader.apply(buffer);
+      } catch (RuntimeException e) {
+        if (frame.validate(stamp, version) && holds(frame, pageId)) {
+          throw e; // a consistent page, so the reader itself failed
+        }
+        continue;
+      }
+      if (frame.validate(stamp, version) && holds(frame, pageId)) {
+        metrics.recordHit();
+        if (ThreadLocalRandom.current().nextInt(OPTIMISTIC_TOUCH_INTERVAL) == 0) {
+          partition.touchResident(frame, pageId.getValue());
+        }
+        return result;
+      }
+    }
+    try (ReadPageGuard guard = readPage(pageId)) {
+      return guard.getDataAs(reader);
+    }
+  }
 
-      // Case 2: need a frame, then read existing page from disk
-      Optional<FrameId> acquiredFrameId = acquireFrameId();
-      if (acquiredFrameId.isEmpty()) return Optional.empty();
+  private static boolean holds(FrameHeader frame, PageId pageId) {
+    PageId held = frame.getPageId();
+    return held != null && held.getValue() == pageId.getValue();
+  }
 
-      FrameId fid = acquiredFrameId.get();
-      FrameHeader frameHeader = frames.get(fid.getValue());
+  public Optional<ReadPageGuard> checkedReadPage(PageId pageId) {
+    return checkedReadPage(pageId, null);
+  }
 
-      DiskRequest read =
-          DiskRequest.builder().isWrite(false).pageId(pageId).data(frameHeader.getData()).build();
-      diskScheduler.schedule(read);
+  /**
+   * @param pageId the page to read
+   * @param strategy access strategy of a bulk operation, or null to use the shared pool
+   */
+  public Optional<ReadPageGuard> checkedReadPage(PageId pageId, BufferAccessStrategy strategy) {
+    return Optional.ofNullable(tryReadPage(pageId.getValue(), strategy));
+  }
 
-      frameHeader.setPageId(pageId);
-      frameHeader.clearDirty();
-      pageTable.put(pageId, fid);
-      touchForUse(fid);
+  /** Pin the page and guard it for reading; null if every frame of its partition is pinned. */
+  private ReadPageGuard tryReadPage(int pageId, BufferAccessStrategy strategy) {
+    BufferPoolPartition partition = partitionOf(pageId);
+    FrameHeader frame = partition.pinFrame(pageId, strategy);
+    // The frame latch is taken outside the partition latch so a blocked reader never stalls it.
+    return frame == null
+        ? null
+        : ReadPageGuard.acquire(
+            frame, partition.getLatch(), partition.getReplacer(), diskScheduler);
+  }
 
-      return Optional.of(new WritePageGuard(frameHeader, pageId, bpmLock, replacer, diskScheduler));
-    } finally {
-      bpmLock.unlock();
-    }
+  public Optional<WritePageGuard> checkedPageWrite(PageId pageId) {
+    return checkedPageWrite(pageId, null);
   }
 
-  /** Allocate a brand-new, zeroed page and return a write guard pinned to it. */
-  public PageId newPage() {
-    bpmLock.lock();
-    try {
-      Optional<FrameId> acquireFrameId = acquireFrameId();
-      if (acquireFrameId.isEmpty()) {
-        log.error("All frames pinned; can't allocate new page");
-        System.exit(1);
-      }
+  /**
+   * @param pageId the page to write
+   * @param strategy access strategy of a bulk operation, or null to use the shared pool
+   */
+  public Optional<WritePageGuard> checkedPageWrite(PageId pageId, BufferAccessStrategy strategy) {
+    return Optional.ofNullable(tryWritePage(pageId.getValue(), strategy));
+  }
 
-      FrameId fid = acquireFrameId.get();
-      FrameHeader frameHeader = frames.get(fid.getValue());
+  /** Pin the page and guard it for writing; null if every frame of its partition is pinned. */
+  private WritePageGuard tryWritePage(int pageId, BufferAccessStrategy strategy) {
+    BufferPoolPartition partition = partitionOf(pageId);
+    FrameHeader frame = partition.pinFrame(pageId, strategy);
+    return frame == null
+        ? null
+        : WritePageGuard.acquire(
+            frame, partition.getLatch(), partition.getReplacer(), diskScheduler);
+  }
 
-      // Assign fresh PageId (increment AFTER using current value)
-      PageId newPid = nextPageId;
-      nextPageId = PageId.store(newPid.getValue() + 1);
+  /**
+   * Hint that the pages will be read soon. Pages not yet resident are read in the background into
+   * free or evictable frames, unpinned, so a later {@link #readPage} finds them in memory or waits
+   * only for the read already under way. Hints that find no frame to spare are dropped.
+   *
+   * @param pageIds the pages to read ahead
+   * @return the number of reads issued
+   */
+  public int prefetch(PageId... pageIds) {
+    return prefetch(null, pageIds);
+  }
 
-      // Zero the frame; no disk I/O needed yet
-      Arrays.fill(frameHeader.getData(), (byte) 0);
-      frameHeader.setPageId(newPid);
-      frameHeader.clearDirty();
-      frameHeader.setPinCount(0); // guard constructors will raise pin to 1
+  /**
+   * Read ahead on behalf of a bulk operation, into its ring rather than the shared pool.
+   *
+   * @param strategy access strategy of the operation, or null to use the shared pool
+   * @param pageIds the pages to read ahead
+   * @return the number of reads issued
+   */
+  public int prefetch(BufferAccessStrategy strategy, PageId... pageIds) {
+    int issued = 0;
+    for (PageId pageId : pageIds) {
+      if (partitionOf(pageId).prefetch(pageId, strategy)) {
+        issued++;
+      }
+    }
+    return issued;
+  }
 
-      pageTable.put(newPid, fid);
-      touchForUse(fid);
+  /**
+   * Lists the resident pages, most valuable first by the replacement policy. Partitions are
+   * interleaved rank by rank, so any prefix of the list is spread over all of them.
+   *
+   * @return the resident pages, hottest first
+   */
+  public List<PageId> residentPages() {
+    List<List<PageId>> perPartition = new ArrayList<>(partitions.length);
+    int longest = 0;
+    for (BufferPoolPartition partition : partitions) {
+      List<PageId> hottest = partition.residentPagesHottestFirst();
+      perPartition.add(hottest);
+      longest = Math.max(longest, hottest.size());
+    }
+    List<PageId> merged = new ArrayList<>();
+    for (int rank = 0; rank < longest; rank++) {
+      for (List<PageId> hottest : perPartition) {
+        if (rank < hottest.size()) {
+          merged.add(hottest.get(rank));
+        }
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Save the list of resident pages, hottest first, so a later pool can {@link #prewarm} from it.
+   * The file is replaced atomically.
+   *
+   * @param file where to save the list
+   */
+  public void saveResidentPages(Path file) {
+    WarmupFile.write(file, residentPages());
+  }
 
-      return newPid;
-    } finally {
-      bpmLock.unlock();
+  /**
+   * Read the pages of a saved list back into free frames in the background. The hottest pages that
+   * fit in the free frames of their partition are picked and the reads are issued in page id order.
+   * File offsets are not used: a disk manager reopened after a restart knows none yet, and page ids
+   * follow the order pages were first written, so the disk still sees a mostly sequential sweep. No
+   * resident page is evicted.
+   *
+   * @param file a list saved by {@link #saveResidentPages}
+   * @return the number of reads issued
+   */
+  public int prewarm(Path file) {
+    int[] room = new int[partitions.length];
+    for (int i = 0; i < partitions.length; i++) {
+      room[i] = partitions[i].freeFrameCount();
     }
+    List<PageId> chosen = new ArrayList<>();
+    Set<PageId> seen = new HashSet<>();
+    for (PageId pageId : WarmupFile.read(file)) {
+      int partition = Math.floorMod(pageId.getValue(), partitions.length);
+      if (room[partition] > 0 && seen.add(pageId)) {
+        chosen.add(pageId);
+        room[partition]--;
+      }
+    }
+    chosen.sort(Comparator.comparingInt(PageId::getValue));
+    return prefetch(chosen.toArray(new PageId[0]));
   }
 
-  /** Get a usable frame: either a free one, or evict one (flushing if needed). */
-  private Optional<FrameId> acquireFrameId() {
-    FrameId frameId = freeFrames.poll();
-    if (frameId != null) return Optional.of(frameId);
+  /**
+   * Create an access strategy for a bulk operation. Its misses recycle a private ring of about
+   * {@code ringSize} frames instead of evicting from the shared pool.
+   *
+   * @param ringSize number of frames in the ring; each partition gets at least one, and a
+   *     partition's ring never exceeds a quarter of its frames
+   * @return a strategy for a single thread
+   */
+  public BufferAccessStrategy ringStrategy(int ringSize) {
+    if (ringSize < 1) {
+      throw new DBException(
+          ErrorType.INVALID_ARGUMENT, "ringSize must be positive, got " + ringSize);
+    }
+    int[] ringSizes = new int[partitions.length];
+    int perPartition = (ringSize + partitions.length - 1) / partitions.length;
+    for (int i = 0; i < partitions.length; i++) {
+      ringSizes[i] = Math.max(1, Math.min(perPartition, partitions[i].getNumFrames() / 4));
+    }
+    return new BufferAccessStrategy(ringSizes);
+  }
 
-    Optional<FrameId> evicted = replacer.evict();
-    if (evicted.isEmpty()) return Optional.empty();
-    FrameId victimId = evicted.get();
-    FrameHeader victim = frames.get(victimId.getValue());
-    flushIfDirty(victim);
+  /** Allocate a brand-new, zeroed page and make it resident in its partition. */
+  public PageId newPage() {
+    return newPage(null);
+  }
 
-    pageTable.remove(victim.getPageId());
+  /**
+   * Allocate a brand-new, zeroed page on behalf of a bulk operation such as a bulk load.
+   *
+   * @param strategy access strategy of the operation, or null to use the shared pool
+   * @return the id of the new page
+   */
+  public PageId newPage(BufferAccessStrategy strategy) {
+    PageId newPid = PageId.store(nextPageId.getAndIncrement());
+    if (!partitionOf(newPid).installNewPage(newPid, strategy)) {
+      log.error("All frames pinned; can't allocate new page");
+      System.exit(1);
+    }
+    return newPid;
+  }
 
-    return Optional.of(victimId);
+  private int freeFrameCount() {
+    int free = 0;
+    for (BufferPoolPartition partition : partitions) {
+      free += partition.freeFrameCount();
+    }
+    return free;
   }
 
-  /** Flush a dirty frame to disk. Caller must hold bpmLock. */
-  private void flushIfDirty(FrameHeader fh) {
-    if (!fh.isDirty()) return;
-    DiskRequest flushRequest =
-        DiskRequest.builder().isWrite(true).pageId(fh.getPageId()).data(fh.getData()).build();
-    diskScheduler.schedule(flushRequest);
-    fh.clearDirty();
+  private int pinnedFrameCount() {
+    int pinned = 0;
+    for (BufferPoolPartition partition : partitions) {
+      pinned += partition.pinnedFrameCount();
+    }
+    return pinned;
   }
 
-  /** Common “touch” when a frame is (re)used. */
-  private void touchForUse(FrameId frameId) {
-    replacer.recordAccess(frameId);
-    replacer.setEvictable(frameId, false);
+  /** The partition a page hashes to. */
+  private BufferPoolPartition partitionOf(PageId pageId) {
+    return partitionOf(pageId.getValue());
+  }
+
+  private BufferPoolPartition partitionOf(int pageId) {
+    return partitions[Math.floorMod(pageId, partitions.length)];
   }
 
   /**
@@ -201,11 +558,40 @@ public class BufferPoolManager {
    * @return WritePageGuard A page guard ensuring exclusive and mutable access to a page's data.
    */
   public WritePageGuard writePage(PageId pageId) {
-    Optional<WritePageGuard> writePageGuard = checkedPageWrite(pageId);
-    if (writePageGuard.isEmpty()) {
+    return writePage(pageId, null);
+  }
+
+  /**
+   * @param pageId the page to write
+   * @param strategy access strategy of a bulk operation, or null to use the shared pool
+   * @return a guard with exclusive access to the page
+   */
+  public WritePageGuard writePage(PageId pageId, BufferAccessStrategy strategy) {
+    return writePage(pageId.getValue(), strategy);
+  }
+
+  /**
+   * Guard a page for writing by its raw id. Fetching a resident page this way allocates nothing:
+   * guards are recycled per thread once dropped, so a guard must not be used after it is closed.
+   *
+   * @param pageId the page to write
+   * @return a guard with exclusive access to the page
+   */
+  public WritePageGuard writePage(int pageId) {
+    return writePage(pageId, null);
+  }
+
+  /**
+   * @param pageId the page to write
+   * @param strategy access strategy of a bulk operation, or null to use the shared pool
+   * @return a guard with exclusive access to the page
+   */
+  public WritePageGuard writePage(int pageId, BufferAccessStrategy strategy) {
+    WritePageGuard guard = tryWritePage(pageId, strategy);
+    if (guard == null) {
       throw new DBException(ErrorType.IO_ERROR, "Write page failed for pageId " + pageId);
     }
-    return writePageGuard.get();
+    return guard;
   }
 
   /**
@@ -216,10 +602,39 @@ public class BufferPoolManager {
    * @return ReadPageGuard A page guard ensuring shared and read-only access to a page's data.
    */
   public ReadPageGuard readPage(PageId pageId) {
-    Optional<ReadPageGuard> readPageGuard = checkedReadPage(pageId);
-    if (readPageGuard.isEmpty()) {
+    return readPage(pageId, null);
+  }
+
+  /**
+   * @param pageId the page to read
+   * @param strategy access strategy of a bulk operation, or null to use the shared pool
+   * @return a guard with shared access to the page
+   */
+  public ReadPageGuard readPage(PageId pageId, BufferAccessStrategy strategy) {
+    return readPage(pageId.getValue(), strategy);
+  }
+
+  /**
+   * Guard a page for reading by its raw id. Fetching a resident page this way allocates nothing:
+   * guards are recycled per thread once dropped, so a guard must not be used after it is closed.
+   *
+   * @param pageId the page to read
+   * @return a guard with shared access to the page
+   */
+  public ReadPageGuard readPage(int pageId) {
+    return readPage(pageId, null);
+  }
+
+  /**
+   * @param pageId the page to read
+   * @param strategy access strategy of a bulk operation, or null to use the shared pool
+   * @return a guard with shared access to the page
+   */
+  public ReadPageGuard readPage(int pageId, BufferAccessStrategy strategy) {
+    ReadPageGuard guard = tryReadPage(pageId, strategy);
+    if (guard == null) {
       throw new DBException(ErrorType.IO_ERROR, "Read page failed for pageId " + pageId);
     }
-    return readPageGuard.get();
+    return guard;
   }
 }
@@ -0,0 +1,179 @@
+package com.dbms.yadbms.buffer;
+
+import com.dbms.yadbms.common.utils.LatencyHistogram;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters and latency distributions of one buffer pool, obtained from {@link
+ * BufferPoolManager#getMetrics()}. They are cheap enough to be always on: counters are striped
+ * {@link LongAdder}s, the hot path of a hit only increments one, and clocks are read only on
+ * misses, flushes and contended latches.
+ *
+ * <p>Values are read without stopping the pool, so a set of readings taken together may be
+ * slightly inconsistent with each other.
+ */
+public final class BufferPoolMetrics {
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  private final LongAdder dirtyEvictions = new LongAdder();
+
+  private final LongAdder pinWaits = new LongAdder();
+
+  private final LongAdder latchWaits = new LongAdder();
+
+  private final LongAdder latchWaitNanos = new LongAdder();
+
+  private final LatencyHistogram faultLatency = new LatencyHistogram();
+
+  private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+  private final IntSupplier freeFrames;
+
+  private final IntSupplier pinnedFrames;
+
+  /**
+   * @param freeFrames counts the frames holding no page
+   * @param pinnedFrames counts the frames currently pinned
+   */
+  BufferPoolMetrics(IntSupplier freeFrames, IntSupplier pinnedFrames) {
+    this.freeFrames = freeFrames;
+    this.pinnedFrames = pinnedFrames;
+  }
+
+  void recordHit() {
+    hits.increment();
+  }
+
+  void recordMiss() {
+    misses.increment();
+  }
+
+  void recordEviction(boolean dirty) {
+    evictions.increment();
+    if (dirty) {
+      dirtyEvictions.increment();
+    }
+  }
+
+  void recordPinWait() {
+    pinWaits.increment();
+  }
+
+  void recordLatchWait(long nanos) {
+    latchWaits.increment();
+    latchWaitNanos.add(nanos);
+  }
+
+  void recordFault(long nanos) {
+    faultLatency.record(nanos);
+  }
+
+  void recordFlush(long nanos) {
+    flushLatency.record(nanos);
+  }
+
+  /** Requests for a page that found it resident. */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /** Requests for a page that had to read it from disk. Read-ahead is not counted. */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * @return share of page requests served from memory, or 0 before the first request
+   */
+  public double getHitRatio() {
+    long hit = hits.sum();
+    long total = hit + misses.sum();
+    return total == 0 ? 0 : (double) hit / total;
+  }
+
+  /** Pages evicted to make room for another page, by any path. */
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /** Evictions that had to write the victim back first. */
+  public long getDirtyEvictions() {
+    return dirtyEvictions.sum();
+  }
+
+  public long getCleanEvictions() {
+    return getEvictions() - getDirtyEvictions();
+  }
+
+  /** Requests that waited for another thread's read or write-back of the same page. */
+  public long getPinWaits() {
+    return pinWaits.sum();
+  }
+
+  /** Partition latch acquisitions that found the latch held and had to block. */
+  public long getLatchWaits() {
+    return latchWaits.sum();
+  }
+
+  /** Total time spent blocked on partition latches, in nanoseconds. */
+  public long getLatchWaitNanos() {
+    return latchWaitNanos.sum();
+  }
+
+  /** Frames holding no page right now. */
+  public int getFreeFrames() {
+    return freeFrames.getAsInt();
+  }
+
+  /** Frames pinned by at least one guard or background task right now. */
+  public int getPinnedFrames() {
+    return pinnedFrames.getAsInt();
+  }
+
+  /** Time from the start of a miss until the page is usable, write-back of a victim included. */
+  public LatencyHistogram getFaultLatency() {
+    return faultLatency;
+  }
+
+  /** Time of page writes issued by the pool: victim write-backs and page cleaner writes. */
+  public LatencyHistogram getFlushLatency() {
+    return flushLatency;
+  }
+
+  /** Clears the counters and histograms; the frame counts are live and stay as they are. */
+  public void reset() {
+    hits.reset();
+    misses.reset();
+    evictions.reset();
+    dirtyEvictions.reset();
+    pinWaits.reset();
+    latchWaits.reset();
+    latchWaitNanos.reset();
+    faultLatency.reset();
+    flushLatency.reset();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "hits=%d misses=%d hitRatio=%.3f evictions=%d (dirty %d) pinWaits=%d latchWaits=%d"
+            + " (%dns) free=%d pinned=%d fault[%s] flush[%s]",
+        getHits(),
+        getMisses(),
+        getHitRatio(),
+        getEvictions(),
+        getDirtyEvictions(),
+        getPinWaits(),
+        getLatchWaits(),
+        getLatchWaitNanos(),
+        getFreeFrames(),
+        getPinnedFrames(),
+        faultLatency,
+        flushLatency);
+  }
+}
@@ -0,0 +1,841 @@
+package com.dbms.yadbms.buffer;
+
+import com.dbms.yadbms.buffer.replacer.Replacer;
+import com.dbms.yadbms.buffer.replacer.ReplacerType;
+import com.dbms.yadbms.common.exceptions.DBException;
+import com.dbms.yadbms.common.exceptions.ErrorType;
+import com.dbms.yadbms.config.FrameId;
+import com.dbms.yadbms.config.PageId;
+import com.dbms.yadbms.storage.disk.DiskRequest;
+import com.dbms.yadbms.storage.disk.DiskScheduler;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import lombok.Getter;
+
+/**
+ * One independently latched slice of the buffer pool. A partition owns a contiguous range of
+ * frames together with its own page table, free list, replacer and latch, so page accesses that
+ * hash to different partitions never contend.
+ *
+ * <p>Only the first {@link #getNumFrames()} frames of the range are in use. The pool can resize a
+ * partition at runtime: growing gives the next frames of the range memory and puts them on the
+ * free list, shrinking retires the last ones, writing back and releasing each as it becomes
+ * unpinned.
+ */
+class BufferPoolPartition {
+  /** Pause between two passes of a shrink over frames that were still pinned. */
+  private static final long RETIRE_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Getter private final ReentrantLock latch;
+
+  /** Position of this partition in the pool, used to find its ring in an access strategy. */
+  private final int index;
+
+  /** All frames of the pool; this partition only touches the ones it owns. */
+  private final List<FrameHeader> frames;
+
+  private final int firstFrame;
+
+  /** Size of the frame range, the most frames the partition can grow to. */
+  private final int maxFrames;
+
+  /** Frames in use, from the start of the range; frames past it are retired or being retired. */
+  @Getter private volatile int numFrames;
+
+  /** Allocates the page buffer of a frame, by frame id, as it comes into use. */
+  private final IntFunction<ByteBuffer> bufferFactory;
+
+  private final PageTable pageTable;
+
+  private final Queue<FrameId> freeFrames;
+
+  @Getter private final Replacer replacer;
+
+  private final DiskScheduler diskScheduler;
+
+  private final BufferPoolMetrics metrics;
+
+  /**
+   * Pages with disk I/O in progress: being faulted in, or evicted dirty and not yet written back.
+   * Guarded by the latch; requesters of such a page wait on its future and then retry.
+   */
+  private final Map<Integer, CompletableFuture<Void>> inFlight;
+
+  /**
+   * @param index position of this partition in the pool
+   * @param frames all frames of the pool
+   * @param firstFrame id of the first frame owned by this partition
+   * @param maxFrames number of consecutive frames owned by this partition
+   * @param numFrames number of those in use at first
+   * @param bufferFactory allocates the page buffer of a frame as it comes into use
+   * @param diskScheduler scheduler used to fault pages in and to flush victims
+   * @param replacerType replacement policy for the partition's frames
+   * @param metrics counters of the pool, shared by all its partitions
+   */
+  BufferPoolPartition(
+      int index,
+      List<FrameHeader> frames,
+      int firstFrame,
+      int maxFrames,
+      int numFrames,
+      IntFunction<ByteBuffer> bufferFactory,
+      DiskScheduler diskScheduler,
+      ReplacerType replacerType,
+      BufferPoolMetrics metrics) {
+    this.latch = new ReentrantLock();
+    this.index = index;
+    this.frames = frames;
+    this.firstFrame = firstFrame;
+    this.maxFrames = maxFrames;
+    this.numFrames = numFrames;
+    this.bufferFactory = bufferFactory;
+    this.pageTable = new PageTable(numFrames);
+    this.freeFrames = new ArrayDeque<>(numFrames);
+    for (int i = firstFrame; i < firstFrame + numFrames; i++) {
+      frames.get(i).attach(bufferFactory.apply(i));
+      freeFrames.add(FrameId.store(i));
+    }
+    this.replacer = replacerType.create(firstFrame, maxFrames);
+    this.diskScheduler = diskScheduler;
+    this.metrics = metrics;
+    this.inFlight = new HashMap<>();
+  }
+
+  /**
+   * Find the frame holding the page, bringing it in from disk if needed, and pin it so it cannot be
+   * evicted before the caller's guard is built.
+   *
+   * <p>A miss reserves a frame under the partition latch and performs the disk I/O without it, so
+   * hits and misses on other pages proceed meanwhile. Concurrent requesters for a page that is
+   * being loaded wait on the loader's future instead of reading it a second time.
+   *
+   * <p>A hit neither takes the partition latch nor allocates; it only records the access under the
+   * replacer's monitor. Releasing the page takes the partition latch only when its last pin goes.
+   *
+   * @param pageNumber the page to pin
+   * @param strategy ring to recycle on a miss, or null to use the shared pool
+   * @return the pinned frame, or null if every frame of the partition is pinned
+   */
+  FrameHeader pinFrame(int pageNumber, BufferAccessStrategy strategy) {
+    while (true) {
+      // Fast path: a resident page is found and pinned without the partition latch.
+      FrameHeader resident = tryPinResident(pageNumber);
+      if (resident != null) {
+        metrics.recordHit();
+        return resident;
+      }
+
+      PageId pageId = PageId.store(pageNumber);
+      FrameHeader frameHeader;
+      CompletableFuture<Void> load;
+      long faultStart = 0;
+      lockLatch();
+      try {
+        // Case 1: already resident (loaded meanwhile, or the fast path lost a race)
+        int frameId = pageTable.get(pageId.getValue());
+        if (frameId != PageTable.NOT_FOUND) {
+          FrameHeader cached = frames.get(frameId);
+          cached.pin();
+          touchForUse(cached);
+          metrics.recordHit();
+          return cached;
+        }
+
+        // Case 2: another thread is loading the page, or still writing it back; wait for it.
+        CompletableFuture<Void> pending = inFlight.get(pageId.getValue());
+        if (pending == null) {
+          // Case 3: reserve a frame (free or evicted) and load the page into it ourselves.
+          faultStart = System.nanoTime();
+          Optional<FrameHeader> reserved = reserveFrame(pageId, strategy);
+          if (reserved.isEmpty()) return null;
+          metrics.recordMiss();
+          frameHeader = reserved.get();
+          load = new CompletableFuture<>();
+          inFlight.put(pageId.getValue(), load);
+        } else {
+          frameHeader = null;
+          load = pending;
+        }
+      } finally {
+        latch.unlock();
+      }
+
+      if (frameHeader == null) {
+        metrics.recordPinWait();
+        awaitQuietly(load);
+        continue; // the page is resident now, or the load failed and we retry it
+      }
+
+      try {
+        writeBackVictim(frameHeader);
+        scheduleAndWait(readRequest(pageId, frameHeader));
+      } catch (DBException e) {
+        abandonLoad(pageId, frameHeader, load, e);
+        throw e;
+      }
+
+      lockLatch();
+      try {
+        frameHeader.setPageId(pageId);
+        frameHeader.clearDirty();
+        pageTable.put(pageId.getValue(), frameHeader.getFrameId().getValue());
+        touchForUse(frameHeader);
+        frameHeader.setPinCount(1); // releases the claim and pins for the caller
+        inFlight.remove(pageId.getValue());
+      } finally {
+        latch.unlock();
+      }
+      load.complete(null);
+      metrics.recordFault(System.nanoTime() - faultStart);
+      return frameHeader;
+    }
+  }
+
+  /**
+   * Install a brand-new, zeroed page in a frame of this partition. No disk I/O is needed for the
+   * page itself, though a dirty victim is written back first.
+   *
+   * @param pageId the freshly assigned page id
+   * @param strategy ring to recycle, or null to use the shared pool
+   * @return false if every frame of the partition is pinned
+   */
+  boolean installNewPage(PageId pageId, BufferAccessStrategy strategy) {
+    FrameHeader frameHeader;
+    lockLatch();
+    try {
+      Optional<FrameHeader> reserved = reserveFrame(pageId, strategy);
+      if (reserved.isEmpty()) {
+        return false;
+      }
+      frameHeader = reserved.get();
+    } finally {
+      latch.unlock();
+    }
+
+    writeBackVictim(frameHeader); // on failure the victim is restored in place
+
+    frameHeader.zero();
+    lockLatch();
+    try {
+      frameHeader.setPageId(pageId);
+      frameHeader.clearDirty();
+      pageTable.put(pageId.getValue(), frameHeader.getFrameId().getValue());
+      touchForUse(frameHeader);
+      frameHeader.setPinCount(0); // releases the claim; guards will raise pin to 1
+      return true;
+    } finally {
+      latch.unlock();
+    }
+  }
+
+  /**
+   * Start loading a page in the background unless it is resident or already on its way. The page
+   * arrives unpinned and evictable; if no frame can be spared, the hint is dropped.
+   *
+   * @param pageId the page to read ahead
+   * @param strategy ring to recycle, or null to use the shared pool
+   * @return true if a read was issued
+   */
+  boolean prefetch(PageId pageId, BufferAccessStrategy strategy) {
+    if (pageTable.get(pageId.getValue()) != PageTable.NOT_FOUND) {
+      return false;
+    }
+
+    FrameHeader frameHeader;
+    CompletableFuture<Void> load = new CompletableFuture<>();
+    lockLatch();
+    try {
+      if (pageTable.get(pageId.getValue()) != PageTable.NOT_FOUND
+          || inFlight.containsKey(pageId.getValue())) {
+        return false;
+      }
+      Optional<FrameHeader> reserved = reserveFrame(pageId, strategy);
+      if (reserved.isEmpty()) return false;
+      frameHeader = reserved.get();
+      inFlight.put(pageId.getValue(), load);
+    } finally {
+      latch.unlock();
+    }
+
+    // Both steps complete on the disk scheduler's worker, so the caller never waits.
+    PageId victimPageId = frameHeader.getPageId();
+    CompletableFuture<Boolean> written = CompletableFuture.completedFuture(true);
+    long flushStart = System.nanoTime();
+    if (victimPageId != null) {
+      DiskRequest flushRequest = writeRequest(frameHeader);
+      diskScheduler.schedule(flushRequest);
+      written = flushRequest.getCallback();
+    }
+    written.whenComplete(
+        (ignored, writeError) -> {
+          if (writeError != null) {
+            restoreVictim(frameHeader, writeError);
+            abandonLoad(pageId, frameHeader, load, writeError);
+            return;
+          }
+          if (victimPageId != null) {
+            metrics.recordFlush(System.nanoTime() - flushStart);
+            finishWriteBack(frameHeader, victimPageId);
+          }
+          DiskRequest read = readRequest(pageId, frameHeader);
+          diskScheduler.schedule(read);
+          read.getCallback()
+              .whenComplete(
+                  (done, readError) -> {
+                    if (readError != null) {
+                      abandonLoad(pageId, frameHeader, load, readError);
+                    } else {
+                      publishPrefetched(pageId, frameHeader, load);
+                    }
+                  });
+        });
+    return true;
+  }
+
+  /** Make a prefetched page resident, unpinned and evictable, and wake its waiters. */
+  private void publishPrefetched(
+      PageId pageId, FrameHeader frameHeader, CompletableFuture<Void> load) {
+    lockLatch();
+    try {
+      frameHeader.setPageId(pageId);
+      frameHeader.clearDirty();
+      pageTable.put(pageId.getValue(), frameHeader.getFrameId().getValue());
+      touchForUse(frameHeader);
+      replacer.unPin(frameHeader.getFrameId());
+      frameHeader.setPinCount(0); // releases the claim
+      inFlight.remove(pageId.getValue());
+    } finally {
+      latch.unlock();
+    }
+    load.complete(null);
+  }
+
+  /**
+   * Lists the resident pages in the reverse of the order the replacer would evict them, so the
+   * page it values most comes first.
+   */
+  List<PageId> residentPagesHottestFirst() {
+    List<PageId> hottest = new ArrayList<>();
+    lockLatch();
+    try {
+      List<FrameId> order;
+      synchronized (replacer) {
+        order = replacer.evictionOrder();
+      }
+      for (int i = order.size() - 1; i >= 0; i--) {
+        FrameHeader frameHeader = frames.get(order.get(i).getValue());
+        PageId pageId = frameHeader.getPageId();
+        if (pageId != null
+            && pageTable.get(pageId.getValue()) == frameHeader.getFrameId().getValue()) {
+          hottest.add(pageId);
+        }
+      }
+    } finally {
+      latch.unlock();
+    }
+    return hottest;
+  }
+
+  /** Number of frames holding no page. Read without the latch, so only an estimate. */
+  int freeFrameCount() {
+    return freeFrames.size();
+  }
+
+  /** Number of frames pinned by a guard or a background task; claimed frames are not counted. */
+  int pinnedFrameCount() {
+    int pinned = 0;
+    for (int i = firstFrame; i < firstFrame + maxFrames; i++) {
+      if (frames.get(i).getPinCount() > 0) {
+        pinned++;
+      }
+    }
+    return pinned;
+  }
+
+  /**
+   * Count the frames an eviction could take without writing anything: free frames and unpinned
+   * clean ones. Read without the latch, so the count is only an estimate.
+   */
+  int cleanEvictableCount() {
+    int clean = 0;
+    for (int i = firstFrame; i < firstFrame + numFrames; i++) {
+      FrameHeader frameHeader = frames.get(i);
+      if (frameHeader.getPinCount() == 0 && !frameHeader.isDirty()) {
+        clean++;
+      }
+    }
+    return clean;
+  }
+
+  /**
+   * Pin up to {@code max} dirty, unpinned frames so the page cleaner can write them back. Frames
+   * the pool has claimed are skipped. Each returned frame must be released with {@link
+   * #releasePin}.
+   */
+  List<FrameHeader> pinDirtyFrames(int max) {
+    List<FrameHeader> dirty = new ArrayList<>();
+    for (int i = firstFrame; i < firstFrame + maxFrames && dirty.size() < max; i++) {
+      FrameHeader frameHeader = frames.get(i);
+      if (!frameHeader.isDirty() || frameHeader.getPinCount() != 0 || !frameHeader.tryPin()) {
+        continue;
+      }
+      if (frameHeader.getPageId() == null || !frameHeader.isDirty()) {
+        releasePin(frameHeader);
+        continue;
+      }
+      dirty.add(frameHeader);
+    }
+    return dirty;
+  }
+
+  /**
+   * Add the pages of this partition's dirty frames to {@code into}. Read without the latch, so the
+   * list is a snapshot a checkpoint then confirms page by page with {@link #pinDirtyPage}.
+   */
+  void collectDirtyPages(List<PageId> into) {
+    for (int i = firstFrame; i < firstFrame + maxFrames; i++) {
+      FrameHeader frameHeader = frames.get(i);
+      PageId pageId = frameHeader.getPageId();
+      if (pageId != null && frameHeader.isDirty()) {
+        into.add(pageId);
+      }
+    }
+  }
+
+  /**
+   * Pin the frame of a page if it is still resident and dirty, without counting as an access. A
+   * page whose frame is being evicted is waited for, as the eviction writes it back itself. The
+   * returned frame must be released with {@link #releasePin}.
+   *
+   * @return the pinned frame, or null if the page is clean or no longer resident
+   */
+  FrameHeader pinDirtyPage(PageId pageId) {
+    while (true) {
+      int frameId = pageTable.get(pageId.getValue());
+      if (frameId != PageTable.NOT_FOUND) {
+        FrameHeader frameHeader = frames.get(frameId);
+        if (frameHeader.tryPin()) {
+          PageId held = frameHeader.getPageId();
+          if (held != null && held.getValue() == pageId.getValue() && frameHeader.isDirty()) {
+            return frameHeader;
+          }
+          releasePin(frameHeader);
+          if (held != null && held.getValue() == pageId.getValue()) {
+            return null; // clean
+          }
+        }
+      }
+
+      CompletableFuture<Void> pending;
+      lockLatch();
+      try {
+        pending = inFlight.get(pageId.getValue());
+      } finally {
+        latch.unlock();
+      }
+      if (pending == null) {
+        if (pageTable.get(pageId.getValue()) == PageTable.NOT_FOUND) {
+          return null; // evicted, and written back on the way out
+        }
+        Thread.onSpinWait(); // lost a race with an eviction that has not registered yet
+        continue;
+      }
+      awaitQuietly(pending);
+    }
+  }
+
+  /**
+   * Look the page up without the partition latch and pin its frame.
+   *
+   * @return the pinned frame, or null if the page is not resident or the lookup raced with an
+   *     eviction
+   */
+  private FrameHeader tryPinResident(int pageId) {
+    int frameId = pageTable.get(pageId);
+    if (frameId == PageTable.NOT_FOUND) {
+      return null;
+    }
+    FrameHeader frameHeader = frames.get(frameId);
+    if (!frameHeader.tryPin()) {
+      return null; // claimed for eviction or still loading
+    }
+    PageId held = frameHeader.getPageId();
+    if (held == null || held.getValue() != pageId) {
+      // The frame was recycled between the lookup and the pin.
+      releasePin(frameHeader);
+      return null;
+    }
+    touchForUse(frameHeader);
+    return frameHeader;
+  }
+
+  /**
+   * The frame currently mapped to a page, looked up without the latch and without pinning it, for
+   * optimistic reads that validate the frame afterwards.
+   *
+   * @return the frame, or null if the page is not resident
+   */
+  FrameHeader residentFrame(int pageId) {
+    int frameId = pageTable.get(pageId);
+    return frameId == PageTable.NOT_FOUND ? null : frames.get(frameId);
+  }
+
+  /**
+   * Count an access to a page read optimistically, so a page that is only ever read that way does
+   * not look cold to the replacer. Skipped if the frame has moved on to another page meanwhile.
+   */
+  void touchResident(FrameHeader frameHeader, int pageId) {
+    lockLatch();
+    try {
+      PageId held = frameHeader.getPageId();
+      if (frameHeader.getPinCount() >= 0
+          && held != null
+          && held.getValue() == pageId
+          && pageTable.get(pageId) == frameHeader.getFrameId().getValue()) {
+        synchronized (replacer) {
+          replacer.recordAccess(frameHeader.getFrameId(), held);
+        }
+      }
+    } finally {
+      latch.unlock();
+    }
+  }
+
+  /** Undo a pin taken without a guard, the same way a guard drop does. */
+  void releasePin(FrameHeader frameHeader) {
+    PageId held = frameHeader.getPageId();
+    if (frameHeader.unPin() != 0 || held == null) {
+      return;
+    }
+    lockLatch();
+    try {
+      if (frameHeader.isUnpinnedWith(held)) {
+        replacer.unPin(frameHeader.getFrameId());
+      }
+    } finally {
+      latch.unlock();
+    }
+  }
+
+  /**
+   * Get a usable frame: either a free one, or evict one. The frame comes back claimed, so
+   * latch-free lookups cannot pin it until the caller publishes a pin count. A dirty victim keeps
+   * its page id and is registered as in flight; the caller must hand it to {@link
+   * #writeBackVictim} once the latch is released. Caller must hold the partition latch.
+   *
+   * <p>With a strategy, the frame comes from the strategy's ring: its next frame is recycled if
+   * nobody else holds it, otherwise a frame from the shared pool takes its place in the ring.
+   */
+  private Optional<FrameHeader> reserveFrame(PageId pageId, BufferAccessStrategy strategy) {
+    if (strategy == null) {
+      return reserveSharedFrame();
+    }
+    FrameHeader recycled = strategy.advance(index);
+    if (recycled != null && !isRetiring(recycled) && recycled.tryClaim()) {
+      // Out of the replacer, so a concurrent eviction cannot pick the frame again.
+      replacer.remove(recycled.getFrameId());
+      detachVictim(recycled);
+      strategy.remember(index, recycled, pageId);
+      return Optional.of(recycled);
+    }
+    Optional<FrameHeader> reserved = reserveSharedFrame();
+    reserved.ifPresent(frameHeader -> strategy.remember(index, frameHeader, pageId));
+    return reserved;
+  }
+
+  /** Take a free frame or evict one from the shared pool. Caller must hold the partition latch. */
+  private Optional<FrameHeader> reserveSharedFrame() {
+    FrameId frameId = freeFrames.poll();
+    if (frameId != null) {
+      FrameHeader free = frames.get(frameId.getValue());
+      free.claimFree();
+      return Optional.of(free);
+    }
+
+    FrameHeader victim;
+    while (true) {
+      // Claimed under the replacer's monitor, so a latch-free hit that pinned the victim finds it
+      // tracked again by the time it records its access, not half evicted into a ghost list.
+      boolean claimed;
+      synchronized (replacer) {
+        Optional<FrameId> evicted = replacer.victim();
+        if (evicted.isEmpty()) return Optional.empty();
+        victim = frames.get(evicted.get().getValue());
+        claimed = victim.tryClaim();
+        if (!claimed) {
+          // Pinned after it became evictable; put it back without counting an access.
+          replacer.reinstate(victim.getFrameId(), victim.getPageId());
+        }
+      }
+      if (claimed) {
+        if (!isRetiring(victim)) {
+          break;
+        }
+        // Out of the replacer now; left for the shrink to write back and release.
+        victim.setPinCount(0);
+      }
+    }
+    detachVictim(victim);
+    return Optional.of(victim);
+  }
+
+  /**
+   * Resize the partition to {@code target} frames of its range. Growing takes effect at once.
+   * Shrinking stops handing out the frames past the target right away, then retires them one at a
+   * time under the latch, writing dirty ones back, so the pool keeps serving meanwhile; it returns
+   * once every one of them was unpinned and released. Resizes must not run concurrently, and the
+   * caller must not hold a guard on the partition while shrinking it.
+   *
+   * @param target new number of frames, between 1 and the size of the range
+   */
+  void resize(int target) {
+    int current = numFrames;
+    if (target > current) {
+      grow(current, target);
+    } else if (target < current) {
+      shrink(current, target);
+    }
+  }
+
+  private void grow(int from, int to) {
+    lockLatch();
+    try {
+      for (int i = firstFrame + from; i < firstFrame + to; i++) {
+        FrameHeader frameHeader = frames.get(i);
+        // Frames an aborted shrink did not get to still hold their page and stay as they are.
+        if (!frameHeader.hasBuffer()) {
+          frameHeader.attach(bufferFactory.apply(i));
+          freeFrames.add(frameHeader.getFrameId());
+        }
+      }
+      numFrames = to;
+    } finally {
+      latch.unlock();
+    }
+  }
+
+  private void shrink(int from, int to) {
+    lockLatch();
+    try {
+      numFrames = to; // from here on, reservations skip the frames past the target
+    } finally {
+      latch.unlock();
+    }
+    while (true) {
+      int remaining = 0;
+      for (int i = firstFrame + to; i < firstFrame + from; i++) {
+        if (!retire(frames.get(i))) {
+          remaining++;
+        }
+      }
+      if (remaining == 0) {
+        return;
+      }
+      LockSupport.parkNanos(RETIRE_RETRY_NANOS);
+    }
+  }
+
+  /**
+   * Take one frame out of the pool: evict its page, writing it back if dirty, and drop its buffer.
+   *
+   * @return false if the frame is pinned or being loaded and must be retried later
+   */
+  private boolean retire(FrameHeader frameHeader) {
+    lockLatch();
+    try {
+      if (!frameHeader.hasBuffer()) {
+        return true;
+      }
+      if (freeFrames.remove(frameHeader.getFrameId())) {
+        frameHeader.release();
+        return true;
+      }
+      if (frameHeader.getPageId() == null || !frameHeader.tryClaim()) {
+        return false;
+      }
+      replacer.remove(frameHeader.getFrameId());
+      detachVictim(frameHeader);
+    } finally {
+      latch.unlock();
+    }
+
+    writeBackVictim(frameHeader); // on failure the page is restored and the shrink aborts
+    lockLatch();
+    try {
+      frameHeader.reset();
+      frameHeader.release();
+    } finally {
+      latch.unlock();
+    }
+    return true;
+  }
+
+  /** Whether a frame lies past the frames in use, i.e. a shrink is retiring it. */
+  private boolean isRetiring(FrameHeader frameHeader) {
+    return frameHeader.getFrameId().getValue() - firstFrame >= numFrames;
+  }
+
+  /**
+   * Unmap a claimed victim from its page. A dirty victim keeps its page id and is registered as in
+   * flight until {@link #writeBackVictim} has written it.
+   */
+  private void detachVictim(FrameHeader victim) {
+    int victimPageId = victim.getPageId().getValue();
+    pageTable.remove(victimPageId);
+    metrics.recordEviction(victim.isDirty());
+    if (victim.isDirty()) {
+      // Until the write lands, the page must not be read back from disk.
+      inFlight.put(victimPageId, new CompletableFuture<>());
+    } else {
+      victim.setPageId(null);
+    }
+  }
+
+  /**
+   * Write a dirty victim back to disk, then let requesters of its page fault it in again. Must be
+   * called without the partition latch; a no-op for free or clean frames.
+   */
+  private void writeBackVictim(FrameHeader victim) {
+    PageId victimPageId = victim.getPageId();
+    if (victimPageId == null) return;
+
+    long start = System.nanoTime();
+    try {
+      scheduleAndWait(writeRequest(victim));
+      metrics.recordFlush(System.nanoTime() - start);
+    } catch (DBException e) {
+      restoreVictim(victim, e);
+      throw e;
+    }
+    finishWriteBack(victim, victimPageId);
+  }
+
+  /** Mark a written-back victim clean and let requesters of its page fault it in again. */
+  private void finishWriteBack(FrameHeader victim, PageId victimPageId) {
+    CompletableFuture<Void> written;
+    lockLatch();
+    try {
+      victim.clearDirty();
+      victim.setPageId(null);
+      written = inFlight.remove(victimPageId.getValue());
+    } finally {
+      latch.unlock();
+    }
+    written.complete(null);
+  }
+
+  private DiskRequest writeRequest(FrameHeader frameHeader) {
+    return DiskRequest.builder()
+        .isWrite(true)
+        .pageId(frameHeader.getPageId())
+        .buffer(frameHeader.getBuffer())
+        .callback(diskScheduler.createPromise())
+        .build();
+  }
+
+  private DiskRequest readRequest(PageId pageId, FrameHeader frameHeader) {
+    return DiskRequest.builder()
+        .isWrite(false)
+        .pageId(pageId)
+        .buffer(frameHeader.getBuffer())
+        .callback(diskScheduler.createPromise())
+        .build();
+  }
+
+  /** Put a victim whose write-back failed back in place, still dirty and evictable. */
+  private void restoreVictim(FrameHeader victim, Throwable cause) {
+    CompletableFuture<Void> written;
+    lockLatch();
+    try {
+      pageTable.put(victim.getPageId().getValue(), victim.getFrameId().getValue());
+      synchronized (replacer) {
+        replacer.reinstate(victim.getFrameId(), victim.getPageId());
+        replacer.unPin(victim.getFrameId());
+      }
+      victim.setPinCount(0);
+      written = inFlight.remove(victim.getPageId().getValue());
+    } finally {
+      latch.unlock();
+    }
+    written.completeExceptionally(cause);
+  }
+
+  /** Give up on a failed load: free the frame and wake the waiters, who will retry. */
+  private void abandonLoad(
+      PageId pageId, FrameHeader frameHeader, CompletableFuture<Void> load, Throwable cause) {
+    lockLatch();
+    try {
+      inFlight.remove(pageId.getValue());
+    } finally {
+      latch.unlock();
+    }
+    if (frameHeader.getPageId() == null) {
+      releaseFrame(frameHeader);
+    }
+    load.completeExceptionally(cause);
+  }
+
+  /** Return a reserved frame that holds no page to the free list. */
+  private void releaseFrame(FrameHeader frameHeader) {
+    lockLatch();
+    try {
+      frameHeader.reset();
+      freeFrames.add(frameHeader.getFrameId());
+    } finally {
+      latch.unlock();
+    }
+  }
+
+  /**
+   * Take the partition latch, timing the wait only when the latch is contended so the common case
+   * does not read the clock.
+   */
+  private void lockLatch() {
+    if (latch.tryLock()) {
+      return;
+    }
+    long start = System.nanoTime();
+    latch.lock();
+    metrics.recordLatchWait(System.nanoTime() - start);
+  }
+
+  /** Wait for an in-flight load or write-back; its failure is the owner's to report. */
+  private static void awaitQuietly(CompletableFuture<Void> pending) {
+    try {
+      pending.join();
+    } catch (CompletionException | CancellationException e) {
+      // The caller retries and surfaces its own error if the I/O keeps failing.
+    }
+  }
+
+  /** Hand a request to the disk scheduler and block until the worker has served it. */
+  private void scheduleAndWait(DiskRequest request) {
+    diskScheduler.schedule(request);
+    try {
+      request.getCallback().join();
+    } catch (CompletionException e) {
+      throw new DBException(
+          ErrorType.IO_ERROR, "Disk request failed for pageId " + request.getPageId(), e);
+    }
+  }
+
+  /**
+   * Common “touch” when a frame is (re)used. Both calls happen under the replacer's monitor so an
+   * eviction cannot drop the frame between them, as latch-free hits do not hold the partition latch.
+   * The frame must already hold its page, which policies with ghost lists key on.
+   */
+  private void touchForUse(FrameHeader frameHeader) {
+    FrameId frameId = frameHeader.getFrameId();
+    synchronized (replacer) {
+      replacer.recordAccess(frameId, frameHeader.getPageId());
+      replacer.pin(frameId);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package com.dbms.yadbms.buffer;
+
+import com.dbms.yadbms.config.PageId;
+import com.dbms.yadbms.storage.disk.DiskManager;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One pass writing every dirty page of the pool back to disk. The dirty pages are collected up
+ * front and sorted by file offset, then written in batches of adjacent pages that the disk manager
+ * turns into gathering writes, and forced to disk once at the end instead of once per page.
+ *
+ * <p>Each batch is pinned and read-latched while it is written, like the page cleaner does, so
+ * pages stay usable for readers. Latches are only tried while others are held; a page whose latch
+ * is busy is written on its own afterwards, once the batch has let go of every other latch. A
+ * page dirtied again after its batch is left for the next pass.
+ *
+ * <p>An optional rate limit spaces the batches out so a checkpoint does not starve foreground I/O.
+ */
+class Checkpoint {
+  /** Most pages written by one batch. */
+  static final int BATCH_PAGES = 64;
+
+  private final BufferPoolPartition[] partitions;
+
+  private final DiskManager diskManager;
+
+  private final BufferPoolMetrics metrics;
+
+  private final int pageSize;
+
+  /** Target write rate, or 0 to write as fast as the disk allows. */
+  private final long maxBytesPerSecond;
+
+  /**
+   * @param partitions partitions whose dirty pages are written
+   * @param diskManager the disk manager pages are written to
+   * @param metrics receives the latency of every batch
+   * @param maxBytesPerSecond target write rate, or 0 for none
+   */
+  Checkpoint(
+      BufferPoolPartition[] partitions,
+      DiskManager diskManager,
+      BufferPoolMetrics metrics,
+      long maxBytesPerSecond) {
+    this.partitions = partitions;
+    this.diskManager = diskManager;
+    this.metrics = metrics;
+    this.pageSize = diskManager.getPageSize();
+    this.maxBytesPerSecond = maxBytesPerSecond;
+  }
+
+  /**
+   * Write the pages dirty at the start of the pass and sync the file.
+   *
+   * @return number of pages written
+   */
+  int run() {
+    List<PageId> dirty = new ArrayList<>();
+    for (BufferPoolPartition partition : partitions) {
+      partition.collectDirtyPages(dirty);
+    }
+    dirty.sort(Comparator.comparingLong(this::fileOrder));
+
+    int written = 0;
+    long start = System.nanoTime();
+    for (int from = 0; from < dirty.size(); from += BATCH_PAGES) {
+      written += writeBatch(dirty.subList(from, Math.min(from + BATCH_PAGES, dirty.size())));
+      throttle(start, written);
+    }
+    diskManager.sync();
+    return written;
+  }
+
+  private int writeBatch(List<PageId> batch) {
+    List<FrameHeader> pinned = new ArrayList<>(batch.size());
+    List<BufferPoolPartition> owners = new ArrayList<>(batch.size());
+    List<FrameHeader> latched = new ArrayList<>(batch.size());
+    try {
+      for (PageId pageId : batch) {
+        BufferPoolPartition partition =
+            partitions[Math.floorMod(pageId.getValue(), partitions.length)];
+        FrameHeader frameHeader = partition.pinDirtyPage(pageId);
+        if (frameHeader != null) {
+          pinned.add(frameHeader);
+          owners.add(partition);
+        }
+      }
+      // Never wait on a latch while holding another: tree operations latch pages in their own
+      // order, so a blocking batch could deadlock with them. Busy pages are written on their own.
+      List<PageId> pageIds = new ArrayList<>(pinned.size());
+      List<ByteBuffer> buffers = new ArrayList<>(pinned.size());
+      List<FrameHeader> busy = new ArrayList<>();
+      for (FrameHeader frameHeader : pinned) {
+        if (!frameHeader.readLock().tryLock()) {
+          busy.add(frameHeader);
+          continue;
+        }
+        latched.add(frameHeader);
+        if (frameHeader.isDirty()) {
+          pageIds.add(frameHeader.getPageId());
+          buffers.add(frameHeader.getBuffer());
+        }
+      }
+
+      long batchStart = System.nanoTime();
+      diskManager.writePages(pageIds, buffers);
+      metrics.recordFlush(System.nanoTime() - batchStart);
+      // Writers need the write latch to dirty a page again, so nothing was missed.
+      for (FrameHeader frameHeader : latched) {
+        frameHeader.clearDirty();
+      }
+      int written = pageIds.size();
+      unlatchAll(latched);
+
+      // Unlike the page cleaner, wait for writers: the checkpoint has to cover every page.
+      for (FrameHeader frameHeader : busy) {
+        written += writeAlone(frameHeader);
+      }
+      return written;
+    } finally {
+      unlatchAll(latched);
+      for (int i = 0; i < pinned.size(); i++) {
+        owners.get(i).releasePin(pinned.get(i));
+      }
+    }
+  }
+
+  /** Write one pinned page if it is still dirty, waiting for its latch while holding no other. */
+  private int writeAlone(FrameHeader frameHeader) {
+    frameHeader.readLock().lock();
+    try {
+      if (!frameHeader.isDirty()) {
+        return 0;
+      }
+      long start = System.nanoTime();
+      diskManager.writePages(List.of(frameHeader.getPageId()), List.of(frameHeader.getBuffer()));
+      metrics.recordFlush(System.nanoTime() - start);
+      frameHeader.clearDirty();
+      return 1;
+    } finally {
+      frameHeader.readLock().unlock();
+    }
+  }
+
+  private static void unlatchAll(List<FrameHeader> latched) {
+    for (FrameHeader frameHeader : latched) {
+      frameHeader.readLock().unlock();
+    }
+    latched.clear();
+  }
+
+  /** Sleep until writing {@code written} pages since {@code start} is within the target rate. */
+  private void throttle(long start, int written) {
+    if (maxBytesPerSecond <= 0) {
+      return;
+    }
+    double seconds = (double) written * pageSize / maxBytesPerSecond;
+    long due = start + (long) (seconds * TimeUnit.SECONDS.toNanos(1));
+    long wait;
+    while ((wait = due - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+      LockSupport.parkNanos(this, wait);
+    }
+  }
+
+  /** Sort key of a page; pages not yet on disk are appended at the end of the file. */
+  private long fileOrder(PageId pageId) {
+    long offset = diskManager.getPageOffset(pageId);
+    return offset < 0 ? Long.MAX_VALUE : offset;
+  }
+}
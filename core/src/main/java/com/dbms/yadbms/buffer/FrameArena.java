@@ -0,0 +1,59 @@
+package com.dbms.yadbms.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One large off-heap memory region carved into page-sized frame slices. The whole pool then costs
+ * the garbage collector a handful of objects instead of one array per frame, and the frames are
+ * direct buffers that NIO can read into and write from without an intermediate copy.
+ *
+ * <p>A single direct buffer is limited to 2 GB, so the region is allocated in chunks of up to 1 GB;
+ * a frame never straddles two chunks.
+ *
+ * <p>Chunks start on a {@link #ALIGNMENT} boundary, so frames of a page size that is a multiple of
+ * the file system block size are block aligned, as direct I/O requires.
+ */
+class FrameArena {
+  private static final int CHUNK_BYTES = 1 << 30;
+
+  /** Alignment of every chunk: the largest block size file systems commonly use. */
+  static final int ALIGNMENT = 4096;
+
+  private final int pageSize;
+
+  private final int framesPerChunk;
+
+  private final ByteBuffer[] chunks;
+
+  /**
+   * @param numFrames number of frames to carve out
+   * @param pageSize size of one frame in bytes
+   */
+  FrameArena(int numFrames, int pageSize) {
+    this.pageSize = pageSize;
+    this.framesPerChunk = Math.max(1, CHUNK_BYTES / pageSize);
+    int numChunks = (numFrames + framesPerChunk - 1) / framesPerChunk;
+    this.chunks = new ByteBuffer[numChunks];
+    for (int i = 0; i < numChunks; i++) {
+      int chunkFrames = Math.min(framesPerChunk, numFrames - i * framesPerChunk);
+      int bytes = chunkFrames * pageSize;
+      ByteBuffer chunk = ByteBuffer.allocateDirect(bytes + ALIGNMENT - 1).alignedSlice(ALIGNMENT);
+      chunks[i] = chunk.limit(bytes).slice();
+    }
+  }
+
+  /**
+   * Returns the slice backing a frame. Slices share memory with the arena and are big-endian like
+   * heap frames.
+   *
+   * @param frameIndex index of the frame, from 0 to numFrames - 1
+   * @return a direct buffer of exactly one page
+   */
+  ByteBuffer slice(int frameIndex) {
+    ByteBuffer chunk = chunks[frameIndex / framesPerChunk].duplicate();
+    int offset = (frameIndex % framesPerChunk) * pageSize;
+    chunk.position(offset);
+    chunk.limit(offset + pageSize);
+    return chunk.slice();
+  }
+}
@@ -4,50 +4,209 @@ import static com.dbms.yadbms.common.utils.Constants.PAGE_SIZE;
 
 import com.dbms.yadbms.config.FrameId;
 import com.dbms.yadbms.config.PageId;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
 import lombok.Getter;
 import lombok.Setter;
 
 /**
  * FrameHeader represents the metadata for a frame in the buffer pool. It contains information such
  * as the frame ID, page ID, pin count, dirty status, and the actual data of the frame.
+ *
+ * <p>The frame latch is a {@link StampedLock}, so a thread holding it shared can try to upgrade to
+ * exclusive in place, and read-mostly paths escalate only the pages they end up modifying. The
+ * latch is not reentrant: a thread must not latch a frame it already holds.
+ *
+ * <p>Readers can also skip the latch and the pin entirely: they take an optimistic stamp and the
+ * frame version, read the bytes, and {@link #validate} afterwards. The stamp catches writers, the
+ * version catches the pool reusing the frame for another page, which it does without the latch.
+ * The version works like a seqlock: it turns odd when the pool claims the frame and even again
+ * when a pin count publishes the page the frame then holds, so a reader that sees an odd version
+ * knows the page id and bytes may belong to a page on its way in or out.
  */
 public class FrameHeader {
   @Getter private final FrameId frameId;
 
-  @Getter @Setter private PageId pageId;
+  @Getter @Setter private volatile PageId pageId;
 
-  private final ReentrantReadWriteLock readWriteLock;
+  private final StampedLock latch;
 
-  private AtomicInteger pinCount;
+  /**
+   * Number of guards holding the frame. -1 means the frame is claimed by the pool (being evicted,
+   * reused or loaded) and cannot be pinned.
+   */
+  private final AtomicInteger pinCount;
 
-  private boolean isDirty;
+  private volatile boolean isDirty;
 
-  @Getter private byte[] data;
+  /**
+   * Odd while the pool has the frame claimed, even while it holds a published page; bumped on every
+   * claim and every release of a claim.
+   */
+  private final AtomicLong version;
 
+  /**
+   * The page bytes, big-endian. Page views read and write through it in place. It is either a heap
+   * buffer owned by this frame or a slice of the pool's off-heap arena, and null while the frame is
+   * not part of the pool because the pool was shrunk.
+   */
+  @Getter private volatile ByteBuffer buffer;
+
+  /**
+   * Read-only view of {@link #buffer}, made once per buffer so read guards hand it out without
+   * allocating. Every reader of the frame shares it, so it is only read at absolute offsets.
+   */
+  @Getter private volatile ByteBuffer readOnlyBuffer;
+
+  /** Creates a frame backed by its own heap buffer of the default page size. */
   public FrameHeader(FrameId frameId) {
+    this(frameId, ByteBuffer.allocate(PAGE_SIZE));
+  }
+
+  /**
+   * Creates a frame backed by the given page buffer, e.g. a slice of an off-heap arena.
+   *
+   * @param frameId id of the frame
+   * @param buffer page-sized buffer holding the frame bytes, or null for a frame that is not in use
+   *     until the pool grows
+   */
+  public FrameHeader(FrameId frameId, ByteBuffer buffer) {
     this.frameId = frameId;
-    readWriteLock = new ReentrantReadWriteLock();
+    this.buffer = buffer;
+    this.readOnlyBuffer = buffer == null ? null : buffer.asReadOnlyBuffer();
+    latch = new StampedLock();
+    pinCount = new AtomicInteger(0);
+    version = new AtomicLong();
     reset();
   }
 
+  /** Clears the metadata and zeroes the page bytes; the backing buffer is kept. */
   public void reset() {
-    pinCount = new AtomicInteger(0);
+    setPinCount(0);
     isDirty = false;
-    data = new byte[PAGE_SIZE];
+    zero();
     pageId = null;
   }
 
-  public ReentrantReadWriteLock.ReadLock readLock() {
-    return readWriteLock.readLock();
+  /** Gives a frame without memory its page buffer, when the pool grows. */
+  void attach(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.readOnlyBuffer = buffer.asReadOnlyBuffer();
+    zero();
+  }
+
+  /** Drops the page buffer of a frame taken out of the pool, so its memory can be reclaimed. */
+  void release() {
+    buffer = null;
+    readOnlyBuffer = null;
+  }
+
+  public boolean hasBuffer() {
+    return buffer != null;
+  }
+
+  /** Zeroes the page bytes. */
+  public void zero() {
+    ByteBuffer buffer = this.buffer;
+    if (buffer == null) {
+      return;
+    }
+    if (buffer.hasArray()) {
+      int from = buffer.arrayOffset();
+      Arrays.fill(buffer.array(), from, from + buffer.capacity(), (byte) 0);
+      return;
+    }
+    for (int i = 0; i < buffer.capacity(); i += Long.BYTES) {
+      buffer.putLong(i, 0L);
+    }
+  }
+
+  /** Shared view of the frame latch, for holders that do not keep a stamp. */
+  public Lock readLock() {
+    return latch.asReadLock();
+  }
+
+  /** Exclusive view of the frame latch, for holders that do not keep a stamp. */
+  public Lock writeLock() {
+    return latch.asWriteLock();
+  }
+
+  /**
+   * Latches the frame shared.
+   *
+   * @return the stamp to upgrade or release the latch with
+   */
+  public long latchShared() {
+    return latch.readLock();
+  }
+
+  /**
+   * Latches the frame exclusively.
+   *
+   * @return the stamp to release the latch with
+   */
+  public long latchExclusive() {
+    return latch.writeLock();
+  }
+
+  /**
+   * Upgrades a shared latch to exclusive if the caller is its only holder.
+   *
+   * @param stamp stamp of the caller's shared latch
+   * @return the stamp of the exclusive latch, or 0 if other threads hold the latch too; the shared
+   *     latch is then still held
+   */
+  public long tryUpgrade(long stamp) {
+    return latch.tryConvertToWriteLock(stamp);
+  }
+
+  /** Releases a latch taken with {@link #latchShared}, {@link #latchExclusive} or an upgrade. */
+  public void unlatch(long stamp) {
+    latch.unlock(stamp);
+  }
+
+  /**
+   * Starts an optimistic read. Read {@link #getVersion} and the page id after this call, give up if
+   * the version is odd, then read the bytes and {@link #validate} before trusting anything read.
+   *
+   * @return the stamp to validate, or 0 if a writer holds the frame
+   */
+  public long tryOptimisticRead() {
+    return latch.tryOptimisticRead();
+  }
+
+  public long getVersion() {
+    return version.get();
+  }
+
+  /**
+   * Whether the frame neither was latched exclusively nor was reused since the optimistic read
+   * started, so the bytes read meanwhile are a consistent image of the page.
+   *
+   * @param stamp stamp returned by {@link #tryOptimisticRead}
+   * @param version frame version read right after it
+   */
+  public boolean validate(long stamp, long version) {
+    // validate() fences the preceding reads, so the version is read after the bytes.
+    return latch.validate(stamp) && this.version.get() == version;
   }
 
-  public ReentrantReadWriteLock.WriteLock writeLock() {
-    return readWriteLock.writeLock();
+  public int getPinCount() {
+    return pinCount.get();
   }
 
+  /**
+   * Sets the pin count. Setting it on a claimed frame releases the claim, publishing the page id and
+   * bytes installed meanwhile to optimistic readers.
+   */
   public void setPinCount(int pinCount) {
+    if (pinCount >= 0 && this.pinCount.get() < 0) {
+      version.incrementAndGet(); // even again, before the frame can be pinned
+    }
     this.pinCount.set(pinCount);
   }
 
@@ -55,18 +214,76 @@ public class FrameHeader {
     return pinCount.incrementAndGet();
   }
 
+  /**
+   * Pins the frame unless the pool has claimed it. Used by lookups that do not hold the partition
+   * latch; the caller must still check that the frame holds the page it expects.
+   *
+   * @return true if the frame was pinned
+   */
+  public boolean tryPin() {
+    while (true) {
+      int current = pinCount.get();
+      if (current < 0) {
+        return false;
+      }
+      if (pinCount.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Claims an unpinned frame for eviction or reuse, so that concurrent {@link #tryPin()} calls fail
+   * until the pool publishes a new pin count.
+   *
+   * @return true if the frame was unpinned and is now claimed
+   */
+  public boolean tryClaim() {
+    if (!pinCount.compareAndSet(0, -1)) {
+      return false;
+    }
+    version.incrementAndGet(); // odd until the claim is released
+    return true;
+  }
+
+  /** Claims a frame taken from the free list, which nobody can have pinned. */
+  public void claimFree() {
+    pinCount.set(-1);
+    version.incrementAndGet();
+  }
+
   public boolean isDirty() {
     return isDirty;
   }
 
+  public void markDirty() {
+    isDirty = true;
+  }
+
   public void clearDirty() {
     isDirty = false;
   }
 
+  /**
+   * Drops one pin, atomically, so releases need no latch; a frame that is not pinned is left alone.
+   *
+   * @return the pin count afterwards
+   */
   public int unPin() {
-    if (pinCount.get() > 0) {
-      return pinCount.decrementAndGet();
+    while (true) {
+      int current = pinCount.get();
+      if (current <= 0) {
+        return current;
+      }
+      if (pinCount.compareAndSet(current, current - 1)) {
+        return current - 1;
+      }
     }
-    return pinCount.get();
+  }
+
+  /** True if the frame is unpinned and still holds the given page. */
+  public boolean isUnpinnedWith(PageId pageId) {
+    PageId held = this.pageId;
+    return pinCount.get() == 0 && held != null && held.getValue() == pageId.getValue();
   }
 }
@@ -0,0 +1,153 @@
+package com.dbms.yadbms.buffer;
+
+import com.dbms.yadbms.storage.disk.DiskManager;
+import com.dbms.yadbms.storage.disk.DiskRequest;
+import com.dbms.yadbms.storage.disk.DiskScheduler;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Background writer that keeps enough clean frames around for eviction. Whenever the share of free
+ * or clean unpinned frames of a partition drops below the watermark, the cleaner writes a batch of
+ * its dirty, unpinned frames back to disk, ordered by file offset so the writes are mostly
+ * sequential. Evictions then rarely have to wait for a write.
+ *
+ * <p>A frame is pinned and read-latched while it is written, so it can be neither evicted nor
+ * modified half-way; frames whose latch is held by a writer are skipped until the next round.
+ */
+@Slf4j
+class PageCleaner {
+
+  private final BufferPoolPartition[] partitions;
+
+  private final DiskManager diskManager;
+
+  private final DiskScheduler diskScheduler;
+
+  private final BufferPoolMetrics metrics;
+
+  private final double watermark;
+
+  private final int batchSize;
+
+  private final long intervalNanos;
+
+  private final Thread backgroundThread;
+
+  private volatile boolean running;
+
+  /**
+   * @param partitions partitions to keep clean
+   * @param diskManager used to look up page offsets
+   * @param diskScheduler scheduler the writes go through
+   * @param metrics receives the latency of every write
+   * @param watermark share of clean frames, in (0, 1], below which a partition is cleaned
+   * @param batchSize most frames written per partition and round
+   * @param intervalMillis pause between two rounds
+   */
+  PageCleaner(
+      BufferPoolPartition[] partitions,
+      DiskManager diskManager,
+      DiskScheduler diskScheduler,
+      BufferPoolMetrics metrics,
+      double watermark,
+      int batchSize,
+      long intervalMillis) {
+    this.partitions = partitions;
+    this.diskManager = diskManager;
+    this.diskScheduler = diskScheduler;
+    this.metrics = metrics;
+    this.watermark = watermark;
+    this.batchSize = batchSize;
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+
+    running = true;
+    backgroundThread = new Thread(this::run);
+    backgroundThread.setName("BufferPool-PageCleaner-Thread");
+    backgroundThread.setDaemon(true);
+    backgroundThread.start();
+  }
+
+  private void run() {
+    while (running) {
+      try {
+        for (BufferPoolPartition partition : partitions) {
+          if (partition.cleanEvictableCount() < watermark * partition.getNumFrames()) {
+            clean(partition);
+          }
+        }
+      } catch (RuntimeException e) {
+        log.error("Page cleaner round failed: {}", e.getMessage());
+      }
+      LockSupport.parkNanos(this, intervalNanos);
+    }
+  }
+
+  /** Write one batch of a partition's dirty frames, in file order. */
+  private void clean(BufferPoolPartition partition) {
+    List<FrameHeader> pinned = partition.pinDirtyFrames(batchSize);
+    List<FrameHeader> latched = new ArrayList<>(pinned.size());
+    try {
+      for (FrameHeader frameHeader : pinned) {
+        if (frameHeader.readLock().tryLock()) {
+          latched.add(frameHeader);
+        }
+      }
+      latched.sort(Comparator.comparingLong(this::fileOrder));
+
+      List<DiskRequest> requests = new ArrayList<>(latched.size());
+      long start = System.nanoTime();
+      for (FrameHeader frameHeader : latched) {
+        DiskRequest request =
+            DiskRequest.builder()
+                .isWrite(true)
+                .pageId(frameHeader.getPageId())
+                .buffer(frameHeader.getBuffer())
+                .callback(diskScheduler.createPromise())
+                .build();
+        diskScheduler.schedule(request);
+        requests.add(request);
+      }
+      for (int i = 0; i < requests.size(); i++) {
+        try {
+          requests.get(i).getCallback().join();
+          // The batch is queued at once, so this is the write's latency as seen by the cleaner.
+          metrics.recordFlush(System.nanoTime() - start);
+          // Writers need the write latch to dirty the page again, so nothing was missed.
+          latched.get(i).clearDirty();
+        } catch (CompletionException e) {
+          log.error("Page cleaner failed to write page {}", requests.get(i).getPageId());
+        }
+      }
+    } finally {
+      for (FrameHeader frameHeader : latched) {
+        frameHeader.readLock().unlock();
+      }
+      for (FrameHeader frameHeader : pinned) {
+        partition.releasePin(frameHeader);
+      }
+    }
+  }
+
+  /** Sort key of a frame's page; pages not yet on disk are appended at the end of the file. */
+  private long fileOrder(FrameHeader frameHeader) {
+    long offset = diskManager.getPageOffset(frameHeader.getPageId());
+    return offset < 0 ? Long.MAX_VALUE : offset;
+  }
+
+  /** Stops the cleaner after its current round. */
+  void shutDown() {
+    running = false;
+    LockSupport.unpark(backgroundThread);
+    try {
+      backgroundThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
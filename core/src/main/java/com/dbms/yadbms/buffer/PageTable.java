@@ -0,0 +1,202 @@
+package com.dbms.yadbms.buffer;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing page id to frame id map built on primitive ints, so lookups neither box nor
+ * allocate. Lookups are optimistic: a reader probes without locking and validates the {@link
+ * StampedLock} stamp afterwards, only falling back to a read lock if a writer raced with it.
+ * Writers are expected to be serialized by the owning partition's latch and take the write lock
+ * only to publish their change.
+ *
+ * <p>Entries live interleaved in a single array ({@code key, value, key, value, ...}) so a reader
+ * always sees keys and values of the same generation, even across a resize. Deletion uses backward
+ * shifting, so no tombstones are needed.
+ */
+final class PageTable {
+  /** Returned by {@link #get(int)} when the page is not resident. */
+  static final int NOT_FOUND = -1;
+
+  /** Page ids are non-negative, so -1 marks an empty slot. */
+  private static final int EMPTY = -1;
+
+  private final StampedLock lock = new StampedLock();
+
+  private int[] slots;
+
+  private int size;
+
+  /**
+   * @param expectedEntries number of entries the table should hold without resizing
+   */
+  PageTable(int expectedEntries) {
+    this.slots = newSlots(capacityFor(expectedEntries));
+  }
+
+  /**
+   * Looks up the frame holding a page without taking a lock in the common case.
+   *
+   * @param pageId the page to look up
+   * @return the frame id, or {@link #NOT_FOUND}
+   */
+  int get(int pageId) {
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      int frameId = probe(slots, pageId);
+      if (lock.validate(stamp)) {
+        return frameId;
+      }
+    }
+    stamp = lock.readLock();
+    try {
+      return probe(slots, pageId);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Maps a page to a frame, replacing any previous mapping.
+   *
+   * @param pageId the page id
+   * @param frameId the frame holding the page
+   */
+  void put(int pageId, int frameId) {
+    long stamp = lock.writeLock();
+    try {
+      if ((size + 1) * 2 > capacity(slots)) {
+        slots = rehash(slots, capacity(slots) * 2);
+      }
+      if (insert(slots, pageId, frameId)) {
+        size++;
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Removes the mapping of a page, if any.
+   *
+   * @param pageId the page id
+   */
+  void remove(int pageId) {
+    long stamp = lock.writeLock();
+    try {
+      if (delete(slots, pageId)) {
+        size--;
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  int size() {
+    long stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /** Bounded probe: a racing writer may leave a torn table behind, which validation rejects. */
+  private static int probe(int[] slots, int pageId) {
+    int capacity = capacity(slots);
+    int mask = capacity - 1;
+    int i = hash(pageId) & mask;
+    for (int n = 0; n < capacity; n++, i = (i + 1) & mask) {
+      int key = slots[2 * i];
+      if (key == pageId) {
+        return slots[2 * i + 1];
+      }
+      if (key == EMPTY) {
+        return NOT_FOUND;
+      }
+    }
+    return NOT_FOUND;
+  }
+
+  /** Returns true if a new key was added, false if an existing one was overwritten. */
+  private static boolean insert(int[] slots, int pageId, int frameId) {
+    int mask = capacity(slots) - 1;
+    int i = hash(pageId) & mask;
+    while (true) {
+      int key = slots[2 * i];
+      if (key == EMPTY || key == pageId) {
+        slots[2 * i + 1] = frameId;
+        slots[2 * i] = pageId;
+        return key == EMPTY;
+      }
+      i = (i + 1) & mask;
+    }
+  }
+
+  private static boolean delete(int[] slots, int pageId) {
+    int mask = capacity(slots) - 1;
+    int i = hash(pageId) & mask;
+    while (slots[2 * i] != pageId) {
+      if (slots[2 * i] == EMPTY) {
+        return false;
+      }
+      i = (i + 1) & mask;
+    }
+
+    // Backward-shift the rest of the cluster so probes never stop early at the hole.
+    int hole = i;
+    int j = i;
+    while (true) {
+      j = (j + 1) & mask;
+      int key = slots[2 * j];
+      if (key == EMPTY) {
+        break;
+      }
+      int home = hash(key) & mask;
+      // Move the entry if its home slot is not cyclically within (hole, j].
+      if (hole <= j ? (home <= hole || home > j) : (home <= hole && home > j)) {
+        slots[2 * hole] = key;
+        slots[2 * hole + 1] = slots[2 * j + 1];
+        hole = j;
+      }
+    }
+    slots[2 * hole] = EMPTY;
+    slots[2 * hole + 1] = EMPTY;
+    return true;
+  }
+
+  private static int[] rehash(int[] old, int newCapacity) {
+    int[] fresh = newSlots(newCapacity);
+    for (int i = 0; i < capacity(old); i++) {
+      if (old[2 * i] != EMPTY) {
+        insert(fresh, old[2 * i], old[2 * i + 1]);
+      }
+    }
+    return fresh;
+  }
+
+  private static int[] newSlots(int capacity) {
+    int[] slots = new int[2 * capacity];
+    Arrays.fill(slots, EMPTY);
+    return slots;
+  }
+
+  private static int capacity(int[] slots) {
+    return slots.length / 2;
+  }
+
+  /** Smallest power of two keeping the load factor at or below 1/2. */
+  private static int capacityFor(int expectedEntries) {
+    int capacity = 2;
+    while (capacity < expectedEntries * 2) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  /** Fibonacci hashing spreads sequential page ids across the table. */
+  private static int hash(int pageId) {
+    int h = pageId * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
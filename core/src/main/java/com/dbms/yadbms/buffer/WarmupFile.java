@@ -0,0 +1,60 @@
+package com.dbms.yadbms.buffer;
+
+import com.dbms.yadbms.common.exceptions.DBException;
+import com.dbms.yadbms.common.exceptions.ErrorType;
+import com.dbms.yadbms.config.PageId;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * On-disk list of the pages a buffer pool held, hottest first, used to warm a new pool up. The
+ * format is a magic number, a count and that many page ids, all big-endian ints. A dump is written
+ * to a temporary file first and moved over the old one, so a crash never leaves a torn list.
+ */
+final class WarmupFile {
+  private static final int MAGIC = 0x59574D31; // "YWM1"
+
+  private WarmupFile() {}
+
+  static void write(Path file, List<PageId> pageIds) {
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(pageIds.size());
+        for (PageId pageId : pageIds) {
+          out.writeInt(pageId.getValue());
+        }
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new DBException(ErrorType.IO_ERROR, "Failed to write warm-up file " + file, e);
+    }
+  }
+
+  static List<PageId> read(Path file) {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC) {
+        throw new DBException(ErrorType.IO_ERROR, "Not a warm-up file: " + file);
+      }
+      int count = in.readInt();
+      List<PageId> pageIds = new ArrayList<>(Math.max(0, count));
+      for (int i = 0; i < count; i++) {
+        pageIds.add(PageId.store(in.readInt()));
+      }
+      return pageIds;
+    } catch (IOException e) {
+      throw new DBException(ErrorType.IO_ERROR, "Failed to read warm-up file " + file, e);
+    }
+  }
+}
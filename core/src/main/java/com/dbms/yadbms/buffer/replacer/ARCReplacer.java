@@ -0,0 +1,204 @@
+package com.dbms.yadbms.buffer.replacer;
+
+import com.dbms.yadbms.common.exceptions.DBException;
+import com.dbms.yadbms.common.exceptions.ErrorType;
+import com.dbms.yadbms.config.FrameId;
+import com.dbms.yadbms.config.PageId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Adaptive Replacement Cache (Megiddo and Modha). Resident frames are split between T1, pages seen
+ * once recently, and T2, pages seen at least twice; both are LRU lists. The pages last evicted from
+ * each are remembered by {@link PageId} in the ghost lists B1 and B2. A miss on a page in B1 means
+ * T1 was too small, a miss on a page in B2 that T2 was, and the target size of T1 moves
+ * accordingly, so the policy drifts between recency and frequency as the workload changes. A
+ * looping scan only ever cycles through T1 and leaves the frequently used pages in T2 alone.
+ *
+ * <p>The pool asks for a victim before it knows the page it is about to load, so the victim is
+ * taken from T1 whenever T1 is above its target, without the tie-break on the incoming page of the
+ * original algorithm. Pinned frames are skipped and the other list is used if one list has no
+ * evictable frame.
+ */
+public class ARCReplacer implements Replacer {
+  private static final int T1 = 0;
+  private static final int T2 = 1;
+  private static final int NO_PAGE = -1;
+
+  private final int firstFrame;
+
+  private final int capacity;
+
+  private final FrameLists lists;
+
+  /** Page held by each tracked frame, or {@link #NO_PAGE} if it was not given. */
+  private final int[] pageOf;
+
+  private final boolean[] evictable;
+
+  /** Ghost list of pages evicted from T1; T1 and B1 together never exceed the capacity. */
+  private final GhostList b1;
+
+  /** Ghost list of pages evicted from T2; all four lists together stay within twice it. */
+  private final GhostList b2;
+
+  /** Target size of T1, between 0 and the capacity. */
+  private int target;
+
+  private int evictableCount;
+
+  /**
+   * @param firstFrame smallest frame id the replacer manages
+   * @param numFrames number of consecutive frame ids it manages
+   */
+  public ARCReplacer(int firstFrame, int numFrames) {
+    this.firstFrame = firstFrame;
+    this.capacity = numFrames;
+    this.lists = new FrameLists(numFrames, 2);
+    this.pageOf = new int[numFrames];
+    this.evictable = new boolean[numFrames];
+    this.b1 = new GhostList(numFrames);
+    this.b2 = new GhostList(2 * numFrames);
+    Arrays.fill(pageOf, NO_PAGE);
+  }
+
+  @Override
+  public synchronized Optional<FrameId> victim() {
+    if (evictableCount == 0) {
+      return Optional.empty();
+    }
+    int preferred = lists.size(T1) > target ? T1 : T2;
+    int i = lists.oldestEvictable(preferred, evictable);
+    if (i == FrameLists.NONE) {
+      i = lists.oldestEvictable(preferred == T1 ? T2 : T1, evictable);
+    }
+    int from = lists.listOf(i);
+    lists.unlink(i);
+    evictable[i] = false;
+    evictableCount--;
+    if (pageOf[i] != NO_PAGE) {
+      (from == T1 ? b1 : b2).addNewest(pageOf[i]);
+      pageOf[i] = NO_PAGE;
+      trimGhosts();
+    }
+    return Optional.of(FrameId.store(firstFrame + i));
+  }
+
+  @Override
+  public synchronized void pin(FrameId frameId) {
+    int i = tracked(frameId);
+    if (evictable[i]) {
+      evictable[i] = false;
+      evictableCount--;
+    }
+  }
+
+  @Override
+  public synchronized void unPin(FrameId frameId) {
+    int i = tracked(frameId);
+    if (!evictable[i]) {
+      evictable[i] = true;
+      evictableCount++;
+    }
+  }
+
+  @Override
+  public void recordAccess(FrameId frameId) {
+    recordAccess(frameId, null);
+  }
+
+  @Override
+  public synchronized void recordAccess(FrameId frameId, PageId pageId) {
+    int i = index(frameId);
+    if (lists.listOf(i) != FrameLists.NONE) {
+      lists.addMostRecent(T2, i); // a hit: the page has now been seen at least twice
+      return;
+    }
+
+    int page = pageId == null ? NO_PAGE : pageId.getValue();
+    pageOf[i] = page;
+    if (page != NO_PAGE && b1.contains(page)) {
+      target = Math.min(capacity, target + Math.max(1, b2.size() / b1.size()));
+      b1.remove(page);
+      lists.addMostRecent(T2, i);
+    } else if (page != NO_PAGE && b2.contains(page)) {
+      target = Math.max(0, target - Math.max(1, b1.size() / b2.size()));
+      b2.remove(page);
+      lists.addMostRecent(T2, i);
+    } else {
+      lists.addMostRecent(T1, i);
+      trimGhosts();
+    }
+  }
+
+  /** Back to the front of the list it was evicted from; the target size is left alone. */
+  @Override
+  public synchronized void reinstate(FrameId frameId, PageId pageId) {
+    int i = index(frameId);
+    int page = pageId == null ? NO_PAGE : pageId.getValue();
+    boolean fromT2 = page != NO_PAGE && b2.remove(page);
+    if (!fromT2 && page != NO_PAGE) {
+      b1.remove(page);
+    }
+    pageOf[i] = page;
+    lists.addLeastRecent(fromT2 ? T2 : T1, i);
+  }
+
+  @Override
+  public synchronized void remove(FrameId frameId) {
+    int i = index(frameId);
+    if (evictable[i]) {
+      evictable[i] = false;
+      evictableCount--;
+    }
+    lists.unlink(i);
+    pageOf[i] = NO_PAGE;
+  }
+
+  /** Lists the list victims are taken from first, then the other, each least recently used first. */
+  @Override
+  public synchronized List<FrameId> evictionOrder() {
+    int preferred = lists.size(T1) > target ? T1 : T2;
+    List<FrameId> order = new ArrayList<>();
+    for (int list : new int[] {preferred, preferred == T1 ? T2 : T1}) {
+      for (int i = lists.first(list); i != FrameLists.NONE; i = lists.next(i)) {
+        order.add(FrameId.store(firstFrame + i));
+      }
+    }
+    return order;
+  }
+
+  @Override
+  public synchronized int size() {
+    return evictableCount;
+  }
+
+  /** Keeps T1 and B1 within the capacity, and all four lists within twice the capacity. */
+  private void trimGhosts() {
+    while (!b1.isEmpty() && lists.size(T1) + b1.size() > capacity) {
+      b1.removeOldest();
+    }
+    while (!b2.isEmpty()
+        && lists.size(T1) + lists.size(T2) + b1.size() + b2.size() > 2 * capacity) {
+      b2.removeOldest();
+    }
+  }
+
+  private int index(FrameId frameId) {
+    int i = frameId.getValue() - firstFrame;
+    if (i < 0 || i >= pageOf.length) {
+      throw new DBException(ErrorType.INVALID_FRAME_ID, "FrameId out of range: " + frameId);
+    }
+    return i;
+  }
+
+  private int tracked(FrameId frameId) {
+    int i = index(frameId);
+    if (lists.listOf(i) == FrameLists.NONE) {
+      throw new DBException(ErrorType.INVALID_FRAME_ID, "FrameId does not exist: " + frameId);
+    }
+    return i;
+  }
+}
@@ -0,0 +1,136 @@
+package com.dbms.yadbms.buffer.replacer;
+
+import com.dbms.yadbms.common.exceptions.DBException;
+import com.dbms.yadbms.common.exceptions.ErrorType;
+import com.dbms.yadbms.config.FrameId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * CLOCK (second chance) replacement. Frames sit on a circular dial with one reference bit each; an
+ * access sets the bit, and the hand sweeps the dial clearing set bits until it finds an evictable
+ * frame whose bit is already clear. Accesses are O(1) and allocation-free, and a victim is found
+ * in amortized O(1) sweeps, independent of the pool size.
+ *
+ * <p>The replacer covers a contiguous range of frame ids, so its state lives in flat arrays
+ * indexed by {@code frameId - firstFrame}.
+ */
+public class ClockReplacer implements Replacer {
+  private static final byte TRACKED = 1;
+  private static final byte EVICTABLE = 1 << 1;
+  private static final byte REFERENCED = 1 << 2;
+
+  private final int firstFrame;
+
+  private final byte[] flags;
+
+  private int hand;
+
+  /** Number of tracked, evictable frames. */
+  private int evictable;
+
+  /**
+   * @param firstFrame smallest frame id the replacer manages
+   * @param numFrames number of consecutive frame ids it manages
+   */
+  public ClockReplacer(int firstFrame, int numFrames) {
+    this.firstFrame = firstFrame;
+    this.flags = new byte[numFrames];
+  }
+
+  @Override
+  public synchronized Optional<FrameId> victim() {
+    if (evictable == 0) {
+      return Optional.empty();
+    }
+    // Every evictable frame is passed at most twice: once to clear its bit, once to take it.
+    while (true) {
+      int i = hand;
+      hand = hand + 1 == flags.length ? 0 : hand + 1;
+      byte f = flags[i];
+      if ((f & (TRACKED | EVICTABLE)) != (TRACKED | EVICTABLE)) {
+        continue;
+      }
+      if ((f & REFERENCED) != 0) {
+        flags[i] = (byte) (f & ~REFERENCED);
+        continue;
+      }
+      flags[i] = 0;
+      evictable--;
+      return Optional.of(FrameId.store(firstFrame + i));
+    }
+  }
+
+  @Override
+  public synchronized void pin(FrameId frameId) {
+    int i = tracked(frameId);
+    if ((flags[i] & EVICTABLE) != 0) {
+      flags[i] &= ~EVICTABLE;
+      evictable--;
+    }
+  }
+
+  @Override
+  public synchronized void unPin(FrameId frameId) {
+    int i = tracked(frameId);
+    if ((flags[i] & EVICTABLE) == 0) {
+      flags[i] |= EVICTABLE;
+      evictable++;
+    }
+  }
+
+  @Override
+  public synchronized void recordAccess(FrameId frameId) {
+    int i = index(frameId);
+    flags[i] |= TRACKED | REFERENCED;
+  }
+
+  @Override
+  public synchronized void remove(FrameId frameId) {
+    int i = index(frameId);
+    if ((flags[i] & (TRACKED | EVICTABLE)) == (TRACKED | EVICTABLE)) {
+      evictable--;
+    }
+    flags[i] = 0;
+  }
+
+  /**
+   * Walks the dial from the hand: frames without a reference bit would go in the first sweep, those
+   * with one in the second.
+   */
+  @Override
+  public synchronized List<FrameId> evictionOrder() {
+    List<FrameId> order = new ArrayList<>();
+    for (byte wanted : new byte[] {TRACKED, TRACKED | REFERENCED}) {
+      for (int n = 0; n < flags.length; n++) {
+        int i = (hand + n) % flags.length;
+        if ((flags[i] & (TRACKED | REFERENCED)) == wanted) {
+          order.add(FrameId.store(firstFrame + i));
+        }
+      }
+    }
+    return order;
+  }
+
+  @Override
+  public synchronized int size() {
+    return evictable;
+  }
+
+  private int index(FrameId frameId) {
+    int i = frameId.getValue() - firstFrame;
+    if (i < 0 || i >= flags.length) {
+      throw new DBException(ErrorType.INVALID_FRAME_ID, "FrameId out of range: " + frameId);
+    }
+    return i;
+  }
+
+  private int tracked(FrameId frameId) {
+    int i = index(frameId);
+    if ((flags[i] & TRACKED) == 0) {
+      throw new DBException(ErrorType.INVALID_FRAME_ID, "FrameId does not exist: " + frameId);
+    }
+    return i;
+  }
+}
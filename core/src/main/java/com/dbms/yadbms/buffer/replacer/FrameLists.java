@@ -0,0 +1,125 @@
+package com.dbms.yadbms.buffer.replacer;
+
+import java.util.Arrays;
+
+/**
+ * A set of intrusive doubly-linked recency lists over a replacer's frame indices, kept in flat int
+ * arrays. A frame is on at most one list; moving it between lists or to the most recently used end
+ * is O(1) and allocation-free. Not thread-safe; the owning replacer synchronizes.
+ */
+final class FrameLists {
+  static final int NONE = -1;
+
+  private final int[] prev;
+  private final int[] next;
+
+  /** List each frame is on, or {@link #NONE}. */
+  private final int[] listOf;
+
+  /** Least recently used end of each list. */
+  private final int[] head;
+
+  /** Most recently used end of each list. */
+  private final int[] tail;
+
+  private final int[] size;
+
+  FrameLists(int numFrames, int numLists) {
+    this.prev = new int[numFrames];
+    this.next = new int[numFrames];
+    this.listOf = new int[numFrames];
+    this.head = new int[numLists];
+    this.tail = new int[numLists];
+    this.size = new int[numLists];
+    Arrays.fill(listOf, NONE);
+    Arrays.fill(head, NONE);
+    Arrays.fill(tail, NONE);
+  }
+
+  int listOf(int frame) {
+    return listOf[frame];
+  }
+
+  int size(int list) {
+    return size[list];
+  }
+
+  /** Least recently used frame of a list, or {@link #NONE} if it is empty. */
+  int first(int list) {
+    return head[list];
+  }
+
+  /** Frame after the given one towards the most recently used end, or {@link #NONE}. */
+  int next(int frame) {
+    return next[frame];
+  }
+
+  /** Appends a frame at the most recently used end of a list, unlinking it first if needed. */
+  void addMostRecent(int list, int frame) {
+    if (listOf[frame] != NONE) {
+      unlink(frame);
+    }
+    prev[frame] = tail[list];
+    next[frame] = NONE;
+    if (tail[list] == NONE) {
+      head[list] = frame;
+    } else {
+      next[tail[list]] = frame;
+    }
+    tail[list] = frame;
+    listOf[frame] = list;
+    size[list]++;
+  }
+
+  /** Puts a frame at the least recently used end of a list, unlinking it first if needed. */
+  void addLeastRecent(int list, int frame) {
+    if (listOf[frame] != NONE) {
+      unlink(frame);
+    }
+    prev[frame] = NONE;
+    next[frame] = head[list];
+    if (head[list] == NONE) {
+      tail[list] = frame;
+    } else {
+      prev[head[list]] = frame;
+    }
+    head[list] = frame;
+    listOf[frame] = list;
+    size[list]++;
+  }
+
+  /** Takes a frame off its list; a no-op for frames on no list. */
+  void unlink(int frame) {
+    int list = listOf[frame];
+    if (list == NONE) {
+      return;
+    }
+    if (prev[frame] == NONE) {
+      head[list] = next[frame];
+    } else {
+      next[prev[frame]] = next[frame];
+    }
+    if (next[frame] == NONE) {
+      tail[list] = prev[frame];
+    } else {
+      prev[next[frame]] = prev[frame];
+    }
+    listOf[frame] = NONE;
+    size[list]--;
+  }
+
+  /**
+   * Finds the least recently used frame of a list that may be evicted. Pinned frames are skipped,
+   * so the walk is bounded by the number of pinned frames on the list.
+   *
+   * @return the frame index, or {@link #NONE}
+   */
+  int oldestEvictable(int list, boolean[] evictable) {
+    for (int frame = head[list]; frame != NONE; frame = next[frame]) {
+      if (evictable[frame]) {
+        return frame;
+      }
+    }
+    return NONE;
+  }
+}
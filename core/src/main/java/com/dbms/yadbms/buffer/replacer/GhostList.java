@@ -0,0 +1,177 @@
+package com.dbms.yadbms.buffer.replacer;
+
+import java.util.Arrays;
+
+/**
+ * A bounded FIFO of evicted page ids with constant-time membership tests and removal, for the ghost
+ * lists of ARC and 2Q. Entries sit in a fixed pool of slots linked oldest to newest through flat
+ * int arrays, and an open-addressing table maps each page id to its slot, so neither adding nor
+ * looking up a page boxes or allocates. Adding to a full list drops its oldest entry. Not
+ * thread-safe; the owning replacer synchronizes.
+ */
+final class GhostList {
+  /** Page ids are non-negative, so -1 marks an empty table slot and the end of the list. */
+  private static final int NONE = -1;
+
+  private final int maxEntries;
+
+  /** Page id held by each slot. */
+  private final int[] pageOf;
+
+  private final int[] prev;
+
+  /** Next slot towards the newest end, or the next free slot for slots not in use. */
+  private final int[] next;
+
+  /** Interleaved {@code pageId, slot} pairs with linear probing, at most half full. */
+  private final int[] table;
+
+  private int oldest = NONE;
+  private int newest = NONE;
+  private int free;
+  private int size;
+
+  /**
+   * @param maxEntries most page ids remembered at once
+   */
+  GhostList(int maxEntries) {
+    this.maxEntries = Math.max(1, maxEntries);
+    this.pageOf = new int[this.maxEntries];
+    this.prev = new int[this.maxEntries];
+    this.next = new int[this.maxEntries];
+    for (int i = 0; i < this.maxEntries; i++) {
+      next[i] = i + 1 < this.maxEntries ? i + 1 : NONE;
+    }
+    int capacity = 2;
+    while (capacity < this.maxEntries * 2) {
+      capacity <<= 1;
+    }
+    this.table = new int[2 * capacity];
+    Arrays.fill(table, NONE);
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  boolean contains(int pageId) {
+    return find(pageId) != NONE;
+  }
+
+  /** Appends a page at the newest end, dropping the oldest entry if the list is full. */
+  void addNewest(int pageId) {
+    remove(pageId);
+    if (size == maxEntries) {
+      removeOldest();
+    }
+    int slot = free;
+    free = next[slot];
+    pageOf[slot] = pageId;
+    prev[slot] = newest;
+    next[slot] = NONE;
+    if (newest == NONE) {
+      oldest = slot;
+    } else {
+      next[newest] = slot;
+    }
+    newest = slot;
+    insert(pageId, slot);
+    size++;
+  }
+
+  /**
+   * Forgets a page.
+   *
+   * @return true if the page was in the list
+   */
+  boolean remove(int pageId) {
+    int slot = find(pageId);
+    if (slot == NONE) {
+      return false;
+    }
+    unlink(slot);
+    delete(pageId);
+    return true;
+  }
+
+  /** Forgets the oldest page; a no-op on an empty list. */
+  void removeOldest() {
+    if (oldest != NONE) {
+      remove(pageOf[oldest]);
+    }
+  }
+
+  private void unlink(int slot) {
+    if (prev[slot] == NONE) {
+      oldest = next[slot];
+    } else {
+      next[prev[slot]] = next[slot];
+    }
+    if (next[slot] == NONE) {
+      newest = prev[slot];
+    } else {
+      prev[next[slot]] = prev[slot];
+    }
+    next[slot] = free;
+    free = slot;
+    size--;
+  }
+
+  private int find(int pageId) {
+    int mask = capacity() - 1;
+    for (int i = hash(pageId) & mask; table[2 * i] != NONE; i = (i + 1) & mask) {
+      if (table[2 * i] == pageId) {
+        return table[2 * i + 1];
+      }
+    }
+    return NONE;
+  }
+
+  private void insert(int pageId, int slot) {
+    int mask = capacity() - 1;
+    int i = hash(pageId) & mask;
+    while (table[2 * i] != NONE) {
+      i = (i + 1) & mask;
+    }
+    table[2 * i] = pageId;
+    table[2 * i + 1] = slot;
+  }
+
+  /** Backward-shift deletion, as in the page table, so no tombstones build up. */
+  private void delete(int pageId) {
+    int mask = capacity() - 1;
+    int hole = hash(pageId) & mask;
+    while (table[2 * hole] != pageId) {
+      hole = (hole + 1) & mask;
+    }
+    int j = hole;
+    while (true) {
+      j = (j + 1) & mask;
+      int key = table[2 * j];
+      if (key == NONE) {
+        break;
+      }
+      int home = hash(key) & mask;
+      if (hole <= j ? (home <= hole || home > j) : (home <= hole && home > j)) {
+        table[2 * hole] = key;
+        table[2 * hole + 1] = table[2 * j + 1];
+        hole = j;
+      }
+    }
+    table[2 * hole] = NONE;
+    table[2 * hole + 1] = NONE;
+  }
+
+  private int capacity() {
+    return table.length / 2;
+  }
+
+  private static int hash(int pageId) {
+    int h = pageId * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
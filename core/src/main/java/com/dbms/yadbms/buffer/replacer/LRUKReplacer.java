@@ -1,89 +1,110 @@
 package com.dbms.yadbms.buffer.replacer;
 
+import static com.dbms.yadbms.common.utils.Constants.LRU_REPLACER_K;
+
 import com.dbms.yadbms.common.exceptions.DBException;
 import com.dbms.yadbms.common.exceptions.ErrorType;
 import com.dbms.yadbms.config.FrameId;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 
-// TODO: This needs re-write
-public class LRUKReplacer {
+/**
+ * LRU-K replacement. The victim is the evictable frame whose K-th most recent access lies furthest
+ * in the past (largest backward K-distance); frames with fewer than K accesses have an infinite
+ * distance and go first, the one with the oldest access among them before the others.
+ *
+ * <p>Both cases order frames by the oldest timestamp they remember, so every frame has one key,
+ * {@code (has K accesses, oldest remembered access)}, and the evictable frames are kept in an
+ * indexed binary min-heap on it: evict, pin, unpin and access are O(log n).
+ *
+ * <p>The replacer covers a contiguous range of frame ids. Each frame's last K access timestamps
+ * live in a ring inside one flat {@code long[]}, so recording an access never allocates.
+ */
+public class LRUKReplacer implements Replacer {
+  /** Set in a key when the frame has K accesses, so frames with fewer sort first. */
+  private static final long FULL_HISTORY = 1L << 62;
+
+  private final int k;
+
+  private final int firstFrame;
+
+  /** Access timestamps, K per frame: frame i owns {@code history[i * k .. i * k + k - 1]}. */
+  private final long[] history;
+
+  /** Number of timestamps recorded per frame, up to K; 0 means the frame is not tracked. */
+  private final int[] count;
+
+  /** Ring slot of each frame's next timestamp, which once the ring is full is also its oldest. */
+  private final int[] head;
+
+  /** Heap key per frame, see the class comment. */
+  private final long[] key;
 
-  private final Map<FrameId, LRUKNode> nodes;
-  private final int replacerSize;
-  private int currentTimestamp = 0;
-  private int currentSize = 0;
+  /** Min-heap of evictable frames, by index. */
+  private final int[] heap;
+
+  /** Position of each frame in the heap, or -1 if it is not evictable. */
+  private final int[] position;
+
+  private int heapSize;
+
+  private long currentTimestamp;
 
   public LRUKReplacer(int replacerSize) {
-    this.replacerSize = replacerSize;
-    nodes = new HashMap<>();
+    this(0, replacerSize, LRU_REPLACER_K);
   }
 
   /**
-   * Attempts to select a frame to be replaced. Implements LRUk (Least Recently Used K) replacement
-   * policy. In case of a tie, it selects the oldest frame. If no frame is available, it returns an
-   * empty Optional.
-   *
-   * @return an Optional containing the FrameId of the victim frame, or empty if no frame is
-   *     available
+   * @param firstFrame smallest frame id the replacer manages
+   * @param numFrames number of consecutive frame ids it manages
+   * @param k number of accesses remembered per frame
    */
-  public synchronized Optional<FrameId> evict() {
-    Optional<FrameId> victimNode = Optional.empty();
-    int maxDistance = 0;
-    int oldestTimestamp = Integer.MAX_VALUE;
-    for (Map.Entry<FrameId, LRUKNode> entry : nodes.entrySet()) {
-      FrameId fId = entry.getKey();
-      LRUKNode node = entry.getValue();
-
-      int distance = node.getKthDistance(currentTimestamp);
-      int old = node.getOldestAccess();
-      if (node.isEvictable()
-          && (victimNode.isPresent()
-              || distance > maxDistance
-              || (distance == maxDistance && old < oldestTimestamp))) {
-        maxDistance = distance;
-        victimNode = Optional.of(fId);
-        oldestTimestamp = old;
-      }
-    }
-    if (victimNode.isPresent()) {
-      nodes.remove(victimNode.get());
-      currentSize--;
+  public LRUKReplacer(int firstFrame, int numFrames, int k) {
+    if (k < 1) {
+      throw new DBException(ErrorType.INVALID_ARGUMENT, "k must be positive, got " + k);
     }
-    return victimNode;
+    this.k = k;
+    this.firstFrame = firstFrame;
+    this.history = new long[numFrames * k];
+    this.count = new int[numFrames];
+    this.head = new int[numFrames];
+    this.key = new long[numFrames];
+    this.heap = new int[numFrames];
+    this.position = new int[numFrames];
+    Arrays.fill(position, -1);
   }
 
-  /**
-   * Pins/Unpins a frame in the buffer, preventing it from being replaced.
-   *
-   * @param frameId the FrameId of the frame to be pinned
-   */
-  public synchronized void setEvictable(FrameId frameId, boolean evictable) {
-    if (!nodes.containsKey(frameId)) {
-      throw new DBException(ErrorType.INVALID_FRAME_ID, "FrameId does not exist: " + frameId);
-    }
-    if (nodes.get(frameId).isEvictable() != evictable) {
-      nodes.get(frameId).setEvictable(evictable);
-      currentSize += evictable ? 1 : -1;
+  @Override
+  public synchronized Optional<FrameId> victim() {
+    if (heapSize == 0) {
+      return Optional.empty();
     }
+    int i = heap[0];
+    removeFromHeap(i);
+    count[i] = 0;
+    head[i] = 0;
+    return Optional.of(FrameId.store(firstFrame + i));
   }
 
-  /**
-   * Removes a frame from the replacer. This method should only be called for frames that are
-   * evictable.
-   *
-   * @param frameId the FrameId of the frame to be removed
-   */
-  public synchronized void removeFrame(FrameId frameId) {
-    if (!nodes.containsKey(frameId)) {
-      throw new DBException(ErrorType.INVALID_FRAME_ID, "FrameId does not exist: " + frameId);
+  @Override
+  public synchronized void pin(FrameId frameId) {
+    int i = tracked(frameId);
+    if (position[i] >= 0) {
+      removeFromHeap(i);
     }
-    if (!nodes.get(frameId).isEvictable()) {
-      throw new DBException(
-          ErrorType.INVALID_OPERATION, "Cannot remove a pinned frame: " + frameId);
+  }
+
+  @Override
+  public synchronized void unPin(FrameId frameId) {
+    int i = tracked(frameId);
+    if (position[i] < 0) {
+      position[i] = heapSize;
+      heap[heapSize++] = i;
+      siftUp(position[i]);
     }
-    nodes.remove(frameId);
   }
 
   /**
@@ -92,13 +113,48 @@ public class LRUKReplacer {
    *
    * @param frameId the FrameId of the frame that was accessed
    */
+  @Override
   public synchronized void recordAccess(FrameId frameId) {
-    currentTimestamp++;
-    if (!nodes.containsKey(frameId)) {
-      nodes.put(frameId, LRUKNode.builder().frameId(frameId).build());
+    int i = index(frameId);
+    history[i * k + head[i]] = ++currentTimestamp;
+    head[i] = head[i] + 1 == k ? 0 : head[i] + 1;
+    if (count[i] < k) {
+      count[i]++;
+    }
+
+    // Until the ring is full the oldest timestamp sits in slot 0, afterwards at the head.
+    long oldest = count[i] < k ? history[i * k] : history[i * k + head[i]] | FULL_HISTORY;
+    key[i] = oldest;
+    if (position[i] >= 0) {
+      siftDown(position[i]); // an access only ever moves a frame back in line
+    }
+  }
+
+  @Override
+  public synchronized void remove(FrameId frameId) {
+    int i = index(frameId);
+    if (position[i] >= 0) {
+      removeFromHeap(i);
+    }
+    count[i] = 0;
+    head[i] = 0;
+  }
+
+  /** Orders tracked frames by their key, the same order the heap keeps for evictable ones. */
+  @Override
+  public synchronized List<FrameId> evictionOrder() {
+    List<Integer> tracked = new ArrayList<>();
+    for (int i = 0; i < count.length; i++) {
+      if (count[i] > 0) {
+        tracked.add(i);
+      }
+    }
+    tracked.sort(Comparator.comparingLong(i -> key[i]));
+    List<FrameId> order = new ArrayList<>(tracked.size());
+    for (int i : tracked) {
+      order.add(FrameId.store(firstFrame + i));
     }
-    nodes.get(frameId).recordAccess(currentTimestamp);
-    currentSize--;
+    return order;
   }
 
   /**
@@ -106,7 +162,73 @@ public class LRUKReplacer {
    *
    * @return the number of elements in the replacer
    */
+  @Override
   public synchronized int size() {
-    return currentSize;
+    return heapSize;
+  }
+
+  private int index(FrameId frameId) {
+    int i = frameId.getValue() - firstFrame;
+    if (i < 0 || i >= count.length) {
+      throw new DBException(ErrorType.INVALID_FRAME_ID, "FrameId out of range: " + frameId);
+    }
+    return i;
+  }
+
+  private int tracked(FrameId frameId) {
+    int i = index(frameId);
+    if (count[i] == 0) {
+      throw new DBException(ErrorType.INVALID_FRAME_ID, "FrameId does not exist: " + frameId);
+    }
+    return i;
+  }
+
+  private void removeFromHeap(int i) {
+    int at = position[i];
+    int last = heap[--heapSize];
+    position[i] = -1;
+    if (last == i) {
+      return;
+    }
+    heap[at] = last;
+    position[last] = at;
+    siftDown(at);
+    siftUp(position[last]);
+  }
+
+  private void siftUp(int at) {
+    int i = heap[at];
+    while (at > 0) {
+      int parent = (at - 1) >>> 1;
+      if (key[heap[parent]] <= key[i]) {
+        break;
+      }
+      heap[at] = heap[parent];
+      position[heap[at]] = at;
+      at = parent;
+    }
+    heap[at] = i;
+    position[i] = at;
+  }
+
+  private void siftDown(int at) {
+    int i = heap[at];
+    while (true) {
+      int child = 2 * at + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && key[heap[child + 1]] < key[heap[child]]) {
+        child++;
+      }
+      if (key[i] <= key[heap[child]]) {
+        break;
+      }
+      heap[at] = heap[child];
+      position[heap[at]] = at;
+      at = child;
+    }
+    heap[at] = i;
+    position[i] = at;
   }
 }
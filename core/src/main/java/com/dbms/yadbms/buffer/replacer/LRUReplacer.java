@@ -45,6 +45,17 @@ public class LRUReplacer implements Replacer {
     }
   }
 
+  @Override
+  public void remove(FrameId frameId) {
+    lruMap.remove(frameId);
+    pinnedFrames.remove(frameId);
+  }
+
+  @Override
+  public List<FrameId> evictionOrder() {
+    return new ArrayList<>(lruMap.keySet());
+  }
+
   @Override
   public int size() {
     int count = 0;
@@ -1,11 +1,16 @@
 package com.dbms.yadbms.buffer.replacer;
 
 import com.dbms.yadbms.config.FrameId;
+import com.dbms.yadbms.config.PageId;
+import java.util.List;
 import java.util.Optional;
 
 /**
  * Replacer interface for managing frame replacement in a buffer. It is an interface that tracks the
  * frame usage.
+ *
+ * <p>Implementations must be thread-safe by synchronizing on themselves: the buffer pool holds the
+ * replacer's monitor to make a {@link #recordAccess} and a {@link #pin} of the same frame atomic.
  */
 public interface Replacer {
 
@@ -41,6 +46,48 @@ public interface Replacer {
    */
   public void recordAccess(FrameId frameId);
 
+  /**
+   * Records access to a frame holding the given page. Policies that remember pages after evicting
+   * them, such as ARC and 2Q, use the page id to recognize a page coming back; the others ignore it.
+   *
+   * @param frameId the FrameId of the frame that was accessed
+   * @param pageId the page the frame holds
+   */
+  public default void recordAccess(FrameId frameId, PageId pageId) {
+    recordAccess(frameId);
+  }
+
+  /**
+   * Puts back a frame that {@link #victim} returned but the pool could not evict, because the page
+   * was pinned meanwhile. The frame is tracked again, not evictable, without counting an access:
+   * policies with ghost lists forget the page they just remembered and return the frame to the
+   * list it came from. By default the frame is tracked as if its page had just been loaded.
+   *
+   * @param frameId the FrameId the last victim call returned
+   * @param pageId the page the frame still holds
+   */
+  public default void reinstate(FrameId frameId, PageId pageId) {
+    recordAccess(frameId, pageId);
+    pin(frameId);
+  }
+
+  /**
+   * Stops tracking a frame whatever its state, e.g. because the pool reuses it without asking for
+   * a victim. Unknown frames are ignored.
+   *
+   * @param frameId the FrameId of the frame to forget
+   */
+  public void remove(FrameId frameId);
+
+  /**
+   * Lists the frames the replacer tracks, pinned ones included, in the order it would currently
+   * evict them: the next victim first, the frame it values most last. Used to persist the hot set
+   * of the pool.
+   *
+   * @return the tracked frames, coldest first
+   */
+  public List<FrameId> evictionOrder();
+
   /**
    * Number of elements in the buffer.
    *
@@ -0,0 +1,39 @@
+package com.dbms.yadbms.buffer.replacer;
+
+import static com.dbms.yadbms.common.utils.Constants.LRU_REPLACER_K;
+
+/** Replacement policies a buffer pool can be built with. */
+public enum ReplacerType {
+  /** LRU-K with {@code LRU_REPLACER_K} accesses of history per frame. */
+  LRU_K,
+
+  /** CLOCK (second chance): one reference bit per frame and a sweeping hand. */
+  CLOCK,
+
+  /** Adaptive Replacement Cache, balancing recency and frequency with ghost lists. */
+  ARC,
+
+  /** 2Q: a FIFO for pages seen once, an LRU list for pages reused after leaving it. */
+  TWO_Q;
+
+  /**
+   * Creates a replacer of this type for a partition's frames.
+   *
+   * @param firstFrame smallest frame id the replacer manages
+   * @param numFrames number of consecutive frame ids it manages
+   * @return a fresh replacer
+   */
+  public Replacer create(int firstFrame, int numFrames) {
+    switch (this) {
+      case CLOCK:
+        return new ClockReplacer(firstFrame, numFrames);
+      case ARC:
+        return new ARCReplacer(firstFrame, numFrames);
+      case TWO_Q:
+        return new TwoQReplacer(firstFrame, numFrames);
+      case LRU_K:
+      default:
+        return new LRUKReplacer(firstFrame, numFrames, LRU_REPLACER_K);
+    }
+  }
+}
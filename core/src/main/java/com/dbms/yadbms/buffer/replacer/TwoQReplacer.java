@@ -0,0 +1,177 @@
+package com.dbms.yadbms.buffer.replacer;
+
+import com.dbms.yadbms.common.exceptions.DBException;
+import com.dbms.yadbms.common.exceptions.ErrorType;
+import com.dbms.yadbms.config.FrameId;
+import com.dbms.yadbms.config.PageId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 2Q replacement (Johnson and Shasha). A page loaded for the first time enters A1in, a FIFO
+ * holding about a quarter of the frames; repeated accesses while it is there do not promote it, so
+ * a scan passes through A1in without touching the rest of the pool. Pages evicted from A1in are
+ * remembered by {@link PageId} in the ghost FIFO A1out, and a page loaded again while it is still
+ * in A1out is known to be reused and goes to Am, an LRU list of the hot pages.
+ *
+ * <p>A1in is evicted from while it is above its share, Am otherwise. Pinned frames are skipped and
+ * the other queue is used if one has no evictable frame.
+ */
+public class TwoQReplacer implements Replacer {
+  private static final int A1_IN = 0;
+  private static final int AM = 1;
+  private static final int NO_PAGE = -1;
+
+  private final int firstFrame;
+
+  /** Size A1in is evicted down to. */
+  private final int maxIn;
+
+  private final FrameLists lists;
+
+  /** Page held by each tracked frame, or {@link #NO_PAGE} if it was not given. */
+  private final int[] pageOf;
+
+  private final boolean[] evictable;
+
+  /** Ghost FIFO of pages evicted from A1in, oldest first. */
+  private final GhostList a1Out;
+
+  private int evictableCount;
+
+  /**
+   * @param firstFrame smallest frame id the replacer manages
+   * @param numFrames number of consecutive frame ids it manages
+   */
+  public TwoQReplacer(int firstFrame, int numFrames) {
+    this.firstFrame = firstFrame;
+    this.maxIn = Math.max(1, numFrames / 4);
+    this.lists = new FrameLists(numFrames, 2);
+    this.pageOf = new int[numFrames];
+    this.evictable = new boolean[numFrames];
+    this.a1Out = new GhostList(Math.max(1, numFrames / 2));
+    Arrays.fill(pageOf, NO_PAGE);
+  }
+
+  @Override
+  public synchronized Optional<FrameId> victim() {
+    if (evictableCount == 0) {
+      return Optional.empty();
+    }
+    int preferred = lists.size(A1_IN) > maxIn ? A1_IN : AM;
+    int i = lists.oldestEvictable(preferred, evictable);
+    if (i == FrameLists.NONE) {
+      i = lists.oldestEvictable(preferred == A1_IN ? AM : A1_IN, evictable);
+    }
+    boolean fromIn = lists.listOf(i) == A1_IN;
+    lists.unlink(i);
+    evictable[i] = false;
+    evictableCount--;
+    if (fromIn && pageOf[i] != NO_PAGE) {
+      a1Out.addNewest(pageOf[i]); // drops the oldest ghost once A1out is full
+    }
+    pageOf[i] = NO_PAGE;
+    return Optional.of(FrameId.store(firstFrame + i));
+  }
+
+  @Override
+  public synchronized void pin(FrameId frameId) {
+    int i = tracked(frameId);
+    if (evictable[i]) {
+      evictable[i] = false;
+      evictableCount--;
+    }
+  }
+
+  @Override
+  public synchronized void unPin(FrameId frameId) {
+    int i = tracked(frameId);
+    if (!evictable[i]) {
+      evictable[i] = true;
+      evictableCount++;
+    }
+  }
+
+  @Override
+  public void recordAccess(FrameId frameId) {
+    recordAccess(frameId, null);
+  }
+
+  @Override
+  public synchronized void recordAccess(FrameId frameId, PageId pageId) {
+    int i = index(frameId);
+    int list = lists.listOf(i);
+    if (list == AM) {
+      lists.addMostRecent(AM, i);
+      return;
+    }
+    if (list == A1_IN) {
+      return; // correlated references while in A1in do not count as reuse
+    }
+
+    int page = pageId == null ? NO_PAGE : pageId.getValue();
+    pageOf[i] = page;
+    if (page != NO_PAGE && a1Out.remove(page)) {
+      lists.addMostRecent(AM, i);
+    } else {
+      lists.addMostRecent(A1_IN, i);
+    }
+  }
+
+  /** Back to the front of the queue it was evicted from; A1out only remembers A1in's pages. */
+  @Override
+  public synchronized void reinstate(FrameId frameId, PageId pageId) {
+    int i = index(frameId);
+    int page = pageId == null ? NO_PAGE : pageId.getValue();
+    boolean fromIn = page != NO_PAGE && a1Out.remove(page);
+    pageOf[i] = page;
+    lists.addLeastRecent(fromIn ? A1_IN : AM, i);
+  }
+
+  @Override
+  public synchronized void remove(FrameId frameId) {
+    int i = index(frameId);
+    if (evictable[i]) {
+      evictable[i] = false;
+      evictableCount--;
+    }
+    lists.unlink(i);
+    pageOf[i] = NO_PAGE;
+  }
+
+  /** Lists the list victims are taken from first, then the other, each least recently used first. */
+  @Override
+  public synchronized List<FrameId> evictionOrder() {
+    int preferred = lists.size(A1_IN) > maxIn ? A1_IN : AM;
+    List<FrameId> order = new ArrayList<>();
+    for (int list : new int[] {preferred, preferred == A1_IN ? AM : A1_IN}) {
+      for (int i = lists.first(list); i != FrameLists.NONE; i = lists.next(i)) {
+        order.add(FrameId.store(firstFrame + i));
+      }
+    }
+    return order;
+  }
+
+  @Override
+  public synchronized int size() {
+    return evictableCount;
+  }
+
+  private int index(FrameId frameId) {
+    int i = frameId.getValue() - firstFrame;
+    if (i < 0 || i >= pageOf.length) {
+      throw new DBException(ErrorType.INVALID_FRAME_ID, "FrameId out of range: " + frameId);
+    }
+    return i;
+  }
+
+  private int tracked(FrameId frameId) {
+    int i = index(frameId);
+    if (lists.listOf(i) == FrameLists.NONE) {
+      throw new DBException(ErrorType.INVALID_FRAME_ID, "FrameId does not exist: " + frameId);
+    }
+    return i;
+  }
+}
@@ -0,0 +1,72 @@
+package com.dbms.yadbms.config;
+
+import com.dbms.yadbms.buffer.replacer.ReplacerType;
+import com.dbms.yadbms.storage.disk.DiskScheduler;
+import java.nio.file.Path;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Tuning knobs of the buffer pool. Every option has a default, so {@code
+ * BufferPoolConfig.builder().build()} describes the plain single-partition, on-heap pool.
+ */
+@Builder
+@Getter
+public class BufferPoolConfig {
+
+  /** Number of independently latched partitions, between 1 and the number of frames. */
+  @Builder.Default private final int numPartitions = 1;
+
+  /** Replacement policy of every partition. */
+  @Builder.Default private final ReplacerType replacer = ReplacerType.LRU_K;
+
+  /**
+   * Most frames the pool can be grown to with {@code BufferPoolManager.resize}; 0 means the initial
+   * size. Frame bookkeeping is reserved for all of them up front, page memory only for frames in
+   * use, except that an off-heap arena is allocated for the maximum.
+   */
+  @Builder.Default private final int maxFrames = 0;
+
+  /**
+   * Back all frames with one off-heap region instead of a heap array per frame. Always on for a
+   * disk manager using direct I/O.
+   */
+  @Builder.Default private final boolean offHeap = false;
+
+  /**
+   * Share of each partition's frames, in [0, 1], that the background page cleaner keeps free or
+   * clean. 0 disables the cleaner, so evictions write dirty victims themselves.
+   */
+  @Builder.Default private final double cleanerWatermark = 0;
+
+  /** Most dirty frames the page cleaner writes per partition and round. */
+  @Builder.Default private final int cleanerBatchSize = 32;
+
+  /** Pause of the page cleaner between two rounds, in milliseconds. */
+  @Builder.Default private final long cleanerIntervalMillis = 10;
+
+  /**
+   * File the list of resident pages is kept in across restarts. A pool built with it reads the
+   * pages listed there back in the background, and saves its own list at shut down. Null disables
+   * warm-up.
+   */
+  @Builder.Default private final Path warmupFile = null;
+
+  /** Also save the resident page list this often, in milliseconds; 0 saves only at shut down. */
+  @Builder.Default private final long warmupIntervalMillis = 0;
+
+  /**
+   * Number of disk scheduler workers. Requests for one page always go to the same worker, so they
+   * stay in order; more workers keep more independent requests on the disk at once.
+   */
+  @Builder.Default private final int diskWorkers = DiskScheduler.DEFAULT_WORKERS;
+
+  /** Most page writes a disk scheduler worker covers with one fsync. */
+  @Builder.Default private final int groupCommitMaxWrites = DiskScheduler.DEFAULT_MAX_BATCH_WRITES;
+
+  /**
+   * How long, in microseconds, the first write of a batch may wait for more writes to share its
+   * fsync. 0 syncs as soon as no more writes are queued, which already batches concurrent writers.
+   */
+  @Builder.Default private final long groupCommitDelayMicros = 0;
+}
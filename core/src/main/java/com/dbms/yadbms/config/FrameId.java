@@ -12,7 +12,7 @@ public class FrameId {
   private final Integer value;
 
   public FrameId(Integer value) {
-    if (value <= 0) {
+    if (value < 0) {
       value = DEFAULT_FRAME_ID;
     }
     this.value = value;
@@ -0,0 +1,75 @@
+package com.dbms.yadbms.storage.disk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Page I/O through {@link FileChannel} calls. Single pages use positional reads and writes, which
+ * may run concurrently; runs of pages use the channel's vectored calls, which go through the
+ * channel position and so take turns.
+ */
+class ChannelPageStore implements PageStore {
+  private final FileChannel channel;
+
+  /** Held while a vectored read or write has moved the channel position. */
+  private final ReentrantLock gatherLock = new ReentrantLock();
+
+  ChannelPageStore(FileChannel channel) {
+    this.channel = channel;
+  }
+
+  @Override
+  public int read(long offset, ByteBuffer dst) throws IOException {
+    int start = dst.position();
+    while (dst.hasRemaining()) {
+      if (channel.read(dst, offset + dst.position() - start) == -1) {
+        break;
+      }
+    }
+    return dst.position() - start;
+  }
+
+  @Override
+  public void write(long offset, ByteBuffer src) throws IOException {
+    int start = src.position();
+    while (src.hasRemaining()) {
+      channel.write(src, offset + src.position() - start);
+    }
+  }
+
+  @Override
+  public void readRun(long offset, ByteBuffer[] run) throws IOException {
+    gatherLock.lock();
+    try {
+      channel.position(offset);
+      while (run[run.length - 1].hasRemaining()) {
+        if (channel.read(run) < 0) {
+          break;
+        }
+      }
+    } finally {
+      gatherLock.unlock();
+    }
+  }
+
+  @Override
+  public void writeRun(long offset, ByteBuffer[] run) throws IOException {
+    // Every other access to the file is positional, so only vectored calls share the position.
+    gatherLock.lock();
+    try {
+      channel.position(offset);
+      while (run[run.length - 1].hasRemaining()) {
+        channel.write(run);
+      }
+    } finally {
+      gatherLock.unlock();
+    }
+  }
+
+  @Override
+  public void force() throws IOException {
+    channel.force(true);
+  }
+}
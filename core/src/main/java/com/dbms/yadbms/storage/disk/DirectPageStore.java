@@ -0,0 +1,151 @@
+package com.dbms.yadbms.storage.disk;
+
+import com.dbms.yadbms.common.exceptions.DBException;
+import com.dbms.yadbms.common.exceptions.ErrorType;
+import com.sun.nio.file.ExtendedOpenOption;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Page I/O that bypasses the kernel page cache: the database file is opened a second time with
+ * {@link ExtendedOpenOption#DIRECT}, so pages live only in buffer pool frames instead of being
+ * cached twice, and a read always reaches the device.
+ *
+ * <p>Direct I/O needs offsets, lengths and memory aligned to the file system block size. Page
+ * offsets are aligned when the page size is a multiple of the block size, which is checked when
+ * the store is opened. Off-heap frames from the buffer pool's arena are aligned too and transfer
+ * straight from frame memory; other buffers are copied through an aligned buffer. Heap buffers are
+ * not left to the JDK, whose aligned temporary buffers end up in its per-thread buffer cache and
+ * break the next channel call on that thread that needs a larger one.
+ */
+class DirectPageStore implements PageStore {
+  private final FileChannel channel;
+
+  private final ChannelPageStore io;
+
+  private final int blockSize;
+
+  private final int pageSize;
+
+  /** Aligned buffer for copying pages to and from unaligned direct buffers, one per thread. */
+  private final ThreadLocal<ByteBuffer> bounce;
+
+  /**
+   * @param dbFilePath the database file, already created with its header
+   * @param pageSize page size of the file
+   * @param headerSize bytes before the first page
+   */
+  DirectPageStore(Path dbFilePath, int pageSize, int headerSize) throws IOException {
+    this.blockSize = Math.toIntExact(Files.getFileStore(dbFilePath).getBlockSize());
+    this.pageSize = pageSize;
+    if (pageSize % blockSize != 0 || headerSize % blockSize != 0) {
+      throw new DBException(
+          ErrorType.CONFIGURATION_ERROR,
+          "Direct I/O needs pages of a multiple of the "
+              + blockSize
+              + " byte block size, got "
+              + pageSize);
+    }
+    this.channel =
+        FileChannel.open(
+            dbFilePath,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            ExtendedOpenOption.DIRECT);
+    this.io = new ChannelPageStore(channel);
+    this.bounce = ThreadLocal.withInitial(() -> allocateAligned(pageSize));
+  }
+
+  @Override
+  public int read(long offset, ByteBuffer dst) throws IOException {
+    if (aligned(dst)) {
+      return io.read(offset, dst);
+    }
+    ByteBuffer copy = bounce(dst.remaining());
+    int read = io.read(offset, copy);
+    dst.put(copy.flip());
+    return read;
+  }
+
+  @Override
+  public void write(long offset, ByteBuffer src) throws IOException {
+    if (aligned(src)) {
+      io.write(offset, src);
+      return;
+    }
+    ByteBuffer copy = bounce(src.remaining());
+    copy.put(src).flip();
+    io.write(offset, copy);
+  }
+
+  @Override
+  public void readRun(long offset, ByteBuffer[] run) throws IOException {
+    if (allAligned(run)) {
+      io.readRun(offset, run);
+      return;
+    }
+    for (ByteBuffer page : run) {
+      int wanted = page.remaining();
+      if (read(offset, page) < wanted) {
+        return;
+      }
+      offset += wanted;
+    }
+  }
+
+  @Override
+  public void writeRun(long offset, ByteBuffer[] run) throws IOException {
+    if (allAligned(run)) {
+      io.writeRun(offset, run);
+      return;
+    }
+    for (ByteBuffer page : run) {
+      int length = page.remaining();
+      write(offset, page);
+      offset += length;
+    }
+  }
+
+  @Override
+  public void force() throws IOException {
+    // Direct writes skip the page cache, not the device's write cache.
+    channel.force(true);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /** True if the buffer can go to a direct read or write as is. */
+  private boolean aligned(ByteBuffer buffer) {
+    return buffer.isDirect() && buffer.alignmentOffset(buffer.position(), blockSize) == 0;
+  }
+
+  private boolean allAligned(ByteBuffer[] run) {
+    for (ByteBuffer page : run) {
+      if (!aligned(page)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** This thread's aligned buffer, cleared and limited to {@code length} bytes. */
+  private ByteBuffer bounce(int length) {
+    if (length > pageSize) {
+      return allocateAligned(length);
+    }
+    ByteBuffer copy = bounce.get();
+    copy.clear().limit(length);
+    return copy;
+  }
+
+  private ByteBuffer allocateAligned(int length) {
+    return ByteBuffer.allocateDirect(length + blockSize - 1).alignedSlice(blockSize).limit(length);
+  }
+}
@@ -1,6 +1,8 @@
 package com.dbms.yadbms.storage.disk;
 
 import static com.dbms.yadbms.common.utils.Constants.DEFAULT_DB_IO_SIZE;
+import static com.dbms.yadbms.common.utils.Constants.MAX_PAGE_SIZE;
+import static com.dbms.yadbms.common.utils.Constants.MIN_PAGE_SIZE;
 import static com.dbms.yadbms.common.utils.Constants.PAGE_SIZE;
 
 import com.dbms.yadbms.common.exceptions.DBException;
@@ -13,6 +15,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -21,9 +25,27 @@ import lombok.extern.slf4j.Slf4j;
  * DiskManager is responsible for managing the database file and log file on disk. It handles
  * reading and writing pages, allocating new pages, and managing free slots. It also provides
  * methods to write and read logs.
+ *
+ * <p>The database file starts with a header recording its format and page size, so each database
+ * can pick the page size that suits it; pages follow the header, which is one default page long to
+ * keep them aligned.
+ *
+ * <p>Page reads and writes may be called from many threads at once: they use positional I/O on
+ * the shared channel and only take a short lock to allocate or free a page's slot, so the disk
+ * scheduler's workers keep several requests on the disk at a time. Callers order the requests for
+ * one page themselves, and a page must not be deleted while I/O on it is outstanding.
+ *
+ * <p>The page bytes themselves are moved by the {@link StorageBackend} picked when the file is
+ * opened: channel reads and writes, or copies to and from a memory mapping of the file.
  */
 @Slf4j
 public class DiskManager {
+  /** Bytes reserved for the file header at the start of the database file. */
+  static final int FILE_HEADER_SIZE = PAGE_SIZE;
+
+  private static final int FILE_MAGIC = 0x59444231; // "YDB1"
+
+  private static final int FILE_FORMAT_VERSION = 1;
 
   private final Path dbFilePath;
   private final Path logFilePath;
@@ -31,15 +53,42 @@ public class DiskManager {
   private final FileChannel dbChannel;
   private final FileChannel logChannel;
 
+  /** Moves page bytes between buffers and the database file. */
+  private final PageStore store;
+
+  @Getter private final StorageBackend backend;
+
   private long pageCapacity = DEFAULT_DB_IO_SIZE;
 
-  @Getter private long numWrites;
+  /** Size of every page of this database file, as recorded in its header. */
+  @Getter private final int pageSize;
+
+  private final AtomicLong numWrites = new AtomicLong();
 
   @Getter private long numDeletes;
 
+  /** Number of times the log was forced to disk. */
   @Getter private long numFlushes;
 
-  /** records the pageId vs offset */
+  /** Number of times the database file was forced to disk. */
+  private final AtomicLong numSyncs = new AtomicLong();
+
+  /** Guards slot allocation: {@link #freeSlots}, {@link #pageCapacity} and adding to the map. */
+  private final ReentrantLock allocationLock = new ReentrantLock();
+
+  /** Serializes log appends; guards {@link #logAppended}. */
+  private final ReentrantLock logAppendLock = new ReentrantLock();
+
+  /** Held by the thread forcing the log on behalf of every append before it. */
+  private final ReentrantLock logForceLock = new ReentrantLock();
+
+  /** Bytes appended to the log by this manager. */
+  private long logAppended;
+
+  /** How many of the appended bytes are known to be on disk. */
+  private volatile long logDurable;
+
+  /** records the pageId vs offset; read without a lock, changed under {@link #allocationLock} */
   private final Map<PageId, Long> pages;
 
   /** records the free slots in the DB file if pages are deleted, indicated by offset; */
@@ -47,12 +96,37 @@ public class DiskManager {
 
   /**
    * Constructs a DiskManager with the specified database file path. Initializes the log file and
-   * database file channels, and sets up a shutdown hook to close them on exit.
+   * database file channels, and sets up a shutdown hook to close them on exit. An existing file
+   * keeps the page size in its header; a new one gets the default {@code PAGE_SIZE}.
    *
    * @param dbFilePath the path to the database file
    */
   public DiskManager(Path dbFilePath) {
+    this(dbFilePath, 0);
+  }
+
+  /**
+   * Constructs a DiskManager whose database file uses the given page size.
+   *
+   * @param dbFilePath the path to the database file
+   * @param pageSize page size of a new file, a power of two between {@code MIN_PAGE_SIZE} and
+   *     {@code MAX_PAGE_SIZE}; an existing file must have been created with the same size. 0 takes
+   *     the size from the file, or the default for a new one.
+   */
+  public DiskManager(Path dbFilePath, int pageSize) {
+    this(dbFilePath, pageSize, StorageBackend.CHANNEL);
+  }
+
+  /**
+   * Constructs a DiskManager whose pages are read and written through the given backend.
+   *
+   * @param dbFilePath the path to the database file
+   * @param pageSize page size of a new file, see {@link #DiskManager(Path, int)}
+   * @param backend how page bytes move between buffers and the file
+   */
+  public DiskManager(Path dbFilePath, int pageSize, StorageBackend backend) {
     this.dbFilePath = dbFilePath;
+    this.backend = backend;
     String logFileName = dbFilePath.getFileName().toString().replaceFirst("\\.[^.]+$", "") + ".log";
     this.logFilePath = dbFilePath.getParent().resolve(logFileName);
 
@@ -74,19 +148,17 @@ public class DiskManager {
           Files.createFile(dbFilePath);
         }
         dbChannel = FileChannel.open(dbFilePath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.pageSize = openHeader(pageSize);
+        this.store = backend.create(dbFilePath, dbChannel, this.pageSize);
 
-        long requiredSize = (pageCapacity + 1) * PAGE_SIZE;
-        if (Files.size(dbFilePath) < requiredSize) {
-          dbChannel.truncate(requiredSize);
-        }
+        extendTo(FILE_HEADER_SIZE + (pageCapacity + 1) * this.pageSize);
 
       } finally {
         dbIOLock.unlock();
       }
 
-      pages = new HashMap<>();
+      pages = new ConcurrentHashMap<>();
       freeSlots = new ArrayDeque<>();
-      numWrites = 0;
       numDeletes = 0;
       numFlushes = 0;
     } catch (IOException e) {
@@ -94,9 +166,72 @@ public class DiskManager {
     }
   }
 
+  /**
+   * Read the page size from the file header, or write a header for a new, empty file. A non-empty
+   * file without a header is refused rather than overwritten.
+   *
+   * @param requested page size asked for, or 0 for the file's or the default one
+   * @return the page size of the file
+   */
+  private int openHeader(int requested) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+    while (header.hasRemaining()) {
+      if (dbChannel.read(header, header.position()) <= 0) {
+        break; // a new or headerless file
+      }
+    }
+    if (header.getInt(0) == FILE_MAGIC) {
+      int stored = header.getInt(2 * Integer.BYTES);
+      if (requested != 0 && requested != stored) {
+        throw new DBException(
+            ErrorType.CONFIGURATION_ERROR,
+            dbFilePath + " uses " + stored + " byte pages, not " + requested);
+      }
+      checkPageSize(stored);
+      return stored;
+    }
+
+    // Only an empty file gets a header; writing one over a file from before headers existed would
+    // destroy its first page.
+    if (dbChannel.size() != 0) {
+      throw new DBException(
+          ErrorType.CONFIGURATION_ERROR, dbFilePath + " is not empty and has no database header");
+    }
+    int chosen = requested == 0 ? PAGE_SIZE : requested;
+    checkPageSize(chosen);
+    header.clear();
+    Arrays.fill(header.array(), (byte) 0);
+    header.putInt(0, FILE_MAGIC);
+    header.putInt(Integer.BYTES, FILE_FORMAT_VERSION);
+    header.putInt(2 * Integer.BYTES, chosen);
+    while (header.hasRemaining()) {
+      dbChannel.write(header, header.position());
+    }
+    dbChannel.force(true);
+    return chosen;
+  }
+
+  private static void checkPageSize(int pageSize) {
+    if (pageSize < MIN_PAGE_SIZE
+        || pageSize > MAX_PAGE_SIZE
+        || Integer.bitCount(pageSize) != 1) {
+      throw new DBException(
+          ErrorType.INVALID_ARGUMENT,
+          "Page size must be a power of two in ["
+              + MIN_PAGE_SIZE
+              + ", "
+              + MAX_PAGE_SIZE
+              + "], got "
+              + pageSize);
+    }
+  }
+
   /** Shuts down the DiskManager by closing the database and log file channels. */
   public synchronized void shutDown() {
     try {
+      if (store != null) {
+        store.close();
+      }
       if (dbChannel != null && dbChannel.isOpen()) {
         dbChannel.close();
       }
@@ -115,31 +250,157 @@ public class DiskManager {
    * @param pageId the PageId of the page to write
    * @param pageData the data to write to the page
    */
-  public synchronized void writePage(PageId pageId, byte[] pageData) {
-    long offset =
-        pages.computeIfAbsent(
-            pageId,
-            id -> {
-              try {
-                return allocatePage();
-              } catch (IOException e) {
-                throw new DBException(
-                    ErrorType.IO_ERROR, "Failed to allocate page for pageId: " + pageId.toString());
-              }
-            });
+  public void writePage(PageId pageId, byte[] pageData) {
+    writePage(pageId, ByteBuffer.wrap(pageData));
+  }
+
+  /**
+   * Writes a page from a buffer. The whole buffer, from 0 to its capacity, is written; a direct
+   * buffer goes to the channel without being copied to the heap first.
+   *
+   * @param pageId the PageId of the page to write
+   * @param page the page bytes
+   */
+  public void writePage(PageId pageId, ByteBuffer page) {
+    writeUnsynced(pageId, page);
+    sync();
+  }
+
+  /**
+   * Writes a page like {@link #writePage(PageId, ByteBuffer)} but leaves forcing it to disk to a
+   * later {@link #sync}, so the disk scheduler can cover a batch of writes with one fsync.
+   *
+   * @param pageId the PageId of the page to write
+   * @param page the page bytes
+   */
+  void writeUnsynced(PageId pageId, ByteBuffer page) {
+    checkPageBuffer(page);
+    long offset = offsetOf(pageId);
 
     try {
-      ByteBuffer buffer = ByteBuffer.wrap(pageData);
-      int bytesWritten = dbChannel.write(buffer, offset);
+      store.write(offset, page.duplicate().clear());
+      numWrites.incrementAndGet();
+    } catch (IOException e) {
+      throw new DBException(ErrorType.IO_ERROR, "Failed to write to pageId: " + pageId.toString());
+    }
+  }
+
+  /**
+   * Writes a batch of pages without forcing them to disk; call {@link #sync} once the batch, or a
+   * series of them, should be durable. The pages are written in file order, and runs of pages that
+   * are adjacent in the file go out as one gathering write.
+   *
+   * @param pageIds the pages to write, each at most once
+   * @param buffers the bytes of each page, in the order of {@code pageIds}
+   */
+  public void writePages(List<PageId> pageIds, List<ByteBuffer> buffers) {
+    transferRuns(pageIds, buffers, true);
+    numWrites.addAndGet(pageIds.size());
+  }
+
+  /**
+   * Reads a batch of pages, in file order; runs of pages that are adjacent in the file come in as
+   * one scattering read. Like {@link #readPage(PageId, ByteBuffer)}, a page that was never written
+   * gets a slot allocated, and bytes past the end of the file read as zeros.
+   *
+   * @param pageIds the pages to read, each at most once
+   * @param buffers the buffer each page is read into, in the order of {@code pageIds}
+   */
+  public void readPages(List<PageId> pageIds, List<ByteBuffer> buffers) {
+    transferRuns(pageIds, buffers, false);
+  }
+
+  /** Sort pages by offset and move each run of adjacent pages with one vectored call. */
+  private void transferRuns(List<PageId> pageIds, List<ByteBuffer> buffers, boolean write) {
+    int n = pageIds.size();
+    long[] offsets = new long[n];
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      checkPageBuffer(buffers.get(i));
+      offsets[i] = offsetOf(pageIds.get(i));
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparingLong(i -> offsets[i]));
 
-      if (bytesWritten == -1) {
-        log.error("Failed to write to {} pageId", pageId.getValue());
+    int start = 0;
+    while (start < n) {
+      int end = start + 1;
+      while (end < n && offsets[order[end]] == offsets[order[end - 1]] + pageSize) {
+        end++;
+      }
+      ByteBuffer[] run = new ByteBuffer[end - start];
+      for (int i = start; i < end; i++) {
+        run[i - start] = buffers.get(order[i]).duplicate().clear();
+      }
+      try {
+        if (write) {
+          store.writeRun(offsets[order[start]], run);
+        } else {
+          store.readRun(offsets[order[start]], run);
+          for (ByteBuffer buffer : run) {
+            while (buffer.hasRemaining()) {
+              buffer.put((byte) 0); // past the end of the file
+            }
+          }
+        }
+      } catch (IOException e) {
+        PageId first = pageIds.get(order[start]);
+        throw new DBException(
+            ErrorType.IO_ERROR,
+            "Failed to " + (write ? "write" : "read") + " pages from pageId: " + first,
+            e);
       }
-      numWrites++;
-      pages.put(pageId, offset);
-      dbChannel.force(true);
+      start = end;
+    }
+  }
+
+  /** Forces the pages written so far to disk. */
+  public void sync() {
+    try {
+      store.force();
+      numSyncs.incrementAndGet();
     } catch (IOException e) {
-      throw new DBException(ErrorType.IO_ERROR, "Failed to write to pageId: " + pageId.toString());
+      throw new DBException(ErrorType.IO_ERROR, "Failed to sync " + dbFilePath, e);
+    }
+  }
+
+  private void checkPageBuffer(ByteBuffer page) {
+    if (page.capacity() != pageSize) {
+      throw new DBException(
+          ErrorType.INVALID_ARGUMENT,
+          "Page buffer of " + page.capacity() + " bytes for a file of " + pageSize + " byte pages");
+    }
+  }
+
+  public long getNumWrites() {
+    return numWrites.get();
+  }
+
+  /** Number of times the database file was forced to disk. */
+  public long getNumSyncs() {
+    return numSyncs.get();
+  }
+
+  /** Offset of a page in the file, allocating a slot for a page used for the first time. */
+  private long offsetOf(PageId pageId) {
+    Long offset = pages.get(pageId);
+    if (offset != null) {
+      return offset;
+    }
+    allocationLock.lock();
+    try {
+      return pages.computeIfAbsent(
+          pageId,
+          id -> {
+            try {
+              return allocatePage();
+            } catch (IOException e) {
+              throw new DBException(
+                  ErrorType.IO_ERROR, "Failed to allocate page for pageId: " + pageId.toString());
+            }
+          });
+    } finally {
+      allocationLock.unlock();
     }
   }
 
@@ -150,20 +411,21 @@ public class DiskManager {
    * @param pageId the PageId of the page to read
    * @param pageData the byte array to store the read data
    */
-  public synchronized void readPage(PageId pageId, byte[] pageData) {
+  public void readPage(PageId pageId, byte[] pageData) {
+    readPage(pageId, ByteBuffer.wrap(pageData));
+  }
+
+  /**
+   * Reads a page into a buffer, filling it from 0 to its capacity. A direct buffer is filled by the
+   * channel without an intermediate heap copy; with {@link StorageBackend#MMAP} the read is a copy
+   * from the mapping.
+   *
+   * @param pageId the PageId of the page to read
+   * @param page the buffer to store the read data
+   */
+  public void readPage(PageId pageId, ByteBuffer page) {
     try {
-      long offset =
-          pages.computeIfAbsent(
-              pageId,
-              id -> {
-                try {
-                  return allocatePage();
-                } catch (IOException e) {
-                  throw new DBException(
-                      ErrorType.IO_ERROR,
-                      "Failed to allocate page for pageId: " + pageId.toString());
-                }
-              });
+      long offset = offsetOf(pageId);
 
       long fileSize = Files.size(dbFilePath);
       if (offset > fileSize) {
@@ -171,19 +433,15 @@ public class DiskManager {
         return;
       }
 
-      pages.put(pageId, offset); // store the mapping
-
-      ByteBuffer buffer = ByteBuffer.wrap(pageData);
-      int bytesRead = dbChannel.read(buffer, offset);
-
-      if (bytesRead == -1) {
-        log.error("I/O error: Unable to read page {} at offset {}", pageId, offset);
-        return;
-      }
+      ByteBuffer buffer = page.duplicate().clear();
+      store.read(offset, buffer);
 
-      if (bytesRead < PAGE_SIZE) {
-        log.error("Partial read: Page {} read {} bytes, filling rest with 0s", pageId, bytesRead);
-        Arrays.fill(pageData, bytesRead, PAGE_SIZE, (byte) 0);
+      if (buffer.hasRemaining()) {
+        log.error(
+            "Partial read: Page {} read {} bytes, filling rest with 0s", pageId, buffer.position());
+        while (buffer.hasRemaining()) {
+          buffer.put((byte) 0);
+        }
       }
 
     } catch (IOException e) {
@@ -197,34 +455,77 @@ public class DiskManager {
    *
    * @param pageId the PageId of the page to delete
    */
-  public synchronized void deletePage(PageId pageId) {
-    if (!pages.containsKey(pageId)) {
-      return;
+  public void deletePage(PageId pageId) {
+    allocationLock.lock();
+    try {
+      Long offset = pages.remove(pageId);
+      if (offset == null) {
+        return;
+      }
+      freeSlots.addLast(offset);
+      numDeletes++;
+    } finally {
+      allocationLock.unlock();
     }
-    freeSlots.addLast(pages.get(pageId));
-    pages.remove(pageId);
-    numDeletes++;
+  }
+
+  /**
+   * Returns where a page lives in the database file, so callers can order writes by position.
+   *
+   * @param pageId the page to look up
+   * @return the byte offset of the page, or -1 if it has not been allocated yet
+   */
+  public long getPageOffset(PageId pageId) {
+    return pages.getOrDefault(pageId, -1L);
   }
 
   /**
    * Writes a log entry to the log file. The log entry is appended to the end of the log file and
-   * flushed to disk.
+   * flushed to disk before the call returns.
+   *
+   * <p>Appends are group committed: one force covers every entry appended before it, so threads
+   * logging concurrently share a force instead of queueing one each, and an entry that another
+   * thread's force already covered returns without forcing at all.
    *
    * @param logData the byte array containing the log data
    * @param size the size of the log data to write
    */
-  public synchronized void writeLog(byte[] logData, int size) {
+  public void writeLog(byte[] logData, int size) {
+    long end;
+    logAppendLock.lock();
     try {
-      // Write to log file
       ByteBuffer buffer = ByteBuffer.wrap(logData, 0, size);
-      logChannel.write(buffer); // append at current position
+      while (buffer.hasRemaining()) {
+        logChannel.write(buffer); // append at current position
+      }
+      logAppended += size;
+      end = logAppended;
+    } catch (IOException e) {
+      log.error("I/O error while writing log: {}", e.getMessage());
+      return;
+    } finally {
+      logAppendLock.unlock();
+    }
 
-      // Force flush to disk
+    logForceLock.lock();
+    try {
+      if (logDurable >= end) {
+        return; // covered by the force of a thread that appended later
+      }
+      long covered;
+      logAppendLock.lock();
+      try {
+        covered = logAppended;
+      } finally {
+        logAppendLock.unlock();
+      }
       logChannel.force(true);
-
+      logDurable = covered;
       numFlushes += 1;
     } catch (IOException e) {
-      log.error("I/O error while writing log: {}", e.getMessage());
+      log.error("I/O error while forcing log: {}", e.getMessage());
+    } finally {
+      logForceLock.unlock();
     }
   }
 
@@ -237,7 +538,7 @@ public class DiskManager {
    * @param offset the offset in the log file to read from
    * @return true if the read was successful, false otherwise
    */
-  public synchronized boolean readLog(byte[] logData, int size, int offset) {
+  public boolean readLog(byte[] logData, int size, int offset) {
     try {
       long fileSize = Files.size(logFilePath);
       if (offset > fileSize) {
@@ -254,7 +555,7 @@ public class DiskManager {
 
       if (bytesRead < size) {
         log.error("Partial read:  for log file size {} and bytes read {}", size, bytesRead);
-        Arrays.fill(logData, bytesRead, PAGE_SIZE, (byte) 0);
+        Arrays.fill(logData, bytesRead, size, (byte) 0);
       }
       return true;
     } catch (IOException e) {
@@ -265,25 +566,39 @@ public class DiskManager {
 
   /**
    * Allocates a new page in the database file. If there are free slots available, it reuses one of
-   * them. If the current page capacity is exceeded, it doubles the capacity and truncates the file
+   * them. If the current page capacity is exceeded, it doubles the capacity and extends the file
    * accordingly.
    *
    * @return the offset of the allocated page
    * @throws IOException if an I/O error occurs while allocating the page
    */
   public long allocatePage() throws IOException {
-    if (!freeSlots.isEmpty()) {
-      long offset = freeSlots.getLast();
-      freeSlots.removeLast();
-      return offset;
-    }
+    allocationLock.lock();
+    try {
+      if (!freeSlots.isEmpty()) {
+        long offset = freeSlots.getLast();
+        freeSlots.removeLast();
+        return offset;
+      }
+
+      if (pages.size() > pageCapacity) {
+        pageCapacity *= 2;
+        extendTo(FILE_HEADER_SIZE + (pageCapacity + 1) * pageSize);
+      }
 
-    if (pages.size() > pageCapacity) {
-      pageCapacity *= 2;
-      long requiredSize = (pageCapacity + 1) * PAGE_SIZE;
-      dbChannel.truncate(requiredSize);
+      return FILE_HEADER_SIZE + (long) pages.size() * pageSize;
+    } finally {
+      allocationLock.unlock();
     }
+  }
 
-    return (long) pages.size() * PAGE_SIZE;
+  /**
+   * Grow the database file to at least {@code size} bytes. It is never shrunk: a memory-mapped
+   * store may have grown it further, and cutting off mapped bytes would fault on their next access.
+   */
+  private void extendTo(long size) throws IOException {
+    if (dbChannel.size() < size) {
+      dbChannel.write(ByteBuffer.allocate(1), size - 1);
+    }
   }
 }
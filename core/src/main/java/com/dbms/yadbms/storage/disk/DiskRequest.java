@@ -1,15 +1,22 @@
 package com.dbms.yadbms.storage.disk;
 
 import com.dbms.yadbms.config.PageId;
+import java.nio.ByteBuffer;
 import java.util.concurrent.CompletableFuture;
 import lombok.Builder;
 import lombok.Getter;
 
+/**
+ * A page read or write for the {@link DiskScheduler}. The page bytes are given either as a heap
+ * array ({@code data}) or as a buffer ({@code buffer}); buffer pool frames use the latter so direct
+ * frames are transferred without an intermediate copy.
+ */
 @Builder
 @Getter
 public class DiskRequest {
   private boolean isWrite;
   private byte[] data;
+  private ByteBuffer buffer;
   private PageId pageId;
   private CompletableFuture<Boolean> callback;
 }
@@ -1,57 +1,264 @@
 package com.dbms.yadbms.storage.disk;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.dbms.yadbms.common.exceptions.DBException;
+import com.dbms.yadbms.common.exceptions.ErrorType;
 import com.dbms.yadbms.common.utils.Channel;
 import com.dbms.yadbms.config.PageId;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * DiskScheduler is responsible for scheduling disk read/write requests. It uses a background thread
+ * DiskScheduler is responsible for scheduling disk read/write requests. It uses background threads
  * to process requests asynchronously. All reads stops when a poison pill is received or the
  * scheduler is shut down or the pageId overflows.
+ *
+ * <p>Requests are spread over a pool of workers by a hash of their page id, each worker draining
+ * its own queue in order. Requests for one page therefore keep the order they were scheduled in,
+ * while requests for different pages reach the disk in parallel, keeping several of them queued on
+ * devices that serve many at once. Pages are routed in runs of {@link #ROUTING_RUN} consecutive
+ * ids, so neighbouring pages usually share a worker.
+ *
+ * <p>A worker takes every request already queued, up to what the current fsync batch still has
+ * room for, and serves requests whose pages are adjacent in the file with one vectored read or
+ * write. A checkpoint, a bulk load or a read-ahead then moves its pages in a few large I/Os instead
+ * of one call per page. Requests for a page queued twice in one go are served in two steps, so
+ * their order still holds.
+ *
+ * <p>Writes are group committed: a worker writes pages without forcing them and covers a batch of
+ * writes with one fsync, issued once the batch is full, once no further request is queued and the
+ * batch delay has passed, or before shutting down. A write's callback completes only after the
+ * fsync covering it returned, so callers still wait for durability, but a disk that manages a
+ * bounded number of fsyncs per second is no longer limited to as many writes.
  */
 public class DiskScheduler {
+  /** Number of workers, by default. */
+  public static final int DEFAULT_WORKERS = 4;
+
+  /** Number of consecutive page ids routed to the same worker. */
+  static final int ROUTING_RUN = 16;
 
-  private final Channel<DiskRequest> requestChannel;
+  /** Most writes covered by one fsync, by default. */
+  public static final int DEFAULT_MAX_BATCH_WRITES = 64;
 
   private final DiskManager diskManager;
 
-  private final Thread backgroundThread;
+  private final Worker[] workers;
+
+  private final int maxBatchWrites;
+
+  private final long maxBatchDelayNanos;
 
   private final DiskRequest poisonPill =
       DiskRequest.builder().isWrite(false).data(null).pageId(new PageId(Integer.MAX_VALUE)).build();
 
   public DiskScheduler(DiskManager diskManager) {
+    this(diskManager, DEFAULT_WORKERS, DEFAULT_MAX_BATCH_WRITES, 0);
+  }
+
+  /**
+   * @param diskManager the disk manager requests are served by
+   * @param numWorkers number of worker threads, at least 1
+   * @param maxBatchWrites most writes covered by one fsync, at least 1
+   * @param maxBatchDelayMicros how long the first write of a batch may wait for more writes to
+   *     share its fsync; 0 syncs as soon as the queue is drained
+   */
+  public DiskScheduler(
+      DiskManager diskManager, int numWorkers, int maxBatchWrites, long maxBatchDelayMicros) {
+    if (numWorkers < 1 || maxBatchWrites < 1 || maxBatchDelayMicros < 0) {
+      throw new DBException(
+          ErrorType.INVALID_ARGUMENT,
+          "Invalid disk scheduler settings: "
+              + numWorkers
+              + " workers, "
+              + maxBatchWrites
+              + " writes, "
+              + maxBatchDelayMicros
+              + " us");
+    }
     this.diskManager = diskManager;
+    this.maxBatchWrites = maxBatchWrites;
+    this.maxBatchDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxBatchDelayMicros);
 
-    requestChannel = new Channel<>();
-    backgroundThread = new Thread(this::startWorkerThread);
-    backgroundThread.setName("DiskScheduler-Worker-Thread");
-    backgroundThread.setDaemon(true);
-    backgroundThread.start();
+    workers = new Worker[numWorkers];
+    for (int i = 0; i < numWorkers; i++) {
+      workers[i] = new Worker("DiskScheduler-Worker-Thread-" + i);
+    }
+  }
+
+  /**
+   * Creates a promise for a request callback. The worker completes it once the request has been
+   * served, so callers that need the bytes (or durability) can wait on it.
+   *
+   * @return a fresh, incomplete future
+   */
+  public CompletableFuture<Boolean> createPromise() {
+    return new CompletableFuture<>();
   }
 
   public void schedule(DiskRequest req) {
-    requestChannel.put(req);
+    workers[route(req.getPageId())].requests.put(req);
   }
 
-  public void startWorkerThread() {
-    try {
-      while (true) {
-        DiskRequest request = requestChannel.get();
+  /** Worker serving a page. Runs of page ids are scattered so that no worker gets them all. */
+  private int route(PageId pageId) {
+    int h = (pageId.getValue() / ROUTING_RUN) * 0x9E3779B9;
+    return Math.floorMod(h ^ (h >>> 16), workers.length);
+  }
+
+  /** One worker thread with its own queue and its own batch of writes waiting for an fsync. */
+  private class Worker {
+    private final Channel<DiskRequest> requests = new Channel<>();
+
+    private final Thread thread;
 
-        if (request == poisonPill) {
-          break;
+    Worker(String name) {
+      thread = new Thread(this::run);
+      thread.setName(name);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    private void run() {
+      // Callbacks of the writes since the last fsync, and when the first of them was written.
+      List<CompletableFuture<Boolean>> unsynced = new ArrayList<>(maxBatchWrites);
+      List<DiskRequest> batch = new ArrayList<>(maxBatchWrites);
+      long batchStart = 0;
+      try {
+        while (true) {
+          DiskRequest request;
+          if (unsynced.isEmpty()) {
+            request = requests.get();
+          } else {
+            long wait = batchStart + maxBatchDelayNanos - System.nanoTime();
+            request = requests.poll(wait, NANOSECONDS);
+            if (request == null) {
+              syncBatch(unsynced);
+              continue;
+            }
+          }
+
+          batch.clear();
+          batch.add(request);
+          requests.drainTo(batch, maxBatchWrites - unsynced.size() - 1);
+          int stop = batch.indexOf(poisonPill);
+          boolean last = stop >= 0;
+          if (unsynced.isEmpty()) {
+            batchStart = System.nanoTime();
+          }
+          serve(last ? batch.subList(0, stop) : batch, unsynced);
+          if (last) {
+            break;
+          }
+          if (unsynced.size() >= maxBatchWrites) {
+            syncBatch(unsynced);
+          }
         }
-        processRequest(request);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        syncBatch(unsynced);
       }
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
     }
   }
 
-  private void processRequest(DiskRequest request) {
+  /**
+   * Serve requests taken from a queue together, adding the writes to {@code unsynced}. The batch is
+   * cut wherever a page repeats, and each part, which then touches every page once, is served with
+   * vectored reads and writes.
+   */
+  private void serve(List<DiskRequest> batch, List<CompletableFuture<Boolean>> unsynced) {
+    Set<PageId> seen = new HashSet<>();
+    int from = 0;
+    for (int i = 0; i < batch.size(); i++) {
+      if (!seen.add(batch.get(i).getPageId())) {
+        serveDistinct(batch.subList(from, i), unsynced);
+        seen.clear();
+        seen.add(batch.get(i).getPageId());
+        from = i;
+      }
+    }
+    serveDistinct(batch.subList(from, batch.size()), unsynced);
+  }
+
+  private void serveDistinct(List<DiskRequest> part, List<CompletableFuture<Boolean>> unsynced) {
+    if (part.size() == 1) {
+      if (processRequest(part.get(0))) {
+        unsynced.add(part.get(0).getCallback());
+      }
+      return;
+    }
+    List<DiskRequest> writes = new ArrayList<>();
+    List<DiskRequest> reads = new ArrayList<>();
+    for (DiskRequest request : part) {
+      (request.isWrite() ? writes : reads).add(request);
+    }
+    if (!writes.isEmpty()) {
+      try {
+        diskManager.writePages(pageIds(writes), pageBuffers(writes));
+        for (DiskRequest write : writes) {
+          unsynced.add(write.getCallback());
+        }
+      } catch (Exception e) {
+        // Find the failing page: one at a time, each request gets its own outcome.
+        for (DiskRequest write : writes) {
+          if (processRequest(write)) {
+            unsynced.add(write.getCallback());
+          }
+        }
+      }
+    }
+    if (!reads.isEmpty()) {
+      try {
+        diskManager.readPages(pageIds(reads), pageBuffers(reads));
+        for (DiskRequest read : reads) {
+          read.getCallback().complete(true);
+        }
+      } catch (Exception e) {
+        reads.forEach(this::processRequest);
+      }
+    }
+  }
+
+  private static List<PageId> pageIds(List<DiskRequest> requests) {
+    List<PageId> pageIds = new ArrayList<>(requests.size());
+    for (DiskRequest request : requests) {
+      pageIds.add(request.getPageId());
+    }
+    return pageIds;
+  }
+
+  private static List<ByteBuffer> pageBuffers(List<DiskRequest> requests) {
+    List<ByteBuffer> buffers = new ArrayList<>(requests.size());
+    for (DiskRequest request : requests) {
+      buffers.add(pageBuffer(request));
+    }
+    return buffers;
+  }
+
+  private static ByteBuffer pageBuffer(DiskRequest request) {
+    return request.getBuffer() != null ? request.getBuffer() : ByteBuffer.wrap(request.getData());
+  }
+
+  /**
+   * Serve a request. Reads, and writes that failed, are completed right away.
+   *
+   * @return true for a write that still waits for an fsync
+   */
+  private boolean processRequest(DiskRequest request) {
     try {
       if (request.isWrite()) {
-        diskManager.writePage(request.getPageId(), request.getData());
+        diskManager.writeUnsynced(request.getPageId(), pageBuffer(request));
+        return true;
+      }
+      if (request.getBuffer() != null) {
+        diskManager.readPage(request.getPageId(), request.getBuffer());
       } else {
         diskManager.readPage(request.getPageId(), request.getData());
       }
@@ -59,12 +266,35 @@ public class DiskScheduler {
     } catch (Exception e) {
       request.getCallback().completeExceptionally(e);
     }
+    return false;
+  }
+
+  /** Force the batch's writes to disk and complete their callbacks. */
+  private void syncBatch(List<CompletableFuture<Boolean>> unsynced) {
+    if (unsynced.isEmpty()) {
+      return;
+    }
+    try {
+      diskManager.sync();
+      for (CompletableFuture<Boolean> callback : unsynced) {
+        callback.complete(true);
+      }
+    } catch (Exception e) {
+      for (CompletableFuture<Boolean> callback : unsynced) {
+        callback.completeExceptionally(e);
+      }
+    }
+    unsynced.clear();
   }
 
   public void shutDown() {
-    schedule(poisonPill);
+    for (Worker worker : workers) {
+      worker.requests.put(poisonPill);
+    }
     try {
-      backgroundThread.join();
+      for (Worker worker : workers) {
+        worker.thread.join();
+      }
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
     }
@@ -0,0 +1,153 @@
+package com.dbms.yadbms.storage.disk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Page I/O through memory mappings of the database file. The file is mapped in fixed-size
+ * segments, each on first use, so reading or writing a page is a copy between the frame and the
+ * page cache without a system call; a write past the end of the file maps a new segment, which
+ * grows the file to cover it. Reads past the end of the file come back short, as from a channel.
+ *
+ * <p>Writes reach the disk only when they are forced: {@link #force()} forces each segment written
+ * since the last call. Mapped segments stay mapped until the store is garbage collected.
+ */
+class MappedPageStore implements PageStore {
+  /** Bytes per mapped segment, a multiple of every page size. */
+  static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+  private final FileChannel channel;
+
+  private final long segmentSize;
+
+  /** Segments mapped so far, by index; replaced by a longer copy when the file grows. */
+  private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+  /** Indexes of the segments written since they were last forced. */
+  private final Set<Integer> dirtySegments = ConcurrentHashMap.newKeySet();
+
+  /**
+   * @param channel read-write channel of the database file
+   * @param segmentSize bytes per mapped segment
+   */
+  MappedPageStore(FileChannel channel, long segmentSize) {
+    this.channel = channel;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Reads never grow the file: a segment not mapped yet is only mapped if the file already covers
+   * it, and the bytes of a segment the file ends in are read through the channel instead.
+   */
+  @Override
+  public int read(long offset, ByteBuffer dst) throws IOException {
+    int start = dst.position();
+    while (dst.hasRemaining()) {
+      int index = (int) (offset / segmentSize);
+      int at = (int) (offset % segmentSize);
+      int len = (int) Math.min(dst.remaining(), segmentSize - at);
+      MappedByteBuffer mapped = mapped(index);
+      if (mapped == null && (index + 1) * segmentSize > channel.size()) {
+        ByteBuffer chunk = dst.duplicate();
+        chunk.limit(chunk.position() + len);
+        for (long from = offset; chunk.hasRemaining(); ) {
+          int n = channel.read(chunk, from);
+          if (n <= 0) {
+            break;
+          }
+          from += n;
+        }
+        boolean ended = chunk.hasRemaining();
+        dst.position(chunk.position());
+        if (ended) {
+          break; // the file ends here
+        }
+      } else {
+        ByteBuffer src = (mapped != null ? mapped : segment(index)).duplicate();
+        src.limit(at + len).position(at);
+        dst.put(src);
+      }
+      offset += len;
+    }
+    return dst.position() - start;
+  }
+
+  @Override
+  public void write(long offset, ByteBuffer src) throws IOException {
+    while (src.hasRemaining()) {
+      int index = (int) (offset / segmentSize);
+      int at = (int) (offset % segmentSize);
+      int len = (int) Math.min(src.remaining(), segmentSize - at);
+      ByteBuffer dst = segment(index).duplicate();
+      dst.position(at);
+      ByteBuffer chunk = src.duplicate();
+      chunk.limit(chunk.position() + len);
+      dst.put(chunk);
+      src.position(src.position() + len);
+      // Marked after the copy, so a force that cleared the mark before it cannot miss it.
+      dirtySegments.add(index);
+      offset += len;
+    }
+  }
+
+  @Override
+  public void readRun(long offset, ByteBuffer[] run) throws IOException {
+    for (ByteBuffer page : run) {
+      int wanted = page.remaining();
+      if (read(offset, page) < wanted) {
+        return;
+      }
+      offset += wanted;
+    }
+  }
+
+  @Override
+  public void writeRun(long offset, ByteBuffer[] run) throws IOException {
+    for (ByteBuffer page : run) {
+      int length = page.remaining();
+      write(offset, page);
+      offset += length;
+    }
+  }
+
+  @Override
+  public void force() {
+    for (Integer index : dirtySegments) {
+      dirtySegments.remove(index);
+      segments[index].force();
+    }
+  }
+
+  /** The segment with the given index if it is mapped already, otherwise null. */
+  private MappedByteBuffer mapped(int index) {
+    MappedByteBuffer[] mapped = segments;
+    return index < mapped.length ? mapped[index] : null;
+  }
+
+  /** The segment with the given index, mapping it, and growing the file, if needed. */
+  private MappedByteBuffer segment(int index) throws IOException {
+    MappedByteBuffer[] mapped = segments;
+    if (index < mapped.length && mapped[index] != null) {
+      return mapped[index];
+    }
+    synchronized (this) {
+      mapped = segments;
+      if (index >= mapped.length) {
+        mapped = Arrays.copyOf(mapped, index + 1);
+      } else if (mapped[index] != null) {
+        return mapped[index];
+      } else {
+        mapped = mapped.clone();
+      }
+      mapped[index] =
+          channel.map(FileChannel.MapMode.READ_WRITE, index * segmentSize, segmentSize);
+      segments = mapped;
+      return mapped[index];
+    }
+  }
+}
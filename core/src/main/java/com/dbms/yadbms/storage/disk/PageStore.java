@@ -0,0 +1,38 @@
+package com.dbms.yadbms.storage.disk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Moves page bytes between buffers and the database file for a {@link DiskManager}, which keeps
+ * the file header, the page map and slot allocation to itself. Offsets are byte offsets in the
+ * file. Implementations must allow calls from several threads at once; callers never touch the
+ * same page from two threads at a time.
+ */
+interface PageStore {
+
+  /**
+   * Fill a buffer, from its position to its limit, with the bytes at {@code offset}.
+   *
+   * @return bytes read, less than requested if the file ends first
+   */
+  int read(long offset, ByteBuffer dst) throws IOException;
+
+  /** Write a buffer, from its position to its limit, at {@code offset}. */
+  void write(long offset, ByteBuffer src) throws IOException;
+
+  /**
+   * Fill buffers back to back from {@code offset}, stopping at the end of the file; buffers are
+   * left with the bytes that could not be read remaining.
+   */
+  void readRun(long offset, ByteBuffer[] run) throws IOException;
+
+  /** Write buffers back to back from {@code offset}. */
+  void writeRun(long offset, ByteBuffer[] run) throws IOException;
+
+  /** Force everything written so far to disk. */
+  void force() throws IOException;
+
+  /** Release what the store opened itself; the database file channel is closed by its owner. */
+  default void close() throws IOException {}
+}
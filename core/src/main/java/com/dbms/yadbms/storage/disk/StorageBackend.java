@@ -0,0 +1,44 @@
+package com.dbms.yadbms.storage.disk;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/** How a {@link DiskManager} moves pages between frames and its database file. */
+public enum StorageBackend {
+  /** Positional and vectored {@link FileChannel} reads and writes. */
+  CHANNEL,
+
+  /**
+   * The file mapped into memory in fixed-size segments; page reads and writes are memory copies
+   * and writes reach the disk when synced. Suits read-mostly databases that fit in memory.
+   */
+  MMAP,
+
+  /**
+   * Channel reads and writes that bypass the kernel page cache (O_DIRECT), so pages are cached
+   * once, in the buffer pool. Needs a page size that is a multiple of the file system block size.
+   */
+  DIRECT;
+
+  /**
+   * Creates the page store of this backend for an open database file.
+   *
+   * @param dbFilePath the database file
+   * @param channel read-write channel of the database file
+   * @param pageSize page size of the file
+   * @return a fresh page store
+   * @throws IOException if the backend cannot open the file the way it needs
+   */
+  PageStore create(Path dbFilePath, FileChannel channel, int pageSize) throws IOException {
+    switch (this) {
+      case MMAP:
+        return new MappedPageStore(channel, MappedPageStore.DEFAULT_SEGMENT_SIZE);
+      case DIRECT:
+        return new DirectPageStore(dbFilePath, pageSize, DiskManager.FILE_HEADER_SIZE);
+      case CHANNEL:
+      default:
+        return new ChannelPageStore(channel);
+    }
+  }
+}
@@ -12,8 +12,10 @@ import com.dbms.yadbms.storage.page.BPlusTreeLeafPage;
 import com.dbms.yadbms.storage.page.BPlusTreePage;
 import com.dbms.yadbms.storage.page.ReadPageGuard;
 import com.dbms.yadbms.storage.page.WritePageGuard;
+import java.nio.ByteBuffer;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -23,29 +25,55 @@ public class BPlusTree<K> {
 
   private final PageId headerPageId;
   private final BufferPoolManager bufferPoolManager;
+  private final KeySerializer<K> keySerializer;
   private final Comparator<? super K> keyComparator;
   private final int leafMaxSize;
   private final int internalMaxSize;
 
+  /** Creates a tree whose fanout is as large as the pool's page size allows. */
   public BPlusTree(
       String name,
       PageId headerPageId,
       BufferPoolManager bufferPoolManager,
+      KeySerializer<K> keySerializer,
+      Comparator<? super K> keyComparator) {
+    this(
+        name,
+        headerPageId,
+        bufferPoolManager,
+        keySerializer,
+        keyComparator,
+        BPlusTreeLeafPage.slotCount(bufferPoolManager.getPageSize(), keySerializer.getKeySize())
+            - 1,
+        BPlusTreeInternalPage.slotCount(bufferPoolManager.getPageSize(), keySerializer.getKeySize())
+            - 1);
+  }
+
+  /**
+   * Creates a tree with explicit node sizes. Sizes larger than what fits in a page are capped when
+   * the page is initialized.
+   */
+  public BPlusTree(
+      String name,
+      PageId headerPageId,
+      BufferPoolManager bufferPoolManager,
+      KeySerializer<K> keySerializer,
       Comparator<? super K> keyComparator,
       int leafMaxSize,
       int internalMaxSize) {
     this.name = name;
     this.headerPageId = headerPageId;
     this.bufferPoolManager = bufferPoolManager;
+    this.keySerializer = keySerializer;
     this.keyComparator = keyComparator;
     this.leafMaxSize = leafMaxSize;
     this.internalMaxSize = internalMaxSize;
 
     // Initialize header root pointer as INVALID on first open/creation
     try (WritePageGuard g = bufferPoolManager.writePage(headerPageId)) {
-      BPlusTreeHeaderPage header = g.asMut(BPlusTreeHeaderPage.class);
-      if (header.getRootPageId() == null) {
-        header.setRootPageId(PageId.store(INVALID_PAGE_ID));
+      BPlusTreeHeaderPage header = g.asMut(BPlusTreeHeaderPage::new);
+      if (!header.isInitialized()) {
+        header.init();
       }
     } catch (Exception e) {
       throw new DBException(ErrorType.IO_ERROR, "unable to write to index header page", e);
@@ -53,9 +81,10 @@ public class BPlusTree<K> {
   }
 
   public PageId getRootPageId() {
-    try (ReadPageGuard g = bufferPoolManager.readPage(headerPageId)) {
-      BPlusTreeHeaderPage h = g.getDataAs(BPlusTreeHeaderPage.class);
-      return h.getRootPageId();
+    try {
+      // Every operation starts here, so the header is read optimistically rather than latched.
+      return bufferPoolManager.readOptimistically(
+          headerPageId, data -> new BPlusTreeHeaderPage(data).getRootPageId());
     } catch (Exception e) {
       throw new DBException(ErrorType.IO_ERROR, "Unable to read index header page", e);
     }
@@ -66,34 +95,46 @@ public class BPlusTree<K> {
     return r == null || r.getValue() == INVALID_PAGE_ID;
   }
 
-  /** Point-lookup: returns true if found and writes into output[0]. */
+  /**
+   * Point-lookup: returns true if found and writes into output[0]. The descent reads every page
+   * optimistically, validating each read instead of latching, so concurrent lookups do not contend
+   * on the upper levels of the tree. As with latched reads, a page is left before its child is
+   * read, so a lookup racing with a split may miss a key that moved to a new sibling.
+   */
   public <V> boolean getValue(K key, List<V> output) {
     output.clear();
-    if (isEmpty()) return false;
 
     final PageId root = getRootPageId();
     if (root == null || root.getValue() == INVALID_PAGE_ID) return false;
 
-    PageId pid = root;
-    while (true) {
-      try (ReadPageGuard guard = bufferPoolManager.readPage(pid)) {
-        BPlusTreePage pageHdr = guard.getDataAs(BPlusTreePage.class);
-
-        if (pageHdr.isLeafPage()) {
-          @SuppressWarnings("unchecked")
-          BPlusTreeLeafPage<K, V> leaf = guard.getDataAs(BPlusTreeLeafPage.class);
-          int idx = leaf.findKey(key);
-          if (idx < 0) return false;
-          output.add(leaf.getRecord(idx));
-          return true;
-        } else {
-          @SuppressWarnings("unchecked")
-          BPlusTreeInternalPage<K> internal = guard.getDataAs(BPlusTreeInternalPage.class);
-          pid = internal.getChildForKey(key); // choose next child by binary search
-        }
-      } catch (Exception e) {
-        throw new DBException(ErrorType.IO_ERROR, "getValue failed: " + e.getMessage(), e);
+    try {
+      PageId pid = root;
+      while (true) {
+        // The child to descend to, or null once the page is a leaf.
+        PageId child =
+            bufferPoolManager.readOptimistically(
+                pid,
+                data ->
+                    new BPlusTreePage(data).isLeafPage()
+                        ? null
+                        : internalPage(data).getChildForKey(key));
+        if (child == null) break;
+        pid = child;
       }
+
+      V record =
+          bufferPoolManager.readOptimistically(
+              pid,
+              data -> {
+                BPlusTreeLeafPage<K, V> leaf = leafPage(data);
+                int idx = leaf.findKey(key);
+                return idx < 0 ? null : leaf.getRecord(idx);
+              });
+      if (record == null) return false;
+      output.add(record);
+      return true;
+    } catch (Exception e) {
+      throw new DBException(ErrorType.IO_ERROR, "getValue failed: " + e.getMessage(), e);
     }
   }
 
@@ -107,24 +148,23 @@ public class BPlusTree<K> {
       return true;
     }
 
-    // Descend to target leaf
-    PageId pid = getRootPageId();
-    while (true) {
-      try (ReadPageGuard rg = bufferPoolManager.readPage(pid)) {
-        BPlusTreePage hdr = rg.getDataAs(BPlusTreePage.class);
-        if (hdr.isLeafPage()) break;
-        @SuppressWarnings("unchecked")
-        BPlusTreeInternalPage<K> internal = rg.getDataAs(BPlusTreeInternalPage.class);
-        pid = internal.getChildForKey(key);
-      } catch (Exception e) {
-        throw new DBException(ErrorType.IO_ERROR, "insert descent failed: " + e.getMessage(), e);
+    // Descend to target leaf; a duplicate is rejected without latching the leaf exclusively.
+    ReadPageGuard rg = findLeaf(key, "insert");
+    PageId pid = rg.getPageId();
+    try {
+      BPlusTreeLeafPage<K, V> leaf = rg.getDataAs(this::leafPage);
+      if (leaf.findKey(key) >= 0) {
+        rg.drop();
+        return false;
       }
+    } catch (Exception e) {
+      rg.drop();
+      throw new DBException(ErrorType.IO_ERROR, "insert failed: " + e.getMessage(), e);
     }
 
     // Insert into leaf
-    try (WritePageGuard lg = bufferPoolManager.writePage(pid)) {
-      @SuppressWarnings("unchecked")
-      BPlusTreeLeafPage<K, V> leaf = lg.asMut(BPlusTreeLeafPage.class);
+    try (WritePageGuard lg = latchExclusive(rg)) {
+      BPlusTreeLeafPage<K, V> leaf = lg.asMut(this::leafPage);
 
       // Reject duplicate
       int pos = leaf.findKey(key);
@@ -152,24 +192,23 @@ public class BPlusTree<K> {
   public void remove(K key) {
     if (isEmpty()) return;
 
-    // Descend to leaf
-    PageId pid = getRootPageId();
-    while (true) {
-      try (ReadPageGuard rg = bufferPoolManager.readPage(pid)) {
-        BPlusTreePage hdr = rg.getDataAs(BPlusTreePage.class);
-        if (hdr.isLeafPage()) break;
-        @SuppressWarnings("unchecked")
-        BPlusTreeInternalPage<K> internal = rg.getDataAs(BPlusTreeInternalPage.class);
-        pid = internal.getChildForKey(key);
-      } catch (Exception e) {
-        throw new DBException(ErrorType.IO_ERROR, "remove descent failed: " + e.getMessage(), e);
+    // Descend to leaf; an absent key is found so without latching the leaf exclusively.
+    ReadPageGuard rg = findLeaf(key, "remove");
+    PageId pid = rg.getPageId();
+    try {
+      BPlusTreeLeafPage<K, Object> leaf = rg.getDataAs(this::leafPage);
+      if (leaf.findKey(key) < 0) {
+        rg.drop();
+        return;
       }
+    } catch (Exception e) {
+      rg.drop();
+      throw new DBException(ErrorType.IO_ERROR, "remove failed: " + e.getMessage(), e);
     }
 
     // Delete in leaf
-    try (WritePageGuard lg = bufferPoolManager.writePage(pid)) {
-      @SuppressWarnings("unchecked")
-      BPlusTreeLeafPage<K, Object> leaf = lg.asMut(BPlusTreeLeafPage.class);
+    try (WritePageGuard lg = latchExclusive(rg)) {
+      BPlusTreeLeafPage<K, Object> leaf = lg.asMut(this::leafPage);
       int idx = leaf.findKey(key);
       if (idx < 0) return; // not present
 
@@ -179,7 +218,7 @@ public class BPlusTree<K> {
       if (pid.equals(getRootPageId())) {
         if (leaf.getSize() == 0) {
           try (WritePageGuard hg = bufferPoolManager.writePage(headerPageId)) {
-            BPlusTreeHeaderPage h = hg.asMut(BPlusTreeHeaderPage.class);
+            BPlusTreeHeaderPage h = hg.asMut(BPlusTreeHeaderPage::new);
             h.setRootPageId(PageId.store(INVALID_PAGE_ID));
           }
         }
@@ -200,18 +239,51 @@ public class BPlusTree<K> {
   // Private helpers
   // ---------------------------------------------------------------------------
 
+  /** Descend from the root to the leaf that routes the key and return it latched shared. */
+  private ReadPageGuard findLeaf(K key, String operation) {
+    PageId pid = getRootPageId();
+    while (true) {
+      ReadPageGuard rg = bufferPoolManager.readPage(pid);
+      try {
+        BPlusTreePage hdr = rg.getDataAs(BPlusTreePage::new);
+        if (hdr.isLeafPage()) return rg;
+        BPlusTreeInternalPage<K> internal = rg.getDataAs(this::internalPage);
+        pid = internal.getChildForKey(key);
+      } catch (Exception e) {
+        rg.drop();
+        throw new DBException(
+            ErrorType.IO_ERROR, operation + " descent failed: " + e.getMessage(), e);
+      }
+      rg.drop();
+    }
+  }
+
+  /**
+   * Escalate a leaf found with a shared latch. The latch is upgraded in place when no other thread
+   * reads the leaf; otherwise it is released and the leaf latched exclusively anew, so the caller
+   * must re-check what it read.
+   */
+  private WritePageGuard latchExclusive(ReadPageGuard rg) {
+    Optional<WritePageGuard> upgraded = rg.tryUpgrade();
+    if (upgraded.isPresent()) {
+      return upgraded.get();
+    }
+    PageId pid = rg.getPageId();
+    rg.drop();
+    return bufferPoolManager.writePage(pid);
+  }
+
   /** Bootstrap a brand-new tree: create a root leaf and publish header rootPageId. */
   private <V> void startNewTree(K key, V value) {
     try {
       PageId newRootPid = bufferPoolManager.newPage();
       try (WritePageGuard newRootPage = bufferPoolManager.writePage(newRootPid)) {
-        @SuppressWarnings("unchecked")
-        BPlusTreeLeafPage<K, V> root = newRootPage.asMut(BPlusTreeLeafPage.class);
+        BPlusTreeLeafPage<K, V> root = newRootPage.asMut(this::leafPage);
         root.init(leafMaxSize);
         root.insertSorted(key, castRecord(value));
       }
       try (WritePageGuard hg = bufferPoolManager.writePage(headerPageId)) {
-        BPlusTreeHeaderPage header = hg.asMut(BPlusTreeHeaderPage.class);
+        BPlusTreeHeaderPage header = hg.asMut(BPlusTreeHeaderPage::new);
         header.setRootPageId(newRootPid);
       }
     } catch (Exception e) {
@@ -225,8 +297,7 @@ public class BPlusTree<K> {
     // Allocate right leaf
     PageId rightPid = bufferPoolManager.newPage();
     try (WritePageGuard newLeafPage = bufferPoolManager.writePage(rightPid)) {
-      @SuppressWarnings("unchecked")
-      BPlusTreeLeafPage<K, V> rightLeaf = newLeafPage.asMut(BPlusTreeLeafPage.class);
+      BPlusTreeLeafPage<K, V> rightLeaf = newLeafPage.asMut(this::leafPage);
       rightLeaf.init(leafMaxSize);
 
       // Move half entries: keep lower half in left, move upper half to right
@@ -261,8 +332,7 @@ public class BPlusTree<K> {
   /** After creating right leaf in splitLeaf, fetch its first key safely (read-only). */
   private <V> K rightLeafKeyAtZero(PageId leftPid, PageId rightPid) {
     try (ReadPageGuard rg = bufferPoolManager.readPage(rightPid)) {
-      @SuppressWarnings("unchecked")
-      BPlusTreeLeafPage<K, V> right = rg.getDataAs(BPlusTreeLeafPage.class);
+      BPlusTreeLeafPage<K, V> right = rg.getDataAs(this::leafPage);
       return right.keyAt(0);
     } catch (Exception e) {
       throw new DBException(ErrorType.IO_ERROR, "failed to read right leaf first key", e);
@@ -275,8 +345,7 @@ public class BPlusTree<K> {
     if (leftPid.equals(getRootPageId())) {
       PageId newRootPid = bufferPoolManager.newPage();
       try (WritePageGuard ig = bufferPoolManager.writePage(newRootPid)) {
-        @SuppressWarnings("unchecked")
-        BPlusTreeInternalPage<K> root = ig.asMut(BPlusTreeInternalPage.class);
+        BPlusTreeInternalPage<K> root = ig.asMut(this::internalPage);
         root.init(internalMaxSize);
 
         // New root has 2 children and 1 separator key at index 1
@@ -286,7 +355,7 @@ public class BPlusTree<K> {
         root.setSize(2); // children count
 
         try (WritePageGuard hg = bufferPoolManager.writePage(headerPageId)) {
-          BPlusTreeHeaderPage h = hg.asMut(BPlusTreeHeaderPage.class);
+          BPlusTreeHeaderPage h = hg.asMut(BPlusTreeHeaderPage::new);
           h.setRootPageId(newRootPid);
         }
       } catch (Exception e) {
@@ -296,10 +365,9 @@ public class BPlusTree<K> {
     }
 
     // Otherwise, find parent by searching from root (since parent ptrs aren’t stored)
-    PageId parentPid = findParentOf(leftPid);
+    PageId parentPid = findParentOf(leftPid, pushUpKey);
     try (WritePageGuard pg = bufferPoolManager.writePage(parentPid)) {
-      @SuppressWarnings("unchecked")
-      BPlusTreeInternalPage<K> parent = pg.asMut(BPlusTreeInternalPage.class);
+      BPlusTreeInternalPage<K> parent = pg.asMut(this::internalPage);
 
       // Insert (key, rightPid) *after* leftPid
       int idx = valueIndex(parent, leftPid); // where leftPid sits
@@ -309,7 +377,7 @@ public class BPlusTree<K> {
 
       // If parent overflows, split and propagate
       if (parent.getSize() > parent.getMaxSize()) {
-        splitInternalAndPropagate(parentPid);
+        splitInternalAndPropagate(parentPid, parent);
       }
     } catch (Exception e) {
       throw new DBException(ErrorType.IO_ERROR, "insertIntoParent failed", e);
@@ -323,9 +391,8 @@ public class BPlusTree<K> {
     if (leafPid.equals(getRootPageId())) {
       try (WritePageGuard hg = bufferPoolManager.writePage(headerPageId);
           WritePageGuard lg = bufferPoolManager.writePage(leafPid)) {
-        BPlusTreeHeaderPage h = hg.asMut(BPlusTreeHeaderPage.class);
-        @SuppressWarnings("unchecked")
-        BPlusTreeLeafPage<K, Object> leaf = lg.asMut(BPlusTreeLeafPage.class);
+        BPlusTreeHeaderPage h = hg.asMut(BPlusTreeHeaderPage::new);
+        BPlusTreeLeafPage<K, Object> leaf = lg.asMut(this::leafPage);
         if (leaf.getSize() == 0) {
           h.setRootPageId(PageId.store(INVALID_PAGE_ID));
         }
@@ -339,8 +406,11 @@ public class BPlusTree<K> {
 
   // ---------- Parent search & internal split utilities (simplified) ----------
 
-  /** Find the parent of a child by scanning down from root (O(height * fanout)). */
-  private PageId findParentOf(PageId childPid) {
+  /**
+   * Find the parent of a child by descending from root along {@code key}. The key must route to the
+   * child, which holds for a split's push-up key until the new sibling is linked into the parent.
+   */
+  private PageId findParentOf(PageId childPid, K key) {
     PageId root = getRootPageId();
     if (root == null || root.getValue() == INVALID_PAGE_ID) {
       throw new DBException(ErrorType.INDEX_NOT_FOUND, "Tree empty; no parent for " + childPid);
@@ -352,11 +422,10 @@ public class BPlusTree<K> {
     PageId pid = root;
     while (true) {
       try (ReadPageGuard rg = bufferPoolManager.readPage(pid)) {
-        BPlusTreePage hdr = rg.getDataAs(BPlusTreePage.class);
+        BPlusTreePage hdr = rg.getDataAs(BPlusTreePage::new);
         if (hdr.isLeafPage()) break;
 
-        @SuppressWarnings("unchecked")
-        BPlusTreeInternalPage<K> internal = rg.getDataAs(BPlusTreeInternalPage.class);
+        BPlusTreeInternalPage<K> internal = rg.getDataAs(this::internalPage);
         // Scan children at this internal
         for (int i = 0; i < internal.getSize(); i++) {
           PageId cpid = internal.valueAt(i);
@@ -364,12 +433,8 @@ public class BPlusTree<K> {
             return pid; // found parent
           }
         }
-        // Not here; descend toward the subtree that would contain childPid by using *keys*, but
-        // since we don't have child's min key, do a full scan over children; pick some child to
-        // descend.
-        // Heuristic: descend leftmost; then the loop will eventually find the parent as we scan
-        // levels.
-        pid = internal.valueAt(0);
+        // Not here; descend toward the subtree that holds the key.
+        pid = internal.getChildForKey(key);
       } catch (Exception e) {
         throw new DBException(ErrorType.IO_ERROR, "findParentOf failed", e);
       }
@@ -412,16 +477,15 @@ public class BPlusTree<K> {
     parent.setSize(size + 1); // number of children increased by 1
   }
 
-  /** Split an internal page at pid and propagate middle key up. */
-  private void splitInternalAndPropagate(PageId leftPid) {
+  /**
+   * Split an internal page at pid and propagate middle key up. The caller holds the page latched
+   * exclusively, as frame latches are not reentrant.
+   */
+  private void splitInternalAndPropagate(PageId leftPid, BPlusTreeInternalPage<K> left) {
     // Allocate right internal
     PageId rightPid = bufferPoolManager.newPage();
-    try (WritePageGuard lg = bufferPoolManager.writePage(leftPid);
-        WritePageGuard rg = bufferPoolManager.writePage(rightPid)) {
-      @SuppressWarnings("unchecked")
-      BPlusTreeInternalPage<K> left = lg.asMut(BPlusTreeInternalPage.class);
-      @SuppressWarnings("unchecked")
-      BPlusTreeInternalPage<K> right = rg.asMut(BPlusTreeInternalPage.class);
+    try (WritePageGuard rg = bufferPoolManager.writePage(rightPid)) {
+      BPlusTreeInternalPage<K> right = rg.asMut(this::internalPage);
 
       right.init(internalMaxSize);
 
@@ -453,6 +517,14 @@ public class BPlusTree<K> {
     }
   }
 
+  private <V> BPlusTreeLeafPage<K, V> leafPage(ByteBuffer data) {
+    return new BPlusTreeLeafPage<>(data, keySerializer, keyComparator);
+  }
+
+  private BPlusTreeInternalPage<K> internalPage(ByteBuffer data) {
+    return new BPlusTreeInternalPage<>(data, keySerializer, keyComparator);
+  }
+
   private <V> com.dbms.yadbms.storage.page.RecordId castRecord(V v) {
     // Leaf APIs store V as RecordId
     return (com.dbms.yadbms.storage.page.RecordId) v;
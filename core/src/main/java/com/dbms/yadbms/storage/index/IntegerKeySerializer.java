@@ -0,0 +1,22 @@
+package com.dbms.yadbms.storage.index;
+
+import java.nio.ByteBuffer;
+
+/** Stores {@link Integer} keys in 4-byte slots. */
+public class IntegerKeySerializer implements KeySerializer<Integer> {
+
+  @Override
+  public int getKeySize() {
+    return Integer.BYTES;
+  }
+
+  @Override
+  public void write(ByteBuffer page, int offset, Integer key) {
+    page.putInt(offset, key);
+  }
+
+  @Override
+  public Integer read(ByteBuffer page, int offset) {
+    return page.getInt(offset);
+  }
+}
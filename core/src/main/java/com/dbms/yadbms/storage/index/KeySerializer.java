@@ -0,0 +1,37 @@
+package com.dbms.yadbms.storage.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes index keys into the fixed-width key slots of B+ tree pages. Every key of an index takes
+ * exactly {@link #getKeySize()} bytes, which lets the pages address slot {@code i} directly.
+ *
+ * @param <K> the key type
+ */
+public interface KeySerializer<K> {
+
+  /**
+   * Width of one key slot.
+   *
+   * @return the number of bytes a key occupies on the page
+   */
+  int getKeySize();
+
+  /**
+   * Writes a key into the page at the given absolute offset.
+   *
+   * @param page the page buffer
+   * @param offset the start of the key slot
+   * @param key the key to write
+   */
+  void write(ByteBuffer page, int offset, K key);
+
+  /**
+   * Reads the key stored at the given absolute offset.
+   *
+   * @param page the page buffer
+   * @param offset the start of the key slot
+   * @return the decoded key
+   */
+  K read(ByteBuffer page, int offset);
+}
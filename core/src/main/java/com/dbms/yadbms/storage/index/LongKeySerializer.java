@@ -0,0 +1,22 @@
+package com.dbms.yadbms.storage.index;
+
+import java.nio.ByteBuffer;
+
+/** Stores {@link Long} keys in 8-byte slots. */
+public class LongKeySerializer implements KeySerializer<Long> {
+
+  @Override
+  public int getKeySize() {
+    return Long.BYTES;
+  }
+
+  @Override
+  public void write(ByteBuffer page, int offset, Long key) {
+    page.putLong(offset, key);
+  }
+
+  @Override
+  public Long read(ByteBuffer page, int offset) {
+    return page.getLong(offset);
+  }
+}
@@ -1,9 +1,49 @@
 package com.dbms.yadbms.storage.page;
 
+import static com.dbms.yadbms.common.utils.Constants.INVALID_PAGE_ID;
+
 import com.dbms.yadbms.config.PageId;
-import lombok.Getter;
-import lombok.Setter;
+import java.nio.ByteBuffer;
 
+/**
+ * Header page of a B+ tree. It only tracks the root page so the root can move without touching the
+ * catalog.
+ *
+ * <pre>
+ *  ----------------------------------
+ *  | Magic (4) | RootPageId (4) |
+ *  ----------------------------------
+ * </pre>
+ *
+ * A freshly allocated page is all zeros, which would otherwise read as a valid root page id, so the
+ * magic number tells an initialized header apart from an empty frame.
+ */
 public class BPlusTreeHeaderPage {
-  @Getter @Setter private PageId rootPageId;
+  private static final int MAGIC = 0x42505448; // "BPTH"
+  private static final int MAGIC_OFFSET = 0;
+  private static final int ROOT_PAGE_ID_OFFSET = 4;
+
+  private final ByteBuffer data;
+
+  public BPlusTreeHeaderPage(ByteBuffer data) {
+    this.data = data;
+  }
+
+  /** Stamp the header and reset the root to INVALID. */
+  public void init() {
+    data.putInt(MAGIC_OFFSET, MAGIC);
+    data.putInt(ROOT_PAGE_ID_OFFSET, INVALID_PAGE_ID);
+  }
+
+  public boolean isInitialized() {
+    return data.getInt(MAGIC_OFFSET) == MAGIC;
+  }
+
+  public PageId getRootPageId() {
+    return PageId.store(data.getInt(ROOT_PAGE_ID_OFFSET));
+  }
+
+  public void setRootPageId(PageId rootPageId) {
+    data.putInt(ROOT_PAGE_ID_OFFSET, rootPageId.getValue());
+  }
 }
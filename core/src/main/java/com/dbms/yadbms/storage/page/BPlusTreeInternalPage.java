@@ -3,46 +3,78 @@ package com.dbms.yadbms.storage.page;
 import com.dbms.yadbms.common.exceptions.DBException;
 import com.dbms.yadbms.common.exceptions.ErrorType;
 import com.dbms.yadbms.config.PageId;
+import com.dbms.yadbms.storage.index.KeySerializer;
+import java.nio.ByteBuffer;
 import java.util.Comparator;
 
+/**
+ * Internal page of a B+ tree, laid out in the frame buffer as:
+ *
+ * <pre>
+ *  ---------------------------------------------------------------------------------
+ *  | PageType (4) | Size (4) | MaxSize (4) |
+ *  ---------------------------------------------------------------------------------
+ *  | Key_0 (unused) | Key_1 | ... | Key_n-1 | Child_0 (4) | Child_1 (4) | ... | Child_n-1 (4) |
+ *  ---------------------------------------------------------------------------------
+ * </pre>
+ *
+ * Size counts children. The number of slots n follows from the page size and the key width, with
+ * one slot kept spare so an insert can overflow the page before it is split.
+ */
 public final class BPlusTreeInternalPage<K> extends BPlusTreePage {
+  private static final int CHILD_SIZE = 4;
 
-  private final Object[] keys;
-  private final PageId[] childPageIds;
+  private final KeySerializer<K> keySerializer;
   private final Comparator<? super K> cmp;
+  private final int keySize;
+  private final int slotCount;
+  private final int childrenOffset;
 
-  public BPlusTreeInternalPage(int slotCount, Comparator<? super K> comparator) {
-    this.keys = new Object[slotCount];
-    this.childPageIds = new PageId[slotCount];
+  public BPlusTreeInternalPage(
+      ByteBuffer data, KeySerializer<K> keySerializer, Comparator<? super K> comparator) {
+    super(data);
+    this.keySerializer = keySerializer;
     this.cmp = comparator;
-    init(slotCount); // set pageType, size, maxSize
+    this.keySize = keySerializer.getKeySize();
+    this.slotCount = slotCount(data.capacity(), keySize);
+    this.childrenOffset = HEADER_SIZE + slotCount * keySize;
+  }
+
+  /**
+   * Number of (key, child) slots that fit in a page.
+   *
+   * @param pageSize size of the page in bytes
+   * @param keySize size of one key in bytes
+   * @return the slot count, including the spare overflow slot
+   */
+  public static int slotCount(int pageSize, int keySize) {
+    return (pageSize - HEADER_SIZE) / (keySize + CHILD_SIZE);
   }
 
   public void init(int maxSize) {
     setPageType(IndexPageType.INTERNAL_PAGE);
     setSize(0);
-    setMaxSize(Math.min(maxSize, keys.length));
+    setMaxSize(Math.min(maxSize, slotCount - 1));
   }
 
   /** Valid read range: 1 .. getSize()-1 (key[0] is invalid/sentinel). */
-  @SuppressWarnings("unchecked")
   public K keyAt(int index) {
     if (index < 0 || index >= getSize()) {
       throw new DBException(
           ErrorType.INDEX_NOT_FOUND,
           "Invalid key index: " + index + " (valid: 0.." + (getSize() - 1) + ")");
     }
-    return (K) keys[index];
+    return readKey(index);
   }
 
-  /** Valid write range: 1 .. getMaxSize()-1. */
+  /** Valid write range: 1 .. slotCount-1. */
   public void setKeyAt(int index, K key) {
-    if (index < 0 || index >= getMaxSize()) {
+    if (index < 0 || index >= slotCount) {
       throw new DBException(
           ErrorType.INDEX_NOT_FOUND,
-          "Invalid key index for write: " + index + " (valid: 0.." + (getMaxSize() - 1) + ")");
+          "Invalid key index for write: " + index + " (valid: 0.." + (slotCount - 1) + ")");
     }
-    keys[index] = key;
+    keySerializer.write(data, keyPosition(index), key);
   }
 
   /** Children valid range: 0 .. getSize()-1. */
@@ -52,26 +84,22 @@ public final class BPlusTreeInternalPage<K> extends BPlusTreePage {
           ErrorType.INDEX_NOT_FOUND,
           "Invalid key child index: " + index + " (valid: 0.." + (getSize() - 1) + ")");
     }
-    return childPageIds[index];
+    return PageId.store(data.getInt(childPosition(index)));
   }
 
-  /** Children write range: 0 .. getMaxSize()-1. */
+  /** Children write range: 0 .. slotCount-1. */
   public void setValueAt(int index, int pageId) {
-    if (index < 0 || index >= getMaxSize()) {
+    if (index < 0 || index >= slotCount) {
       throw new DBException(
           ErrorType.INDEX_NOT_FOUND,
-          "Invalid key child index for write: "
-              + index
-              + " (valid: 0.."
-              + (getMaxSize() - 1)
-              + ")");
+          "Invalid key child index for write: " + index + " (valid: 0.." + (slotCount - 1) + ")");
     }
-    childPageIds[index] = PageId.store(pageId);
+    data.putInt(childPosition(index), pageId);
   }
 
   /** Left-most child setter; if first child, bump size to 1. */
   public void setLeftmostChild(int pageId) {
-    childPageIds[0] = PageId.store(pageId);
+    data.putInt(childPosition(0), pageId);
     if (getSize() == 0) setSize(1);
   }
 
@@ -90,8 +118,7 @@ public final class BPlusTreeInternalPage<K> extends BPlusTreePage {
     int idx = 0; // default to leftmost child
     while (lo <= hi) {
       int mid = (lo + hi) >>> 1;
-      K midKey = keyAt(mid);
-      int c = cmp.compare(key, midKey);
+      int c = cmp.compare(key, readKey(mid));
       if (c < 0) {
         hi = mid - 1;
       } else {
@@ -99,7 +126,19 @@ public final class BPlusTreeInternalPage<K> extends BPlusTreePage {
         lo = mid + 1;
       }
     }
-    return valueAt(idx);
+    return PageId.store(data.getInt(childPosition(idx)));
+  }
+
+  private K readKey(int index) {
+    return keySerializer.read(data, keyPosition(index));
+  }
+
+  private int keyPosition(int index) {
+    return HEADER_SIZE + index * keySize;
+  }
+
+  private int childPosition(int index) {
+    return childrenOffset + index * CHILD_SIZE;
   }
 
   @Override
@@ -108,7 +147,7 @@ public final class BPlusTreeInternalPage<K> extends BPlusTreePage {
     boolean first = true;
     for (int i = 1; i < getSize(); i++) {
       if (!first) sb.append(',');
-      sb.append(keys[i]);
+      sb.append(readKey(i));
       first = false;
     }
     sb.append(')');
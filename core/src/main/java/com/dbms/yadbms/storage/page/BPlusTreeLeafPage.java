@@ -5,45 +5,85 @@ import static com.dbms.yadbms.common.utils.Constants.INVALID_PAGE_ID;
 import com.dbms.yadbms.common.exceptions.DBException;
 import com.dbms.yadbms.common.exceptions.ErrorType;
 import com.dbms.yadbms.config.PageId;
+import com.dbms.yadbms.storage.index.KeySerializer;
+import java.nio.ByteBuffer;
 import java.util.Comparator;
-import lombok.Getter;
-import lombok.Setter;
 
+/**
+ * Leaf page of a B+ tree, laid out in the frame buffer as:
+ *
+ * <pre>
+ *  ------------------------------------------------------------------------------
+ *  | PageType (4) | Size (4) | MaxSize (4) | NextPageId (4) |
+ *  ------------------------------------------------------------------------------
+ *  | Key_0 | Key_1 | ... | Key_n-1 | Rid_0 | Rid_1 | ... | Rid_n-1 |
+ *  ------------------------------------------------------------------------------
+ * </pre>
+ *
+ * Keys take {@link KeySerializer#getKeySize()} bytes each and a rid is packed as (pageId (4),
+ * slotNumber (4)). The number of slots n follows from the page size, and one slot is kept spare so
+ * an insert can overflow the page before it is split.
+ */
 public final class BPlusTreeLeafPage<K, V> extends BPlusTreePage {
+  private static final int NEXT_PAGE_ID_OFFSET = HEADER_SIZE;
+  private static final int LEAF_HEADER_SIZE = HEADER_SIZE + 4;
+  private static final int RID_SIZE = 8;
 
-  private final Object[] keys;
-  private final RecordId[] rids; // RecordId pairs (pageId, slotNumber)
+  private final KeySerializer<K> keySerializer;
   private final Comparator<? super K> cmp;
-
-  @Setter @Getter private PageId nextPageId = PageId.store(INVALID_PAGE_ID);
+  private final int keySize;
+  private final int slotCount;
+  private final int ridsOffset;
 
   /**
-   * @param slotCount logical capacity (max key/RID pair)
+   * @param data the frame buffer holding this page
+   * @param keySerializer fixed-width encoding for keys
    * @param comparator ordering for keys (avoid assuming K is Comparable)
    */
-  public BPlusTreeLeafPage(int slotCount, Comparator<? super K> comparator) {
-    this.keys = new Object[slotCount];
-    this.rids = new RecordId[slotCount];
+  public BPlusTreeLeafPage(
+      ByteBuffer data, KeySerializer<K> keySerializer, Comparator<? super K> comparator) {
+    super(data);
+    this.keySerializer = keySerializer;
     this.cmp = comparator;
-    init(slotCount);
+    this.keySize = keySerializer.getKeySize();
+    this.slotCount = slotCount(data.capacity(), keySize);
+    this.ridsOffset = LEAF_HEADER_SIZE + slotCount * keySize;
+  }
+
+  /**
+   * Number of (key, rid) slots that fit in a page.
+   *
+   * @param pageSize size of the page in bytes
+   * @param keySize size of one key in bytes
+   * @return the slot count, including the spare overflow slot
+   */
+  public static int slotCount(int pageSize, int keySize) {
+    return (pageSize - LEAF_HEADER_SIZE) / (keySize + RID_SIZE);
   }
 
   public void init(int maxSize) {
     setPageType(IndexPageType.LEAF_PAGE);
     setSize(0);
-    setMaxSize(Math.min(maxSize, keys.length));
-    this.nextPageId = PageId.store(INVALID_PAGE_ID);
+    setMaxSize(Math.min(maxSize, slotCount - 1));
+    setNextPageId(PageId.store(INVALID_PAGE_ID));
+  }
+
+  public PageId getNextPageId() {
+    return PageId.store(data.getInt(NEXT_PAGE_ID_OFFSET));
+  }
+
+  public void setNextPageId(PageId nextPageId) {
+    data.putInt(NEXT_PAGE_ID_OFFSET, nextPageId.getValue());
   }
 
   /** key indices valid: [0 .. size-1] */
-  @SuppressWarnings("unchecked")
   public K keyAt(int index) {
     if (index < 0 || index >= getSize()) {
       throw new DBException(
           ErrorType.INDEX_NOT_FOUND,
           "Invalid key index: " + index + " (valid: 0.." + (getSize() - 1) + ")");
     }
-    return (K) keys[index];
+    return readKey(index);
   }
 
   /** rid indices valid: [0 .. size-1] */
@@ -53,43 +93,46 @@ public final class BPlusTreeLeafPage<K, V> extends BPlusTreePage {
           ErrorType.INDEX_NOT_FOUND,
           "Invalid rid index: " + index + " (valid: 0.." + (getSize() - 1) + ")");
     }
-    return rids[index];
+    int at = ridPosition(index);
+    return new RecordId(PageId.store(data.getInt(at)), data.getInt(at + 4));
   }
 
   /** Writes key at index (within capacity, not necessarily within current size). */
   public void setKeyAt(int index, K key) {
-    if (index < 0 || index >= getMaxSize()) {
+    if (index < 0 || index >= slotCount) {
       throw new DBException(
           ErrorType.INDEX_NOT_FOUND,
-          "Invalid key index for write: " + index + " (valid: 0.." + (getMaxSize() - 1) + ")");
+          "Invalid key index for write: " + index + " (valid: 0.." + (slotCount - 1) + ")");
     }
-    keys[index] = key;
+    keySerializer.write(data, keyPosition(index), key);
   }
 
   /** Writes RID at index (within capacity, not necessarily within current size). */
   public void setRidAt(int index, RecordId rid) {
-    if (index < 0 || index >= getMaxSize()) {
+    if (index < 0 || index >= slotCount) {
       throw new DBException(
           ErrorType.INDEX_NOT_FOUND,
-          "Invalid rid index for write: " + index + " (valid: 0.." + (getMaxSize() - 1) + ")");
+          "Invalid rid index for write: " + index + " (valid: 0.." + (slotCount - 1) + ")");
     }
-    rids[index] = rid;
+    int at = ridPosition(index);
+    data.putInt(at, rid.getPageId().getValue());
+    data.putInt(at + 4, rid.getSlotNumber());
   }
 
   /** Insert (key,rid) at an exact index, shifting tail to the right. */
   public void insertAt(int index, K key, RecordId rid) {
     final int sz = getSize();
-    if (sz >= getMaxSize()) throw new IllegalStateException("Leaf page full");
+    if (sz >= slotCount) throw new IllegalStateException("Leaf page full");
     if (index < 0 || index > sz)
       throw new IndexOutOfBoundsException("insert index out of range: " + index);
 
     if (sz - index > 0) {
-      System.arraycopy(keys, index, keys, index + 1, sz - index);
-      System.arraycopy(rids, index, rids, index + 1, sz - index);
+      shift(keyPosition(index), keyPosition(index + 1), (sz - index) * keySize);
+      shift(ridPosition(index), ridPosition(index + 1), (sz - index) * RID_SIZE);
     }
-    keys[index] = key;
-    rids[index] = rid;
     setSize(sz + 1);
+    setKeyAt(index, key);
+    setRidAt(index, rid);
   }
 
   /** Insert (key,rid) in sorted order; returns the insertion index. */
@@ -106,29 +149,17 @@ public final class BPlusTreeLeafPage<K, V> extends BPlusTreePage {
       throw new DBException(ErrorType.INDEX_NOT_FOUND, "remove index out of range: " + index);
 
     if (sz - 1 - index > 0) {
-      System.arraycopy(keys, index + 1, keys, index, sz - 1 - index);
-      System.arraycopy(rids, index + 1, rids, index, sz - 1 - index);
+      shift(keyPosition(index + 1), keyPosition(index), (sz - 1 - index) * keySize);
+      shift(ridPosition(index + 1), ridPosition(index), (sz - 1 - index) * RID_SIZE);
     }
-    keys[sz - 1] = null;
-    rids[sz - 1] = null;
     setSize(sz - 1);
   }
 
   /** Binary search: return index of key if present, else -1. */
   public int findKey(K key) {
-    int lo = 0, hi = getSize(); // hi exclusive
-    while (lo < hi) {
-      int mid = (lo + hi) >>> 1;
-      @SuppressWarnings("unchecked")
-      K midKey = (K) keys[mid];
-      int c = cmp.compare(key, midKey);
-      if (c <= 0) hi = mid;
-      else lo = mid + 1;
-    }
-    if (lo < getSize()) {
-      @SuppressWarnings("unchecked")
-      K at = (K) keys[lo];
-      if (cmp.compare(key, at) == 0) return lo;
+    int lo = lowerBound(key);
+    if (lo < getSize() && cmp.compare(key, readKey(lo)) == 0) {
+      return lo;
     }
     return -1;
   }
@@ -138,9 +169,7 @@ public final class BPlusTreeLeafPage<K, V> extends BPlusTreePage {
     int lo = 0, hi = getSize();
     while (lo < hi) {
       int mid = (lo + hi) >>> 1;
-      @SuppressWarnings("unchecked")
-      K midKey = (K) keys[mid];
-      if (cmp.compare(key, midKey) <= 0) hi = mid;
+      if (cmp.compare(key, readKey(mid)) <= 0) hi = mid;
       else lo = mid + 1;
     }
     return lo;
@@ -153,13 +182,25 @@ public final class BPlusTreeLeafPage<K, V> extends BPlusTreePage {
     return value;
   }
 
+  private K readKey(int index) {
+    return keySerializer.read(data, keyPosition(index));
+  }
+
+  private int keyPosition(int index) {
+    return LEAF_HEADER_SIZE + index * keySize;
+  }
+
+  private int ridPosition(int index) {
+    return ridsOffset + index * RID_SIZE;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder("(");
     boolean first = true;
     for (int i = 0; i < getSize(); i++) {
       if (!first) sb.append(',');
-      sb.append(keys[i]).append("->").append(rids[i]);
+      sb.append(readKey(i)).append("->").append(ridAt(i));
       first = false;
     }
     sb.append(')');
@@ -1,24 +1,78 @@
 package com.dbms.yadbms.storage.page;
 
-import lombok.Getter;
-import lombok.Setter;
+import java.nio.ByteBuffer;
 
-public abstract class BPlusTreePage {
-  @Setter private IndexPageType pageType = IndexPageType.INVALID_INDEX_PAGE;
+/**
+ * Common header shared by B+ tree leaf and internal pages. Like the other page types it is a view
+ * over the frame buffer, so it can also be used on its own to peek at the page type.
+ *
+ * <pre>
+ *  ----------------------------------------------
+ *  | PageType (4) | Size (4) | MaxSize (4) |
+ *  ----------------------------------------------
+ * </pre>
+ */
+public class BPlusTreePage {
+  protected static final int PAGE_TYPE_OFFSET = 0;
+  protected static final int SIZE_OFFSET = 4;
+  protected static final int MAX_SIZE_OFFSET = 8;
+  protected static final int HEADER_SIZE = 12;
 
-  @Getter @Setter private int size;
+  protected final ByteBuffer data;
 
-  @Getter @Setter private int maxSize;
+  public BPlusTreePage(ByteBuffer data) {
+    this.data = data;
+  }
+
+  public void setPageType(IndexPageType pageType) {
+    data.putInt(PAGE_TYPE_OFFSET, pageType.ordinal());
+  }
+
+  public IndexPageType getPageType() {
+    return IndexPageType.values()[data.getInt(PAGE_TYPE_OFFSET)];
+  }
 
   public boolean isLeafPage() {
-    return pageType == IndexPageType.LEAF_PAGE;
+    return getPageType() == IndexPageType.LEAF_PAGE;
+  }
+
+  public int getSize() {
+    return data.getInt(SIZE_OFFSET);
+  }
+
+  public void setSize(int size) {
+    data.putInt(SIZE_OFFSET, size);
+  }
+
+  public int getMaxSize() {
+    return data.getInt(MAX_SIZE_OFFSET);
+  }
+
+  public void setMaxSize(int maxSize) {
+    data.putInt(MAX_SIZE_OFFSET, maxSize);
   }
 
   public void changeSizeBy(int amount) {
-    size += amount;
+    setSize(getSize() + amount);
   }
 
   public int getMinSize() {
-    return (int) Math.ceil(maxSize / 2.0);
+    return (int) Math.ceil(getMaxSize() / 2.0);
+  }
+
+  /** Moves a byte range inside the page; ranges may overlap. */
+  protected void shift(int from, int to, int length) {
+    if (data.hasArray()) {
+      int base = data.arrayOffset();
+      System.arraycopy(data.array(), base + from, data.array(), base + to, length);
+      return;
+    }
+    byte[] tmp = new byte[length];
+    ByteBuffer src = data.duplicate();
+    src.position(from);
+    src.get(tmp);
+    ByteBuffer dst = data.duplicate();
+    dst.position(to);
+    dst.put(tmp);
   }
 }
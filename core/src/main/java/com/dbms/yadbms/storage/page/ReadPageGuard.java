@@ -1,73 +1,182 @@
 package com.dbms.yadbms.storage.page;
 
 import com.dbms.yadbms.buffer.FrameHeader;
-import com.dbms.yadbms.buffer.replacer.LRUKReplacer;
-import com.dbms.yadbms.common.serializer.KryoSerializer;
+import com.dbms.yadbms.buffer.replacer.Replacer;
 import com.dbms.yadbms.config.PageId;
 import com.dbms.yadbms.storage.disk.DiskRequest;
 import com.dbms.yadbms.storage.disk.DiskScheduler;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Optional;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import lombok.Getter;
 
+/**
+ * Shared, read-only access to a pinned page. Guards obtained through {@link #acquire} are recycled:
+ * once closed on the thread that acquired them they go to a small per-thread stack of spare guards,
+ * so fetching a resident page does not allocate. A guard must therefore not be used after it has
+ * been closed; closing it a second time after the thread acquired another page would unpin and
+ * unlatch that other page. A guard released with {@link #drop} is never recycled, so dropping it
+ * early and closing it again at the end of a try-with-resources block stays harmless.
+ *
+ * <p>A guard can be upgraded to a {@link WritePageGuard} in place with {@link #tryUpgrade}, so a
+ * thread can look at a page shared and latch it exclusively only if it decides to modify it.
+ */
 public class ReadPageGuard implements AutoCloseable {
+  /** Most dropped guards kept per thread; enough for the guards a thread holds at once. */
+  private static final int MAX_SPARE_GUARDS = 16;
+
+  private static final ThreadLocal<ArrayDeque<ReadPageGuard>> SPARE_GUARDS =
+      ThreadLocal.withInitial(() -> new ArrayDeque<>(MAX_SPARE_GUARDS));
+
+  /** Thread whose spare guards this one returns to when dropped, or null for a one-off guard. */
+  private final Thread owner;
 
   /**
    * The frame that holds the page this guard is protecting. Almost all operations of this page
-   * guard should be done via this shared pointer to a `FrameHeader`.
+   * guard should be done via this shared pointer to a `FrameHeader`. Null once dropped.
    */
-  private final FrameHeader frame;
+  private FrameHeader frame;
 
   /** The page ID of the page we are guarding. */
-  @Getter private final PageId pageId;
+  @Getter private PageId pageId;
 
   /**
    * Since the buffer pool cannot know when this `WritePageGuard` gets destructed, we the buffer
    * pool's latch for when we need to update the frame's eviction state in the buffer pool replacer.
    */
-  private final ReentrantLock bpmLatch;
+  private ReentrantLock bpmLatch;
 
   /**
    * Since the buffer pool cannot know when this `WritePageGuard` gets destructed, we the buffer
    * pool's replacer in order to set the frame as evictable on destruction.
    */
-  private final LRUKReplacer replacer;
+  private Replacer replacer;
 
   /** Used when flushing pages to disk. */
-  private final DiskScheduler diskScheduler;
+  private DiskScheduler diskScheduler;
 
-  /** Used to serialize object to the wanted types. */
-  private final KryoSerializer serializer = KryoSerializer.getInstance();
+  /** Stamp of the shared frame latch this guard holds. */
+  private long stamp;
 
   public ReadPageGuard(
       FrameHeader frame,
       PageId pageId,
       ReentrantLock bpmLatch,
-      LRUKReplacer replacer,
+      Replacer replacer,
+      DiskScheduler diskScheduler) {
+    this.owner = null;
+    bind(frame, pageId, bpmLatch, replacer, diskScheduler);
+  }
+
+  private ReadPageGuard(Thread owner) {
+    this.owner = owner;
+  }
+
+  /**
+   * Guards a frame the caller has pinned, reusing a spare guard of the current thread if there is
+   * one. The guard reports the page the frame holds.
+   */
+  public static ReadPageGuard acquire(
+      FrameHeader frame, ReentrantLock bpmLatch, Replacer replacer, DiskScheduler diskScheduler) {
+    ReadPageGuard guard = SPARE_GUARDS.get().pollLast();
+    if (guard == null) {
+      guard = new ReadPageGuard(Thread.currentThread());
+    }
+    guard.bind(frame, frame.getPageId(), bpmLatch, replacer, diskScheduler);
+    return guard;
+  }
+
+  private void bind(
+      FrameHeader frame,
+      PageId pageId,
+      ReentrantLock bpmLatch,
+      Replacer replacer,
       DiskScheduler diskScheduler) {
     this.frame = frame;
     this.pageId = pageId;
     this.bpmLatch = bpmLatch;
     this.replacer = replacer;
     this.diskScheduler = diskScheduler;
-    frame.readLock().lock();
-    frame.setPinCount(1);
+    this.stamp = frame.latchShared();
   }
 
-  public byte[] getData() {
-    return frame.getData();
+  /**
+   * Read-only view of the frame bytes; it must not be used after this guard is dropped. The view is
+   * shared with every other reader of the frame, so read it at absolute offsets only.
+   */
+  public ByteBuffer getData() {
+    return frame.getReadOnlyBuffer();
   }
 
+  /**
+   * Releases the latch and the pin without recycling the guard, so later calls, including {@link
+   * #close}, do nothing.
+   */
   public void drop() {
-    bpmLatch.lock();
-    try {
-      if (frame.unPin() == 0) {
-        replacer.setEvictable(frame.getFrameId(), true);
+    release();
+  }
+
+  /** Releases the latch and the pin; returns false if the guard held neither any more. */
+  private boolean release() {
+    FrameHeader frame = this.frame;
+    if (frame == null) {
+      return false;
+    }
+    if (frame.unPin() == 0) {
+      // Only the last pin takes the partition latch; the frame may have been pinned again, or
+      // claimed for another page, before we got it.
+      bpmLatch.lock();
+      try {
+        if (frame.isUnpinnedWith(pageId)) {
+          replacer.unPin(frame.getFrameId());
+        }
+      } finally {
+        bpmLatch.unlock();
       }
-    } finally {
-      bpmLatch.unlock();
     }
 
-    frame.readLock().unlock();
+    frame.unlatch(stamp);
+    forget();
+    return true;
+  }
+
+  /**
+   * Tries to latch the page exclusively without letting go of it, which succeeds only while no
+   * other thread holds the page latched. On success the latch and the pin move to the returned
+   * guard and this guard is done with; otherwise this guard is left as it was.
+   *
+   * @return a guard with exclusive access to the page, or empty if other readers hold it
+   */
+  public Optional<WritePageGuard> tryUpgrade() {
+    long exclusive = frame.tryUpgrade(stamp);
+    if (exclusive == 0) {
+      return Optional.empty();
+    }
+    WritePageGuard upgraded =
+        WritePageGuard.adopt(frame, pageId, bpmLatch, replacer, diskScheduler, exclusive);
+    // Not recycled: the scope that acquired this guard may still close it, which must stay a no-op.
+    forget();
+    return Optional.of(upgraded);
+  }
+
+  private void forget() {
+    frame = null;
+    pageId = null;
+    bpmLatch = null;
+    replacer = null;
+    diskScheduler = null;
+  }
+
+  /** Hand the guard back to its thread's spare guards. */
+  private void recycle() {
+    if (owner == Thread.currentThread()) {
+      ArrayDeque<ReadPageGuard> spare = SPARE_GUARDS.get();
+      if (spare.size() < MAX_SPARE_GUARDS) {
+        spare.addLast(this);
+      }
+    }
   }
 
   public boolean isDirty() {
@@ -80,22 +189,33 @@ public class ReadPageGuard implements AutoCloseable {
     }
 
     DiskRequest request =
-        DiskRequest.builder().isWrite(true).data(frame.getData()).pageId(pageId).build();
+        DiskRequest.builder()
+            .isWrite(true)
+            .buffer(frame.getBuffer())
+            .pageId(pageId)
+            .callback(diskScheduler.createPromise())
+            .build();
     diskScheduler.schedule(request);
+    request.getCallback().join();
     frame.clearDirty();
   }
 
-  public <T> T getDataAs(Class<T> type) {
-    return serializer.fromBytes(frame.getData(), type);
-  }
-
-  /** Direct access to mutable page data */
-  public <T> T asMut(Class<T> type) {
-    return serializer.fromBytes(frame.getData(), type);
+  /**
+   * Wraps the frame bytes in a flyweight page view, e.g. {@code getDataAs(TablePage::new)}. The
+   * view reads the frame in place, so it must not be used after this guard is dropped.
+   */
+  public <T> T getDataAs(Function<ByteBuffer, T> view) {
+    return view.apply(frame.getBuffer());
   }
 
+  /**
+   * Releases the latch and the pin like {@link #drop}, then hands the guard back to be reused by
+   * its thread; it must not be closed again once the thread has acquired another page.
+   */
   @Override
   public void close() {
-    drop();
+    if (release()) {
+      recycle();
+    }
   }
 }
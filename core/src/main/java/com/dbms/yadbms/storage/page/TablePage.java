@@ -1,21 +1,16 @@
 package com.dbms.yadbms.storage.page;
 
 import static com.dbms.yadbms.common.utils.Constants.INVALID_PAGE_ID;
-import static com.dbms.yadbms.common.utils.Constants.PAGE_SIZE;
 import static com.dbms.yadbms.common.utils.Constants.TABLE_PAGE_HEADER_SIZE;
 import static com.dbms.yadbms.common.utils.Constants.TUPLE_INFO_SIZE;
 
 import com.dbms.yadbms.common.exceptions.DBException;
 import com.dbms.yadbms.common.exceptions.ErrorType;
 import com.dbms.yadbms.storage.table.Tuple;
-import com.dbms.yadbms.storage.table.TupleInfo;
 import com.dbms.yadbms.storage.table.TupleMetaData;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.Optional;
-import lombok.Getter;
-import lombok.Setter;
 
 /**
  * Slotted page format:
@@ -35,45 +30,77 @@ import lombok.Setter;
  *  | NextPageId (4) | NumTuples (2) | NumDeletedTuples (2) |
  *  ----------------------------------------------------------------------------
  *  ----------------------------------------------------------------
- *  | Tuple_1 offset+size (4) | Tuple_2 offset+size (4) | ... |
+ *  | Tuple_1 offset+size+meta (24) | Tuple_2 offset+size+meta (24) | ... |
  *  ----------------------------------------------------------------
  * </pre>
  *
+ * Tuple info format (size in bytes):
+ *
+ * <pre>
+ *  | Offset (4) | Size (4) | Ts (8) | IsDeleted (1) | Padding (7) |
+ * </pre>
+ *
  * Tuple format:
  *
  * <pre>
  *  | meta | data |
  * </pre>
+ *
+ * <p>A TablePage is a flyweight view: it owns no storage and reads and writes the header, the slot
+ * directory and the tuple bytes directly in the frame buffer it wraps.
  */
 public class TablePage {
-  @Getter @Setter private int nextPageId;
-  @Getter private int numTuples;
-  private int numDeletedTuples;
-  private final List<TupleInfo> tupleInfo;
-  private final byte[] pageStart;
-
-  public TablePage() {
-    this.pageStart = new byte[PAGE_SIZE];
-    this.tupleInfo = new ArrayList<>();
-    init();
+  private static final int NEXT_PAGE_ID_OFFSET = 0;
+  private static final int NUM_TUPLES_OFFSET = 4;
+  private static final int NUM_DELETED_TUPLES_OFFSET = 6;
+
+  private static final int SLOT_OFFSET = 0;
+  private static final int SLOT_SIZE = 4;
+  private static final int SLOT_TS = 8;
+  private static final int SLOT_IS_DELETED = 16;
+
+  private final ByteBuffer pageStart;
+
+  /**
+   * Wraps the given page buffer. No bytes are touched until a method is called.
+   *
+   * @param pageStart the frame buffer holding this page
+   */
+  public TablePage(ByteBuffer pageStart) {
+    this.pageStart = pageStart;
   }
 
   /** Initialize the TablePage header */
   public void init() {
-    this.nextPageId = INVALID_PAGE_ID;
-    this.numTuples = 0;
-    this.numDeletedTuples = 0;
-    this.tupleInfo.clear();
+    setNextPageId(INVALID_PAGE_ID);
+    pageStart.putShort(NUM_TUPLES_OFFSET, (short) 0);
+    pageStart.putShort(NUM_DELETED_TUPLES_OFFSET, (short) 0);
+  }
+
+  public int getNextPageId() {
+    return pageStart.getInt(NEXT_PAGE_ID_OFFSET);
+  }
+
+  public void setNextPageId(int nextPageId) {
+    pageStart.putInt(NEXT_PAGE_ID_OFFSET, nextPageId);
+  }
+
+  public int getNumTuples() {
+    return Short.toUnsignedInt(pageStart.getShort(NUM_TUPLES_OFFSET));
+  }
+
+  public int getNumDeletedTuples() {
+    return Short.toUnsignedInt(pageStart.getShort(NUM_DELETED_TUPLES_OFFSET));
   }
 
   /** Compute next available offset for a given tuple. */
   public Optional<Integer> getNextTupleOffset(TupleMetaData meta, Tuple tuple) {
+    final int numTuples = getNumTuples();
     int slotEndOffset;
     if (numTuples > 0) {
-      TupleInfo last = tupleInfo.get(numTuples - 1);
-      slotEndOffset = last.getOffset();
+      slotEndOffset = slotOffset(numTuples - 1);
     } else {
-      slotEndOffset = PAGE_SIZE;
+      slotEndOffset = pageStart.capacity();
     }
 
     int tupleOffset = slotEndOffset - tuple.getLength();
@@ -92,71 +119,104 @@ public class TablePage {
       return Optional.empty();
     }
     int tupleOffset = tupleOffsetCalculated.get();
-    int tupleId = numTuples;
+    int tupleId = getNumTuples();
 
     // record in directory
-    tupleInfo.add(new TupleInfo(tupleOffset, tuple.getLength(), meta));
-    numTuples++;
+    int slot = slotPosition(tupleId);
+    pageStart.putInt(slot + SLOT_OFFSET, tupleOffset);
+    pageStart.putInt(slot + SLOT_SIZE, tuple.getLength());
+    writeMeta(slot, meta);
+    pageStart.putShort(NUM_TUPLES_OFFSET, (short) (tupleId + 1));
 
     // copy bytes into page storage
-    System.arraycopy(tuple.getData(), 0, pageStart, tupleOffset, tuple.getLength());
+    copyIn(tuple.getData(), tupleOffset);
 
     return Optional.of(tupleId);
   }
 
   /** Update metadata only */
   public void updateTupleMeta(TupleMetaData meta, RecordId rid) {
-    int tupleId = rid.getSlotNumber();
-    if (tupleId >= numTuples) {
-      throw new DBException(ErrorType.INVALID_OPERATION, "Tuple ID out of range");
-    }
-    TupleInfo slot = tupleInfo.get(tupleId);
-    if (!slot.getTupleMetaData().isDeleted() && meta.isDeleted()) {
-      numDeletedTuples++;
+    int slot = checkedSlotPosition(rid);
+    if (!isDeleted(slot) && meta.isDeleted()) {
+      bumpDeletedTuples();
     }
-    slot.setTupleMetaData(meta);
+    writeMeta(slot, meta);
   }
 
   /** Get a tuple */
   public Map<TupleMetaData, Tuple> getTuple(RecordId rid) {
-    int tupleId = rid.getSlotNumber();
-    if (tupleId >= numTuples) {
-      throw new DBException(ErrorType.INVALID_OPERATION, "Tuple ID out of range");
-    }
-    TupleInfo slot = tupleInfo.get(tupleId);
+    int slot = checkedSlotPosition(rid);
+    int size = pageStart.getInt(slot + SLOT_SIZE);
 
-    byte[] tupleBytes = new byte[slot.getSize()];
-    System.arraycopy(pageStart, slot.getOffset(), tupleBytes, 0, slot.getSize());
+    byte[] tupleBytes = new byte[size];
+    copyOut(pageStart.getInt(slot + SLOT_OFFSET), tupleBytes);
 
-    Tuple t = new Tuple(rid, tupleBytes, slot.getSize());
-    return Map.of(slot.getTupleMetaData(), t);
+    Tuple t = new Tuple(rid, tupleBytes, size);
+    return Map.of(readMeta(slot), t);
   }
 
   /** Get tuple meta only */
   public TupleMetaData getTupleMetaData(RecordId rid) {
-    int tupleId = rid.getSlotNumber();
-    if (tupleId >= numTuples) {
-      throw new DBException(ErrorType.INVALID_OPERATION, "Tuple ID out of range");
-    }
-    return tupleInfo.get(tupleId).getTupleMetaData();
+    return readMeta(checkedSlotPosition(rid));
   }
 
   /** Update a tuple in place (unsafe if size mismatch) */
   public void updateTupleInPlaceUnsafe(TupleMetaData meta, Tuple tuple, RecordId rid) {
-    int tupleId = rid.getSlotNumber();
-    if (tupleId >= numTuples) {
-      throw new DBException(ErrorType.INVALID_OPERATION, "Tuple ID out of range");
-    }
-    TupleInfo slot = tupleInfo.get(tupleId);
+    int slot = checkedSlotPosition(rid);
 
-    if (slot.getSize() != tuple.getLength()) {
+    if (pageStart.getInt(slot + SLOT_SIZE) != tuple.getLength()) {
       throw new DBException(ErrorType.INVALID_OPERATION, "Tuple size mismatch");
     }
-    if (!slot.getTupleMetaData().isDeleted() && meta.isDeleted()) {
-      numDeletedTuples++;
+    if (!isDeleted(slot) && meta.isDeleted()) {
+      bumpDeletedTuples();
+    }
+
+    writeMeta(slot, meta);
+    copyIn(tuple.getData(), pageStart.getInt(slot + SLOT_OFFSET));
+  }
+
+  private int checkedSlotPosition(RecordId rid) {
+    int tupleId = rid.getSlotNumber();
+    if (tupleId < 0 || tupleId >= getNumTuples()) {
+      throw new DBException(ErrorType.INVALID_OPERATION, "Tuple ID out of range");
     }
+    return slotPosition(tupleId);
+  }
+
+  private static int slotPosition(int tupleId) {
+    return TABLE_PAGE_HEADER_SIZE + tupleId * TUPLE_INFO_SIZE;
+  }
+
+  private int slotOffset(int tupleId) {
+    return pageStart.getInt(slotPosition(tupleId) + SLOT_OFFSET);
+  }
+
+  private boolean isDeleted(int slot) {
+    return pageStart.get(slot + SLOT_IS_DELETED) != 0;
+  }
+
+  private TupleMetaData readMeta(int slot) {
+    return new TupleMetaData(pageStart.getLong(slot + SLOT_TS), isDeleted(slot));
+  }
+
+  private void writeMeta(int slot, TupleMetaData meta) {
+    pageStart.putLong(slot + SLOT_TS, meta.getTs());
+    pageStart.put(slot + SLOT_IS_DELETED, (byte) (meta.isDeleted() ? 1 : 0));
+  }
+
+  private void bumpDeletedTuples() {
+    pageStart.putShort(NUM_DELETED_TUPLES_OFFSET, (short) (getNumDeletedTuples() + 1));
+  }
+
+  private void copyIn(byte[] src, int offset) {
+    ByteBuffer dst = pageStart.duplicate();
+    dst.position(offset);
+    dst.put(src);
+  }
 
-    slot.setTupleMetaData(meta);
-    System.arraycopy(tuple.getData(), 0, pageStart, slot.getOffset(), tuple.getLength());
+  private void copyOut(int offset, byte[] dst) {
+    ByteBuffer src = pageStart.duplicate();
+    src.position(offset);
+    src.get(dst);
   }
 }
@@ -1,42 +1,102 @@
 package com.dbms.yadbms.storage.page;
 
 import com.dbms.yadbms.buffer.FrameHeader;
-import com.dbms.yadbms.buffer.replacer.LRUKReplacer;
-import com.dbms.yadbms.common.serializer.KryoSerializer;
+import com.dbms.yadbms.buffer.replacer.Replacer;
 import com.dbms.yadbms.config.PageId;
 import com.dbms.yadbms.storage.disk.DiskRequest;
 import com.dbms.yadbms.storage.disk.DiskScheduler;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import lombok.Getter;
 
+/**
+ * Exclusive, mutable access to a pinned page. Like {@link ReadPageGuard}, guards obtained through
+ * {@link #acquire} are recycled per thread once closed and must not be used after that; closing one
+ * again after the thread acquired another page would unpin and unlatch that other page. Guards
+ * released with {@link #drop} are not recycled, so a later close of them does nothing.
+ */
 public class WritePageGuard implements AutoCloseable {
+  private static final int MAX_SPARE_GUARDS = 16;
 
-  private final FrameHeader frame;
-  @Getter private final PageId pageId;
-  private final ReentrantLock bpmLatch;
-  private final LRUKReplacer replacer;
-  private final DiskScheduler diskScheduler;
-  private final KryoSerializer serializer = KryoSerializer.getInstance();
+  private static final ThreadLocal<ArrayDeque<WritePageGuard>> SPARE_GUARDS =
+      ThreadLocal.withInitial(() -> new ArrayDeque<>(MAX_SPARE_GUARDS));
+
+  /** Thread whose spare guards this one returns to when dropped, or null for a one-off guard. */
+  private final Thread owner;
+
+  private FrameHeader frame;
+  @Getter private PageId pageId;
+  private ReentrantLock bpmLatch;
+  private Replacer replacer;
+  private DiskScheduler diskScheduler;
+
+  /** Stamp of the exclusive frame latch this guard holds. */
+  private long stamp;
 
   public WritePageGuard(
       FrameHeader frame,
       PageId pageId,
       ReentrantLock bpmLatch,
-      LRUKReplacer replacer,
+      Replacer replacer,
       DiskScheduler diskScheduler) {
+    this.owner = null;
+    bind(frame, pageId, bpmLatch, replacer, diskScheduler, frame.latchExclusive());
+  }
+
+  private WritePageGuard(Thread owner) {
+    this.owner = owner;
+  }
+
+  /**
+   * Guards a frame the caller has pinned, reusing a spare guard of the current thread if there is
+   * one. The guard reports the page the frame holds.
+   */
+  public static WritePageGuard acquire(
+      FrameHeader frame, ReentrantLock bpmLatch, Replacer replacer, DiskScheduler diskScheduler) {
+    return adopt(
+        frame, frame.getPageId(), bpmLatch, replacer, diskScheduler, frame.latchExclusive());
+  }
+
+  /** Wraps a frame the caller has pinned and latched exclusively, as an upgraded read guard. */
+  static WritePageGuard adopt(
+      FrameHeader frame,
+      PageId pageId,
+      ReentrantLock bpmLatch,
+      Replacer replacer,
+      DiskScheduler diskScheduler,
+      long stamp) {
+    WritePageGuard guard = SPARE_GUARDS.get().pollLast();
+    if (guard == null) {
+      guard = new WritePageGuard(Thread.currentThread());
+    }
+    guard.bind(frame, pageId, bpmLatch, replacer, diskScheduler, stamp);
+    return guard;
+  }
+
+  private void bind(
+      FrameHeader frame,
+      PageId pageId,
+      ReentrantLock bpmLatch,
+      Replacer replacer,
+      DiskScheduler diskScheduler,
+      long stamp) {
     this.frame = frame;
     this.pageId = pageId;
     this.bpmLatch = bpmLatch;
     this.replacer = replacer;
     this.diskScheduler = diskScheduler;
-
-    frame.writeLock().lock(); // exclusive lock
-    frame.setPinCount(1); // increase pin count
+    this.stamp = stamp;
   }
 
-  /** Direct access to mutable page data */
-  public <T> T asMut(Class<T> type) {
-    return serializer.fromBytes(frame.getData(), type);
+  /**
+   * Wraps the frame bytes in a mutable flyweight page view, e.g. {@code asMut(TablePage::new)}.
+   * Writes go straight into the frame, so the frame is marked dirty here.
+   */
+  public <T> T asMut(Function<ByteBuffer, T> view) {
+    frame.markDirty();
+    return view.apply(frame.getBuffer());
   }
 
   public boolean isDirty() {
@@ -50,28 +110,72 @@ public class WritePageGuard implements AutoCloseable {
     }
 
     DiskRequest request =
-        DiskRequest.builder().isWrite(true).pageId(pageId).data(frame.getData()).build();
+        DiskRequest.builder()
+            .isWrite(true)
+            .pageId(pageId)
+            .buffer(frame.getBuffer())
+            .callback(diskScheduler.createPromise())
+            .build();
 
     diskScheduler.schedule(request);
-    frame.clearDirty(); // assume flush success
+    request.getCallback().join();
+    frame.clearDirty();
   }
 
-  /** Release resources (lock + unpin) */
+  /**
+   * Release resources (lock + unpin) without recycling the guard, so later calls, including {@link
+   * #close}, do nothing.
+   */
   public void drop() {
-    bpmLatch.lock();
-    try {
-      if (frame.unPin() == 0) {
-        replacer.setEvictable(frame.getFrameId(), true);
+    release();
+  }
+
+  /** Release the latch and the pin; returns false if the guard held neither any more. */
+  private boolean release() {
+    FrameHeader frame = this.frame;
+    if (frame == null) {
+      return false;
+    }
+    if (frame.unPin() == 0) {
+      // Only the last pin takes the partition latch; the frame may have been pinned again, or
+      // claimed for another page, before we got it.
+      bpmLatch.lock();
+      try {
+        if (frame.isUnpinnedWith(pageId)) {
+          replacer.unPin(frame.getFrameId());
+        }
+      } finally {
+        bpmLatch.unlock();
       }
-    } finally {
-      bpmLatch.unlock();
     }
 
-    frame.writeLock().unlock();
+    frame.unlatch(stamp);
+    this.frame = null;
+    pageId = null;
+    bpmLatch = null;
+    replacer = null;
+    diskScheduler = null;
+    return true;
+  }
+
+  /** Hand the guard back to its thread's spare guards. */
+  private void recycle() {
+    if (owner == Thread.currentThread()) {
+      ArrayDeque<WritePageGuard> spare = SPARE_GUARDS.get();
+      if (spare.size() < MAX_SPARE_GUARDS) {
+        spare.addLast(this);
+      }
+    }
   }
 
+  /**
+   * Release resources like {@link #drop}, then hand the guard back to be reused by its thread; it
+   * must not be closed again once the thread has acquired another page.
+   */
   @Override
   public void close() {
-    drop();
+    if (release()) {
+      recycle();
+    }
   }
 }
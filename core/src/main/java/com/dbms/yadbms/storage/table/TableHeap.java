@@ -1,5 +1,9 @@
 package com.dbms.yadbms.storage.table;
 
+import static com.dbms.yadbms.common.utils.Constants.SCAN_READ_AHEAD_PAGES;
+import static com.dbms.yadbms.common.utils.Constants.SCAN_RING_SIZE;
+
+import com.dbms.yadbms.buffer.BufferAccessStrategy;
 import com.dbms.yadbms.buffer.BufferPoolManager;
 import com.dbms.yadbms.common.exceptions.DBException;
 import com.dbms.yadbms.common.exceptions.ErrorType;
@@ -8,6 +12,7 @@ import com.dbms.yadbms.storage.page.ReadPageGuard;
 import com.dbms.yadbms.storage.page.RecordId;
 import com.dbms.yadbms.storage.page.TablePage;
 import com.dbms.yadbms.storage.page.WritePageGuard;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
 import lombok.Getter;
@@ -17,12 +22,22 @@ public class TableHeap {
   PageId firstPageId;
   PageId lastPageId;
 
+  /**
+   * Pages of the heap in chain order, so scans know which pages to read ahead. Append-only: the
+   * array doubles when full, and {@link #pageCount} is published after the page and the array, so
+   * a reader that reads the count first finds every page below it.
+   */
+  private volatile PageId[] pageIds = new PageId[16];
+
+  private volatile int pageCount;
+
   TableHeap(BufferPoolManager bufferPoolManager) {
     this.bufferPoolManager = bufferPoolManager;
     this.firstPageId = bufferPoolManager.newPage();
     this.lastPageId = firstPageId;
+    appendPage(firstPageId);
     try (WritePageGuard guard = bufferPoolManager.writePage(firstPageId)) {
-      TablePage firstPage = guard.asMut(TablePage.class);
+      TablePage firstPage = guard.asMut(TablePage::new);
       firstPage.init();
     }
   }
@@ -35,27 +50,78 @@ public class TableHeap {
    * @return rid of the inserted tuple
    */
   public synchronized Optional<RecordId> insertTuple(TupleMetaData metaData, Tuple tuple) {
-    try (WritePageGuard guard = bufferPoolManager.writePage(lastPageId)) {
-      while (true) {
-        TablePage page = guard.asMut(TablePage.class);
-        if (page.getNextTupleOffset(metaData, tuple).isEmpty()) {
-          break;
-        }
+    WritePageGuard guard = bufferPoolManager.writePage(lastPageId);
+    try {
+      TablePage page = guard.asMut(TablePage::new);
+      if (page.getNextTupleOffset(metaData, tuple).isEmpty()) {
         PageId nextPageId = bufferPoolManager.newPage();
         page.setNextPageId(nextPageId.getValue());
-        try (WritePageGuard nextPageGuard = bufferPoolManager.writePage(nextPageId)) {
-          TablePage nextPage = nextPageGuard.asMut(TablePage.class);
-          nextPage.init();
-          lastPageId = nextPageId;
+        WritePageGuard nextPageGuard = bufferPoolManager.writePage(nextPageId);
+        guard.drop();
+        guard = nextPageGuard;
+        page = guard.asMut(TablePage::new);
+        page.init();
+        lastPageId = nextPageId;
+        appendPage(nextPageId);
+        if (page.getNextTupleOffset(metaData, tuple).isEmpty()) {
+          // Does not fit even in an empty page.
+          return Optional.empty();
         }
       }
-      TablePage page = guard.asMut(TablePage.class);
       Optional<Integer> slotId = page.insertTuple(metaData, tuple);
       if (slotId.isEmpty()) {
         throw new DBException(ErrorType.IO_ERROR, "Failed to insert tuple");
       }
       return Optional.of(new RecordId(lastPageId, slotId.get()));
+    } finally {
+      guard.drop();
+    }
+  }
+
+  /**
+   * Iterate over every tuple slot of the heap, page by page in chain order, reading the next pages
+   * ahead of the scan. A heap larger than a quarter of the buffer pool is scanned through a ring
+   * of {@code SCAN_RING_SIZE} frames, so the scan does not push other pages out of the pool.
+   *
+   * @return an iterator over the record ids of the heap, deleted tuples included
+   */
+  public TableIterator makeIterator() {
+    BufferAccessStrategy strategy =
+        pageCount > bufferPoolManager.size() / 4
+            ? bufferPoolManager.ringStrategy(SCAN_RING_SIZE)
+            : null;
+    return new TableIterator(this, SCAN_READ_AHEAD_PAGES, strategy);
+  }
+
+  /**
+   * Pages that follow a page in the heap, used to read ahead of a scan.
+   *
+   * @param position index of the page in chain order
+   * @param count most pages to return
+   * @return up to {@code count} page ids following the page
+   */
+  PageId[] pagesAfter(int position, int count) {
+    // The count is read before the array, so every index below it is filled in.
+    int from = position + 1;
+    int to = Math.min(from + count, pageCount);
+    PageId[] pages = pageIds;
+    PageId[] following = new PageId[Math.max(0, to - from)];
+    for (int i = from; i < to; i++) {
+      following[i - from] = pages[i];
+    }
+    return following;
+  }
+
+  /** Add a page at the end of the chain; callers are serialized by the constructor or insert. */
+  private void appendPage(PageId pageId) {
+    PageId[] pages = pageIds;
+    int count = pageCount;
+    if (count == pages.length) {
+      pages = Arrays.copyOf(pages, 2 * count);
     }
+    pages[count] = pageId;
+    pageIds = pages;
+    pageCount = count + 1;
   }
 
   /**
@@ -66,7 +132,7 @@ public class TableHeap {
    */
   public void updateTupleMetaData(TupleMetaData metaData, RecordId rid) {
     try (WritePageGuard pageGuard = bufferPoolManager.writePage(rid.getPageId())) {
-      TablePage page = pageGuard.asMut(TablePage.class);
+      TablePage page = pageGuard.asMut(TablePage::new);
       page.updateTupleMeta(metaData, rid);
     }
   }
@@ -79,7 +145,7 @@ public class TableHeap {
    */
   public Map<TupleMetaData, Tuple> getTuple(RecordId rid) {
     try (ReadPageGuard pageGuard = bufferPoolManager.readPage(rid.getPageId())) {
-      TablePage page = pageGuard.asMut(TablePage.class);
+      TablePage page = pageGuard.getDataAs(TablePage::new);
       return page.getTuple(rid);
     }
   }
@@ -93,7 +159,7 @@ public class TableHeap {
    */
   public TupleMetaData getTupleMetaData(RecordId rid) {
     try (ReadPageGuard pageGuard = bufferPoolManager.readPage(rid.getPageId())) {
-      TablePage page = pageGuard.asMut(TablePage.class);
+      TablePage page = pageGuard.getDataAs(TablePage::new);
       return page.getTupleMetaData(rid);
     }
   }
@@ -0,0 +1,93 @@
+package com.dbms.yadbms.storage.table;
+
+import static com.dbms.yadbms.common.utils.Constants.INVALID_PAGE_ID;
+
+import com.dbms.yadbms.buffer.BufferAccessStrategy;
+import com.dbms.yadbms.buffer.BufferPoolManager;
+import com.dbms.yadbms.config.PageId;
+import com.dbms.yadbms.storage.page.ReadPageGuard;
+import com.dbms.yadbms.storage.page.RecordId;
+import com.dbms.yadbms.storage.page.TablePage;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Sequential scan over a {@link TableHeap}. The iterator follows the page chain and, whenever it
+ * enters a page, asks the buffer pool to read the next pages ahead, so a scan over cold pages
+ * overlaps its disk reads instead of faulting one page at a time.
+ *
+ * <p>With an access strategy, pages are faulted and read ahead into the strategy's ring, and the
+ * read-ahead window is kept smaller than the ring so prefetched pages are not recycled before the
+ * scan reaches them.
+ *
+ * <p>Tuples inserted into a page after the scan has left it are not returned.
+ */
+public class TableIterator implements Iterator<RecordId> {
+  private final TableHeap tableHeap;
+
+  private final BufferPoolManager bufferPoolManager;
+
+  private final int readAhead;
+
+  private final BufferAccessStrategy strategy;
+
+  /** Page being scanned, or null once the chain is exhausted. */
+  private PageId pageId;
+
+  /** Index of the current page in chain order. */
+  private int position;
+
+  private int numTuples;
+
+  private int nextPageId;
+
+  private int slot;
+
+  /**
+   * @param tableHeap the heap to scan
+   * @param readAhead number of pages to read ahead of the scan; 0 disables read-ahead
+   * @param strategy ring the scan recycles, or null to use the shared pool
+   */
+  TableIterator(TableHeap tableHeap, int readAhead, BufferAccessStrategy strategy) {
+    this.tableHeap = tableHeap;
+    this.bufferPoolManager = tableHeap.getBufferPoolManager();
+    this.readAhead =
+        strategy == null ? readAhead : Math.min(readAhead, strategy.getRingSize() - 1);
+    this.strategy = strategy;
+    this.position = -1;
+    enterPage(tableHeap.firstPageId);
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (pageId != null && slot >= numTuples) {
+      enterPage(nextPageId == INVALID_PAGE_ID ? null : PageId.store(nextPageId));
+    }
+    return pageId != null;
+  }
+
+  @Override
+  public RecordId next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException("Table scan is exhausted");
+    }
+    return new RecordId(pageId, slot++);
+  }
+
+  private void enterPage(PageId next) {
+    pageId = next;
+    slot = 0;
+    if (next == null) {
+      return;
+    }
+    position++;
+    if (readAhead > 0) {
+      bufferPoolManager.prefetch(strategy, tableHeap.pagesAfter(position, readAhead));
+    }
+    try (ReadPageGuard guard = bufferPoolManager.readPage(next, strategy)) {
+      TablePage page = guard.getDataAs(TablePage::new);
+      numTuples = page.getNumTuples();
+      nextPageId = page.getNextPageId();
+    }
+  }
+}
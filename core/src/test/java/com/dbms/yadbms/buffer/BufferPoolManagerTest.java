@@ -0,0 +1,637 @@
+package com.dbms.yadbms.buffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.dbms.yadbms.buffer.replacer.ReplacerType;
+import com.dbms.yadbms.common.exceptions.DBException;
+import com.dbms.yadbms.config.BufferPoolConfig;
+import com.dbms.yadbms.config.PageId;
+import com.dbms.yadbms.storage.disk.DiskManager;
+import com.dbms.yadbms.storage.disk.StorageBackend;
+import com.dbms.yadbms.storage.page.ReadPageGuard;
+import com.dbms.yadbms.storage.page.WritePageGuard;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BufferPoolManagerTest {
+  private static final Path dbFilePath = Path.of("src/test/buffer_pool_test.db");
+  private static final Path logFilePath = Path.of("src/test/buffer_pool_test.log");
+  private static final Path warmupFilePath = Path.of("src/test/buffer_pool_test.warmup");
+
+  private DiskManager diskManager;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    Files.deleteIfExists(dbFilePath);
+    diskManager = new DiskManager(dbFilePath);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    diskManager.shutDown();
+    Files.deleteIfExists(dbFilePath);
+    Files.deleteIfExists(logFilePath);
+    Files.deleteIfExists(warmupFilePath);
+  }
+
+  @Test
+  void testPagesRoundTripThroughEviction() {
+    BufferPoolManager bpm = new BufferPoolManager(4, diskManager);
+    List<PageId> pageIds = writePages(bpm, 20);
+    assertPages(bpm, pageIds);
+  }
+
+  @Test
+  void testPartitionedPoolRoundTripThroughEviction() {
+    BufferPoolManager bpm = new BufferPoolManager(8, diskManager, 4);
+    assertEquals(4, bpm.getNumPartitions());
+
+    List<PageId> pageIds = writePages(bpm, 40);
+    assertPages(bpm, pageIds);
+  }
+
+  @Test
+  void testOffHeapPoolRoundTripThroughEviction() {
+    BufferPoolConfig config = BufferPoolConfig.builder().numPartitions(2).offHeap(true).build();
+    BufferPoolManager bpm = new BufferPoolManager(6, diskManager, config);
+
+    List<PageId> pageIds = writePages(bpm, 30);
+    assertPages(bpm, pageIds);
+  }
+
+  @Test
+  void testDirectIoPoolRoundTripThroughEviction() {
+    diskManager.shutDown();
+    diskManager = new DiskManager(dbFilePath, 0, StorageBackend.DIRECT);
+    BufferPoolManager bpm = new BufferPoolManager(6, diskManager, 2);
+
+    // Frames come from the aligned arena, so pages move without a bounce copy.
+    List<PageId> pageIds = writePages(bpm, 30);
+    assertPages(bpm, pageIds);
+    bpm.flushAllPages();
+    assertPages(bpm, pageIds);
+  }
+
+  @Test
+  void testPageCleanerWritesDirtyPagesAheadOfEviction() throws InterruptedException {
+    BufferPoolConfig config =
+        BufferPoolConfig.builder().cleanerWatermark(1.0).cleanerIntervalMillis(1).build();
+    BufferPoolManager bpm = new BufferPoolManager(8, diskManager, config);
+
+    // Fewer pages than frames: nothing is evicted, so only the cleaner can write them.
+    List<PageId> pageIds = writePages(bpm, 4);
+    long deadline = System.currentTimeMillis() + 10_000;
+    // A write counts once it reached the file; the cleaner marks the page clean after the fsync.
+    while ((diskManager.getNumWrites() < pageIds.size() || anyDirty(bpm, pageIds))
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(pageIds.size(), diskManager.getNumWrites());
+    assertFalse(anyDirty(bpm, pageIds));
+
+    List<PageId> more = writePages(bpm, 40);
+    assertPages(bpm, pageIds);
+    assertPages(bpm, more);
+    bpm.shutDown();
+  }
+
+  private static boolean anyDirty(BufferPoolManager bpm, List<PageId> pageIds) {
+    for (PageId pid : pageIds) {
+      try (ReadPageGuard guard = bpm.readPage(pid)) {
+        if (guard.isDirty()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Test
+  void testPrefetchLoadsColdPages() {
+    BufferPoolManager writer = new BufferPoolManager(8, diskManager, 2);
+    List<PageId> pageIds = writePages(writer, 40);
+    for (PageId pid : pageIds) {
+      try (WritePageGuard guard = writer.writePage(pid)) {
+        guard.flushPage();
+      }
+    }
+    writer.shutDown();
+
+    // A fresh pool starts cold; prefetch brings pages in without pinning them.
+    BufferPoolManager bpm = new BufferPoolManager(8, diskManager, 2);
+    PageId[] cold = pageIds.subList(0, 4).toArray(new PageId[0]);
+    assertEquals(4, bpm.prefetch(cold));
+    assertEquals(0, bpm.prefetch(cold), "resident or in-flight pages are not read twice");
+    assertPages(bpm, pageIds);
+  }
+
+  @Test
+  void testRingStrategyScanKeepsHotPagesResident() {
+    BufferPoolManager writer = new BufferPoolManager(8, diskManager);
+    List<PageId> cold = writePages(writer, 40);
+    for (PageId pid : cold) {
+      try (WritePageGuard guard = writer.writePage(pid)) {
+        guard.flushPage();
+      }
+    }
+    writer.shutDown();
+
+    BufferPoolManager bpm = new BufferPoolManager(16, diskManager);
+    List<PageId> hot = cold.subList(0, 4);
+    for (PageId pid : hot) {
+      try (WritePageGuard guard = bpm.writePage(pid)) {
+        guard.asMut(data -> data.putInt(4, 1)); // dirty: an eviction would write it back
+      }
+    }
+    long writes = diskManager.getNumWrites();
+
+    BufferAccessStrategy strategy = bpm.ringStrategy(4);
+    assertEquals(4, strategy.getRingSize());
+    for (PageId pid : cold.subList(4, cold.size())) {
+      try (ReadPageGuard guard = bpm.readPage(pid, strategy)) {
+        assertEquals(pid.getValue() * 7, (int) guard.getDataAs(data -> data.getInt(0)));
+      }
+    }
+    assertEquals(writes, diskManager.getNumWrites(), "the scan must not evict the hot pages");
+  }
+
+  @Test
+  void testEveryReplacerRoundTripsThroughEviction() {
+    for (ReplacerType type : ReplacerType.values()) {
+      BufferPoolConfig config = BufferPoolConfig.builder().numPartitions(2).replacer(type).build();
+      BufferPoolManager bpm = new BufferPoolManager(6, diskManager, config);
+
+      List<PageId> pageIds = writePages(bpm, 30);
+      assertPages(bpm, pageIds);
+      assertPages(bpm, pageIds);
+    }
+  }
+
+  @Test
+  void testMetricsCountHitsMissesAndEvictions() {
+    BufferPoolManager bpm = new BufferPoolManager(4, diskManager);
+    BufferPoolMetrics metrics = bpm.getMetrics();
+    assertEquals(4, metrics.getFreeFrames());
+
+    // Every write finds its new page resident; the last four pages stay in memory.
+    List<PageId> pageIds = writePages(bpm, 8);
+    assertEquals(8, metrics.getHits());
+    assertEquals(0, metrics.getMisses());
+    assertEquals(4, metrics.getDirtyEvictions());
+    assertEquals(0, metrics.getFreeFrames());
+
+    metrics.reset();
+    assertPages(bpm, pageIds);
+    assertEquals(8, metrics.getHits() + metrics.getMisses());
+    assertTrue(metrics.getMisses() >= 4);
+    assertEquals(metrics.getMisses(), metrics.getFaultLatency().getCount());
+    assertEquals(metrics.getMisses(), metrics.getEvictions());
+    assertEquals(metrics.getDirtyEvictions(), metrics.getFlushLatency().getCount());
+    assertTrue(metrics.getFaultLatency().getMax() > 0);
+    assertEquals(0, metrics.getPinnedFrames());
+
+    try (ReadPageGuard guard = bpm.readPage(pageIds.get(7))) {
+      assertEquals(1, metrics.getPinnedFrames());
+    }
+  }
+
+  @Test
+  void testPrewarmReloadsHottestSavedPages() throws Exception {
+    BufferPoolConfig config = BufferPoolConfig.builder().warmupFile(warmupFilePath).build();
+    BufferPoolManager first = new BufferPoolManager(8, diskManager, config);
+    writePages(first, 12);
+    List<PageId> resident = first.residentPages();
+    assertEquals(8, resident.size());
+    for (PageId pid : resident) {
+      try (WritePageGuard guard = first.writePage(pid)) {
+        guard.flushPage();
+      }
+    }
+    first.shutDown();
+    assertTrue(Files.exists(warmupFilePath));
+
+    // A smaller pool takes the hottest pages that fit, read in the background.
+    BufferPoolManager second = new BufferPoolManager(4, diskManager, config);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (second.residentPages().size() < 4 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(Set.copyOf(resident.subList(0, 4)), Set.copyOf(second.residentPages()));
+
+    assertPages(second, resident.subList(0, 4));
+    assertEquals(0, second.getMetrics().getMisses());
+    second.shutDown();
+  }
+
+  @Test
+  void testPrewarmAfterReopeningTheFile() throws Exception {
+    BufferPoolConfig config = BufferPoolConfig.builder().warmupFile(warmupFilePath).build();
+    BufferPoolManager first = new BufferPoolManager(8, diskManager, config);
+    writePages(first, 12);
+    List<PageId> resident = first.residentPages();
+    first.shutDown();
+
+    // A restarted process opens the file with a disk manager that has no page map yet.
+    diskManager.shutDown();
+    diskManager = new DiskManager(dbFilePath);
+    BufferPoolManager second = new BufferPoolManager(4, diskManager, config);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (second.residentPages().size() < 4 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(Set.copyOf(resident.subList(0, 4)), Set.copyOf(second.residentPages()));
+    second.shutDown();
+  }
+
+  @Test
+  void testResizeKeepsPagesAcrossGrowAndShrink() {
+    BufferPoolConfig config = BufferPoolConfig.builder().numPartitions(2).maxFrames(16).build();
+    BufferPoolManager bpm = new BufferPoolManager(4, diskManager, config);
+    List<PageId> pageIds = writePages(bpm, 20);
+
+    bpm.resize(16);
+    assertEquals(16, bpm.size());
+    assertEquals(12, bpm.getMetrics().getFreeFrames());
+    assertPages(bpm, pageIds);
+    assertEquals(16, bpm.residentPages().size());
+
+    // Shrinking writes the dirty pages of the retired frames back before dropping them.
+    bpm.resize(2);
+    assertEquals(2, bpm.residentPages().size());
+    assertPages(bpm, pageIds);
+
+    assertThrows(DBException.class, () -> bpm.resize(1));
+    assertThrows(DBException.class, () -> bpm.resize(17));
+  }
+
+  @Test
+  void testResizeUnderConcurrentReaders() throws Exception {
+    BufferPoolConfig config = BufferPoolConfig.builder().numPartitions(4).maxFrames(32).build();
+    BufferPoolManager bpm = new BufferPoolManager(16, diskManager, config);
+    List<PageId> pageIds = writePages(bpm, 48);
+
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      futures.add(
+          pool.submit(
+              () -> {
+                for (int round = 0; round < 5; round++) {
+                  assertPages(bpm, pageIds);
+                }
+              }));
+    }
+    for (int size : new int[] {32, 16, 24, 16, 20}) {
+      bpm.resize(size);
+    }
+    for (Future<?> f : futures) f.get(30, TimeUnit.SECONDS);
+    pool.shutdownNow();
+    assertPages(bpm, pageIds);
+  }
+
+  @Test
+  void testResidentFetchDoesNotAllocate() {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    BufferPoolManager bpm = new BufferPoolManager(16, diskManager, 4);
+    int[] pages = writePages(bpm, 16).stream().mapToInt(PageId::getValue).toArray();
+    fetchAll(bpm, pages, 20_000); // warm up the JIT and the spare guards
+
+    int rounds = 10_000;
+    long threadId = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(threadId);
+    long checksum = fetchAll(bpm, pages, rounds);
+    long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+    // Each round reads every page's stamp (id * 7) and every page id once more.
+    assertEquals((long) rounds * Arrays.stream(pages).asLongStream().sum() * 8, checksum);
+    // A fetch that allocated even one small object would account for megabytes here; the bound only
+    // leaves room for the odd JIT deoptimization materializing a few objects during the loop.
+    assertTrue(
+        allocated < 16 * 1024,
+        allocated + " bytes allocated by " + rounds * pages.length * 2 + " fetches");
+  }
+
+  @Test
+  void testClosingDroppedGuardLeavesLaterGuardsAlone() {
+    BufferPoolManager bpm = new BufferPoolManager(4, diskManager);
+    List<PageId> pageIds = writePages(bpm, 2);
+
+    // A dropped guard is not reused, so closing it again cannot release the next page fetched.
+    ReadPageGuard dropped = bpm.readPage(pageIds.get(0));
+    dropped.drop();
+    try (ReadPageGuard next = bpm.readPage(pageIds.get(1))) {
+      dropped.close();
+      assertEquals(1, bpm.getMetrics().getPinnedFrames());
+      assertEquals(pageIds.get(1), next.getPageId());
+    }
+
+    WritePageGuard droppedWrite = bpm.writePage(pageIds.get(0));
+    droppedWrite.drop();
+    try (WritePageGuard next = bpm.writePage(pageIds.get(1))) {
+      droppedWrite.close();
+      assertEquals(1, bpm.getMetrics().getPinnedFrames());
+      assertEquals(pageIds.get(1), next.getPageId());
+    }
+    assertEquals(0, bpm.getMetrics().getPinnedFrames());
+  }
+
+  @Test
+  void testFlushAllPagesWritesEveryDirtyPageOnce() {
+    BufferPoolManager bpm = new BufferPoolManager(16, diskManager, 2);
+    List<PageId> pageIds = writePages(bpm, 16);
+
+    long writes = diskManager.getNumWrites();
+    assertEquals(16, bpm.flushAllPages());
+    assertEquals(writes + 16, diskManager.getNumWrites());
+    assertEquals(0, bpm.flushAllPages(), "clean pages are not written again");
+
+    try (WritePageGuard guard = bpm.writePage(pageIds.get(3))) {
+      guard.asMut(data -> data.putInt(0, pageIds.get(3).getValue() * 7));
+    }
+    assertEquals(1, bpm.flushAllPages());
+    bpm.shutDown();
+
+    BufferPoolManager reopened = new BufferPoolManager(4, diskManager);
+    assertPages(reopened, pageIds);
+  }
+
+  @Test
+  void testCheckpointKeepsToTargetRate() {
+    BufferPoolManager bpm = new BufferPoolManager(16, diskManager);
+    writePages(bpm, 16);
+
+    // 16 pages at 10 pages per 100 ms take at least 160 ms.
+    long start = System.nanoTime();
+    assertEquals(16, bpm.checkpoint(100L * bpm.getPageSize()));
+    long elapsed = System.nanoTime() - start;
+    assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(150), "took " + elapsed + " ns");
+    assertThrows(DBException.class, () -> bpm.checkpoint(-1));
+  }
+
+  @Test
+  void testReadGuardUpgradesOnlyWhenSoleReader() throws Exception {
+    BufferPoolManager bpm = new BufferPoolManager(4, diskManager);
+    PageId pid = writePages(bpm, 1).get(0);
+
+    try (ReadPageGuard first = bpm.readPage(pid)) {
+      ReadPageGuard second = bpm.readPage(pid);
+      assertTrue(first.tryUpgrade().isEmpty(), "another reader holds the page");
+      second.drop();
+
+      Optional<WritePageGuard> upgraded = first.tryUpgrade();
+      assertTrue(upgraded.isPresent());
+      try (WritePageGuard guard = upgraded.get()) {
+        guard.asMut(data -> data.putInt(0, 42));
+        assertTrue(guard.isDirty());
+
+        // Readers wait for the upgraded latch like for any writer.
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Integer> reader =
+            pool.submit(
+                () -> {
+                  try (ReadPageGuard g = bpm.readPage(pid)) {
+                    return g.getDataAs(data -> data.getInt(0));
+                  }
+                });
+        Thread.sleep(50);
+        assertFalse(reader.isDone());
+        guard.drop();
+        assertEquals(42, reader.get(10, TimeUnit.SECONDS));
+        pool.shutdownNow();
+      }
+    } // closing the upgraded read guard again does nothing
+    assertEquals(0, bpm.getMetrics().getPinnedFrames());
+  }
+
+  @Test
+  void testOptimisticReadsNeverSeeTornPages() throws Exception {
+    BufferPoolManager bpm = new BufferPoolManager(8, diskManager, 2);
+    PageId pid = writePages(bpm, 1).get(0);
+    try (WritePageGuard guard = bpm.writePage(pid)) {
+      guard.asMut(data -> data.putInt(0, 0).putInt(bpm.getPageSize() - Integer.BYTES, 0));
+    }
+
+    // The writer keeps the first and last int of the page opposite; a torn read would not.
+    int rounds = 500;
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    Future<?> writer =
+        pool.submit(
+            () -> {
+              for (int i = 1; i <= rounds; i++) {
+                int value = i;
+                try (WritePageGuard guard = bpm.writePage(pid)) {
+                  guard.asMut(data -> data.putInt(0, value));
+                  Thread.yield();
+                  guard.asMut(data -> data.putInt(bpm.getPageSize() - Integer.BYTES, -value));
+                }
+              }
+            });
+    List<Future<?>> readers = new ArrayList<>();
+    for (int t = 0; t < 3; t++) {
+      readers.add(
+          pool.submit(
+              () -> {
+                while (!writer.isDone()) {
+                  int sum =
+                      bpm.readOptimistically(
+                          pid,
+                          data -> data.getInt(0) + data.getInt(data.capacity() - Integer.BYTES));
+                  assertEquals(0, sum);
+                }
+              }));
+    }
+    writer.get(60, TimeUnit.SECONDS);
+    for (Future<?> f : readers) f.get(60, TimeUnit.SECONDS);
+    pool.shutdownNow();
+    assertEquals(0, bpm.getMetrics().getPinnedFrames());
+  }
+
+  @Test
+  void testOptimisticReadsNeverSeeAnotherPageDuringEviction() throws Exception {
+    // Far more pages than frames, each stamped with its id at both ends. Writers keep dirtying
+    // them, so victims spend a while claimed but still named after their page during write-back.
+    // The pool has more frames than threads, so the fallback reads never find every frame pinned.
+    BufferPoolManager bpm = new BufferPoolManager(8, diskManager);
+    int last = bpm.getPageSize() - Integer.BYTES;
+    List<PageId> pageIds = new ArrayList<>();
+    for (int i = 0; i < 32; i++) {
+      PageId pid = bpm.newPage();
+      try (WritePageGuard guard = bpm.writePage(pid)) {
+        guard.asMut(data -> data.putInt(0, pid.getValue()).putInt(last, pid.getValue()));
+      }
+      pageIds.add(pid);
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(6);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 2; t++) {
+      int offset = t * 7;
+      futures.add(
+          pool.submit(
+              () -> {
+                for (int i = offset; System.nanoTime() < deadline; i++) {
+                  PageId pid = pageIds.get(i % pageIds.size());
+                  try (WritePageGuard guard = bpm.writePage(pid)) {
+                    guard.asMut(data -> data.putInt(0, pid.getValue()));
+                  }
+                }
+              }));
+    }
+    for (int t = 0; t < 4; t++) {
+      int offset = t * 3;
+      futures.add(
+          pool.submit(
+              () -> {
+                for (int i = offset; System.nanoTime() < deadline; i++) {
+                  PageId pid = pageIds.get(i % pageIds.size());
+                  // A slow reader, so a frame can be handed to another page half-way through.
+                  long seen =
+                      bpm.readOptimistically(
+                          pid,
+                          data -> {
+                            long first = data.getInt(0);
+                            LockSupport.parkNanos(20_000);
+                            return first << 32 | data.getInt(last);
+                          });
+                  long expected = (long) pid.getValue() << 32 | pid.getValue();
+                  assertEquals(expected, seen, "page " + pid + " read another page's bytes");
+                }
+              }));
+    }
+    for (Future<?> f : futures) f.get(30, TimeUnit.SECONDS);
+    pool.shutdownNow();
+    assertEquals(0, bpm.getMetrics().getPinnedFrames());
+  }
+
+  @Test
+  void testOptimisticReadFallsBackForColdPages() {
+    BufferPoolManager bpm = new BufferPoolManager(4, diskManager);
+    List<PageId> pageIds = writePages(bpm, 8); // the first pages were evicted
+
+    long misses = bpm.getMetrics().getMisses();
+    PageId cold = pageIds.get(0);
+    assertEquals(cold.getValue() * 7, (int) bpm.readOptimistically(cold, data -> data.getInt(0)));
+    assertEquals(misses + 1, bpm.getMetrics().getMisses());
+    assertEquals(cold.getValue() * 7, (int) bpm.readOptimistically(cold, data -> data.getInt(0)));
+    assertEquals(misses + 1, bpm.getMetrics().getMisses(), "now resident");
+
+    // A reader failing on a consistent page is not mistaken for a torn read.
+    assertThrows(
+        IndexOutOfBoundsException.class, () -> bpm.readOptimistically(cold, data -> data.get(-1)));
+  }
+
+  @Test
+  void testInvalidPartitionCount() {
+    assertThrows(DBException.class, () -> new BufferPoolManager(4, diskManager, 0));
+    assertThrows(DBException.class, () -> new BufferPoolManager(4, diskManager, 5));
+  }
+
+  @Test
+  void testConcurrentReadersAcrossPartitions() throws Exception {
+    BufferPoolManager bpm = new BufferPoolManager(32, diskManager, 8);
+    List<PageId> pageIds = writePages(bpm, 64);
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      futures.add(pool.submit(() -> assertPages(bpm, pageIds)));
+    }
+    for (Future<?> f : futures) f.get(30, TimeUnit.SECONDS);
+    pool.shutdownNow();
+  }
+
+  @Test
+  void testConcurrentMissesDoNotDuplicatePages() throws Exception {
+    // Four frames for eight pages: most accesses fault, often for the same page at once. A page
+    // loaded twice into two frames would lose increments.
+    BufferPoolManager bpm = new BufferPoolManager(4, diskManager);
+    List<PageId> pageIds = writePages(bpm, 8);
+
+    int threads = 4;
+    int rounds = 200;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      futures.add(
+          pool.submit(
+              () -> {
+                for (int r = 0; r < rounds; r++) {
+                  for (PageId pid : pageIds) {
+                    try (WritePageGuard guard = bpm.writePage(pid)) {
+                      guard.asMut(data -> data.putInt(0, data.getInt(0) + 1));
+                    }
+                  }
+                }
+              }));
+    }
+    for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+    pool.shutdownNow();
+
+    for (PageId pid : pageIds) {
+      try (ReadPageGuard guard = bpm.readPage(pid)) {
+        int expected = pid.getValue() * 7 + threads * rounds;
+        assertEquals(expected, (int) guard.getDataAs(data -> data.getInt(0)));
+      }
+    }
+  }
+
+  private static List<PageId> writePages(BufferPoolManager bpm, int count) {
+    List<PageId> pageIds = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      PageId pid = bpm.newPage();
+      try (WritePageGuard guard = bpm.writePage(pid)) {
+        guard.asMut(data -> data.putInt(0, pid.getValue() * 7));
+      }
+      pageIds.add(pid);
+    }
+    return pageIds;
+  }
+
+  /** Reads and writes every page {@code rounds} times; returns the sum of the page ids seen. */
+  private static long fetchAll(BufferPoolManager bpm, int[] pages, int rounds) {
+    long checksum = 0;
+    for (int r = 0; r < rounds; r++) {
+      for (int pageId : pages) {
+        try (ReadPageGuard guard = bpm.readPage(pageId)) {
+          checksum += guard.getData().getInt(0);
+        }
+        try (WritePageGuard guard = bpm.writePage(pageId)) {
+          checksum += guard.getPageId().getValue();
+        }
+      }
+    }
+    return checksum;
+  }
+
+  private static void assertPages(BufferPoolManager bpm, List<PageId> pageIds) {
+    for (PageId pid : pageIds) {
+      try (ReadPageGuard guard = bpm.readPage(pid)) {
+        assertEquals(pid.getValue() * 7, (int) guard.getDataAs(data -> data.getInt(0)));
+      }
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.dbms.yadbms.buffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PageTableTest {
+
+  @Test
+  void testPutGetRemove() {
+    PageTable table = new PageTable(4);
+    table.put(1, 10);
+    table.put(2, 20);
+    table.put(1, 11);
+
+    assertEquals(11, table.get(1));
+    assertEquals(20, table.get(2));
+    assertEquals(PageTable.NOT_FOUND, table.get(3));
+    assertEquals(2, table.size());
+
+    table.remove(1);
+    assertEquals(PageTable.NOT_FOUND, table.get(1));
+    assertEquals(20, table.get(2));
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  void testMatchesHashMapUnderRandomChurn() {
+    // Small key range with many removals exercises collision clusters and backward shifting.
+    PageTable table = new PageTable(8);
+    Map<Integer, Integer> expected = new HashMap<>();
+    Random random = new Random(7);
+
+    for (int i = 0; i < 100_000; i++) {
+      int pageId = random.nextInt(64);
+      if (random.nextBoolean()) {
+        table.put(pageId, i);
+        expected.put(pageId, i);
+      } else {
+        table.remove(pageId);
+        expected.remove(pageId);
+      }
+    }
+
+    for (int pageId = 0; pageId < 64; pageId++) {
+      assertEquals(expected.getOrDefault(pageId, PageTable.NOT_FOUND), table.get(pageId));
+    }
+    assertEquals(expected.size(), table.size());
+  }
+}
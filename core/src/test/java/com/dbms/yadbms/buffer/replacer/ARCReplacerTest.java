@@ -0,0 +1,80 @@
+package com.dbms.yadbms.buffer.replacer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dbms.yadbms.common.exceptions.DBException;
+import com.dbms.yadbms.config.FrameId;
+import com.dbms.yadbms.config.PageId;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class ARCReplacerTest {
+
+  private static void load(Replacer replacer, int frame, int page) {
+    replacer.recordAccess(FrameId.store(frame), PageId.store(page));
+    replacer.unPin(FrameId.store(frame));
+  }
+
+  @Test
+  void testGhostHitGrowsRecencySide() {
+    ARCReplacer replacer = new ARCReplacer(0, 4);
+    for (int i = 0; i < 4; i++) {
+      load(replacer, i, 100 + i);
+    }
+    // Page 100 is hit again and moves to T2; the rest stay in T1 and go first, oldest first.
+    replacer.recordAccess(FrameId.store(0), PageId.store(100));
+    assertEquals(Optional.of(FrameId.store(1)), replacer.victim());
+
+    // Page 101 comes back while remembered in B1: it goes straight to T2 and T1's target grows.
+    load(replacer, 1, 101);
+    assertEquals(Optional.of(FrameId.store(2)), replacer.victim());
+
+    // A scan of new pages only ever recycles T1 frames; the reused pages stay resident.
+    int free = 2;
+    for (int page = 200; page < 220; page++) {
+      load(replacer, free, page);
+      free = replacer.victim().orElseThrow().getValue();
+      assertTrue(free == 2 || free == 3, "evicted a reused page from frame " + free);
+    }
+    assertEquals(3, replacer.size());
+  }
+
+  @Test
+  void testPinnedFramesFallBackToOtherList() {
+    ARCReplacer replacer = new ARCReplacer(0, 2);
+    load(replacer, 0, 1);
+    load(replacer, 1, 2);
+    replacer.recordAccess(FrameId.store(1), PageId.store(2));
+    replacer.pin(FrameId.store(0));
+
+    // T1 only holds a pinned frame, so the victim comes from T2.
+    assertEquals(Optional.of(FrameId.store(1)), replacer.victim());
+    assertTrue(replacer.victim().isEmpty());
+
+    replacer.remove(FrameId.store(0));
+    assertEquals(0, replacer.size());
+    assertThrows(DBException.class, () -> replacer.unPin(FrameId.store(0)));
+    assertThrows(DBException.class, () -> replacer.recordAccess(FrameId.store(2)));
+  }
+
+  @Test
+  void testReinstatedVictimLeavesNoGhost() {
+    ARCReplacer replacer = new ARCReplacer(0, 4);
+    for (int i = 0; i < 4; i++) {
+      load(replacer, i, 100 + i);
+    }
+    // The pool could not claim the victim, so it goes back to the front of T1 as if never evicted.
+    assertEquals(Optional.of(FrameId.store(0)), replacer.victim());
+    replacer.reinstate(FrameId.store(0), PageId.store(100));
+    assertEquals(3, replacer.size(), "back in T1, still pinned");
+
+    // Reloaded later, page 100 is not a ghost hit: it stays in T1 and the target stays at 0.
+    replacer.remove(FrameId.store(0));
+    load(replacer, 0, 100);
+    for (int frame : new int[] {1, 2, 3, 0}) {
+      assertEquals(Optional.of(FrameId.store(frame)), replacer.victim());
+    }
+  }
+}
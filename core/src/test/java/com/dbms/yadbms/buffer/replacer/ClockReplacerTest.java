@@ -0,0 +1,59 @@
+package com.dbms.yadbms.buffer.replacer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dbms.yadbms.common.exceptions.DBException;
+import com.dbms.yadbms.config.FrameId;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class ClockReplacerTest {
+
+  @Test
+  void testSecondChance() {
+    ClockReplacer replacer = new ClockReplacer(10, 4);
+    for (int i = 10; i < 14; i++) {
+      replacer.recordAccess(FrameId.store(i));
+      replacer.unPin(FrameId.store(i));
+    }
+    assertEquals(4, replacer.size());
+
+    // The first sweep clears every reference bit and comes back to frame 10.
+    assertEquals(Optional.of(FrameId.store(10)), replacer.victim());
+
+    // Frame 11 is referenced again, so the hand passes it over once more.
+    replacer.recordAccess(FrameId.store(11));
+    assertEquals(Optional.of(FrameId.store(12)), replacer.victim());
+    assertEquals(Optional.of(FrameId.store(13)), replacer.victim());
+    assertEquals(Optional.of(FrameId.store(11)), replacer.victim());
+    assertTrue(replacer.victim().isEmpty());
+    assertEquals(0, replacer.size());
+  }
+
+  @Test
+  void testPinnedAndRemovedFramesAreNotEvicted() {
+    ClockReplacer replacer = new ClockReplacer(0, 3);
+    for (int i = 0; i < 3; i++) {
+      replacer.recordAccess(FrameId.store(i));
+      replacer.unPin(FrameId.store(i));
+    }
+    replacer.pin(FrameId.store(0));
+    replacer.remove(FrameId.store(1));
+    assertEquals(1, replacer.size());
+
+    assertEquals(Optional.of(FrameId.store(2)), replacer.victim());
+    assertTrue(replacer.victim().isEmpty());
+
+    replacer.unPin(FrameId.store(0));
+    assertEquals(Optional.of(FrameId.store(0)), replacer.victim());
+  }
+
+  @Test
+  void testUnknownFrames() {
+    ClockReplacer replacer = new ClockReplacer(0, 2);
+    assertThrows(DBException.class, () -> replacer.pin(FrameId.store(1)));
+    assertThrows(DBException.class, () -> replacer.recordAccess(FrameId.store(2)));
+  }
+}
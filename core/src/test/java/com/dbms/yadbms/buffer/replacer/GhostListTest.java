@@ -0,0 +1,65 @@
+package com.dbms.yadbms.buffer.replacer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class GhostListTest {
+
+  @Test
+  void testFullListDropsOldest() {
+    GhostList ghosts = new GhostList(3);
+    ghosts.addNewest(1);
+    ghosts.addNewest(2);
+    ghosts.addNewest(3);
+    ghosts.addNewest(4);
+
+    assertEquals(3, ghosts.size());
+    assertFalse(ghosts.contains(1));
+    assertTrue(ghosts.remove(3));
+    assertFalse(ghosts.remove(3));
+
+    ghosts.removeOldest();
+    assertFalse(ghosts.contains(2));
+    assertTrue(ghosts.contains(4));
+    assertEquals(1, ghosts.size());
+  }
+
+  @Test
+  void testMatchesLinkedHashSetUnderRandomChurn() {
+    // Small key range with many removals exercises collision clusters and slot reuse.
+    GhostList ghosts = new GhostList(16);
+    LinkedHashSet<Integer> expected = new LinkedHashSet<>();
+    Random random = new Random(7);
+
+    for (int i = 0; i < 100_000; i++) {
+      int pageId = random.nextInt(64);
+      switch (random.nextInt(3)) {
+        case 0:
+          ghosts.addNewest(pageId);
+          expected.remove(pageId);
+          expected.add(pageId);
+          if (expected.size() > 16) {
+            expected.remove(expected.iterator().next());
+          }
+          break;
+        case 1:
+          assertEquals(expected.remove(pageId), ghosts.remove(pageId));
+          break;
+        default:
+          ghosts.removeOldest();
+          if (!expected.isEmpty()) {
+            expected.remove(expected.iterator().next());
+          }
+      }
+      assertEquals(expected.size(), ghosts.size());
+    }
+    for (int pageId = 0; pageId < 64; pageId++) {
+      assertEquals(expected.contains(pageId), ghosts.contains(pageId), "page " + pageId);
+    }
+  }
+}
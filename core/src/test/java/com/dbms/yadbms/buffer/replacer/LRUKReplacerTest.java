@@ -0,0 +1,97 @@
+package com.dbms.yadbms.buffer.replacer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dbms.yadbms.common.exceptions.DBException;
+import com.dbms.yadbms.config.FrameId;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class LRUKReplacerTest {
+
+  @Test
+  void testEvictionOrder() {
+    LRUKReplacer replacer = new LRUKReplacer(0, 7, 2);
+
+    for (int i = 1; i <= 6; i++) {
+      replacer.recordAccess(frame(i));
+    }
+    for (int i = 1; i <= 5; i++) {
+      replacer.unPin(frame(i));
+    }
+    assertEquals(5, replacer.size());
+
+    // Frame 1 now has two accesses; the others have an infinite K-distance and go first.
+    replacer.recordAccess(frame(1));
+    assertEquals(Optional.of(frame(2)), replacer.victim());
+    assertEquals(Optional.of(frame(3)), replacer.victim());
+    assertEquals(Optional.of(frame(4)), replacer.victim());
+    assertEquals(2, replacer.size());
+
+    // Frame 3 comes back with one access, frame 4 with two, frame 5 gets its second.
+    replacer.recordAccess(frame(3));
+    replacer.recordAccess(frame(4));
+    replacer.recordAccess(frame(5));
+    replacer.recordAccess(frame(4));
+    replacer.unPin(frame(3));
+    replacer.unPin(frame(4));
+    assertEquals(4, replacer.size());
+    assertEquals(Optional.of(frame(3)), replacer.victim());
+
+    replacer.unPin(frame(6));
+    assertEquals(Optional.of(frame(6)), replacer.victim());
+
+    // Of the frames with two accesses, frame 5's second most recent access is the oldest.
+    replacer.pin(frame(1));
+    assertEquals(Optional.of(frame(5)), replacer.victim());
+
+    replacer.recordAccess(frame(1));
+    replacer.recordAccess(frame(1));
+    replacer.unPin(frame(1));
+    assertEquals(Optional.of(frame(4)), replacer.victim());
+    assertEquals(Optional.of(frame(1)), replacer.victim());
+    assertTrue(replacer.victim().isEmpty());
+    assertEquals(0, replacer.size());
+  }
+
+  @Test
+  void testRemoveAndFrameRange() {
+    LRUKReplacer replacer = new LRUKReplacer(100, 3, 2);
+    replacer.recordAccess(frame(100));
+    replacer.recordAccess(frame(101));
+    replacer.unPin(frame(100));
+    replacer.unPin(frame(101));
+
+    replacer.remove(frame(100));
+    assertEquals(1, replacer.size());
+    assertThrows(DBException.class, () -> replacer.pin(frame(100)));
+    assertThrows(DBException.class, () -> replacer.recordAccess(frame(99)));
+    assertEquals(Optional.of(frame(101)), replacer.victim());
+  }
+
+  @Test
+  void testLargePool() {
+    int n = 100_000;
+    LRUKReplacer replacer = new LRUKReplacer(0, n, 2);
+    for (int i = 0; i < n; i++) {
+      replacer.recordAccess(frame(i));
+      replacer.unPin(frame(i));
+    }
+    // Give the even frames a second access; the odd ones keep an infinite distance.
+    for (int i = 0; i < n; i += 2) {
+      replacer.recordAccess(frame(i));
+    }
+    for (int i = 1; i < n; i += 2) {
+      assertEquals(Optional.of(frame(i)), replacer.victim());
+    }
+    for (int i = 0; i < n; i += 2) {
+      assertEquals(Optional.of(frame(i)), replacer.victim());
+    }
+  }
+
+  private static FrameId frame(int id) {
+    return FrameId.store(id);
+  }
+}
@@ -0,0 +1,60 @@
+package com.dbms.yadbms.buffer.replacer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dbms.yadbms.config.FrameId;
+import com.dbms.yadbms.config.PageId;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class TwoQReplacerTest {
+
+  private static void load(Replacer replacer, int frame, int page) {
+    replacer.recordAccess(FrameId.store(frame), PageId.store(page));
+    replacer.unPin(FrameId.store(frame));
+  }
+
+  @Test
+  void testPageReloadedFromGhostQueueIsKept() {
+    TwoQReplacer replacer = new TwoQReplacer(0, 8);
+    for (int i = 0; i < 8; i++) {
+      load(replacer, i, 100 + i);
+    }
+    // Everything is in A1in, which is over its quarter of the frames, so it is evicted FIFO.
+    assertEquals(Optional.of(FrameId.store(0)), replacer.victim());
+
+    // Page 100 comes back while remembered in A1out and goes to Am.
+    load(replacer, 0, 100);
+
+    // Re-referencing a page still in A1in does not promote it.
+    replacer.recordAccess(FrameId.store(1), PageId.store(101));
+
+    for (int frame = 1; frame <= 5; frame++) {
+      assertEquals(Optional.of(FrameId.store(frame)), replacer.victim());
+    }
+    // A1in is down to its share: now Am gives up its least recently used page.
+    assertEquals(Optional.of(FrameId.store(0)), replacer.victim());
+    assertEquals(Optional.of(FrameId.store(6)), replacer.victim());
+    assertEquals(Optional.of(FrameId.store(7)), replacer.victim());
+    assertTrue(replacer.victim().isEmpty());
+  }
+
+  @Test
+  void testReinstatedVictimLeavesNoGhost() {
+    TwoQReplacer replacer = new TwoQReplacer(0, 8);
+    for (int i = 0; i < 8; i++) {
+      load(replacer, i, 100 + i);
+    }
+    assertEquals(Optional.of(FrameId.store(0)), replacer.victim());
+    replacer.reinstate(FrameId.store(0), PageId.store(100));
+    assertEquals(7, replacer.size(), "back in A1in, still pinned");
+    replacer.remove(FrameId.store(0));
+
+    // Page 100 was taken out of A1out again, so reloading it does not send it to Am.
+    load(replacer, 0, 100);
+    for (int frame : new int[] {1, 2, 3, 4, 5, 6, 7, 0}) {
+      assertEquals(Optional.of(FrameId.store(frame)), replacer.victim());
+    }
+  }
+}
@@ -2,12 +2,26 @@ package com.dbms.yadbms.storage.disk;
 
 import static com.dbms.yadbms.common.utils.Constants.PAGE_SIZE;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.dbms.yadbms.common.exceptions.DBException;
+import com.dbms.yadbms.common.exceptions.ErrorType;
 import com.dbms.yadbms.config.PageId;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -64,4 +78,284 @@ class DiskManagerTest {
     diskManager.readPage(page5, buf);
     assertArrayEquals(data, buf, "Page 5 data should match after write and read");
   }
+
+  @Test
+  void testReadWriteDirectBuffer() {
+    ByteBuffer out = ByteBuffer.allocateDirect(PAGE_SIZE);
+    for (int i = 0; i < PAGE_SIZE; i += Integer.BYTES) {
+      out.putInt(i, i);
+    }
+
+    PageId page3 = PageId.store(3);
+    diskManager.writePage(page3, out);
+
+    ByteBuffer in = ByteBuffer.allocateDirect(PAGE_SIZE);
+    diskManager.readPage(page3, in);
+    assertEquals(out, in, "Direct buffer contents should match after write and read");
+  }
+
+  @Test
+  void testWriteAndReadPagesInBatch() {
+    // Pages 20..27 are new, so their slots follow the order given; page 3 sits apart from them.
+    int[] ids = {22, 20, 21, 3, 23, 27, 24, 26, 25};
+    List<PageId> pageIds = new ArrayList<>();
+    List<ByteBuffer> buffers = new ArrayList<>();
+    for (int id : ids) {
+      ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+      page.putInt(0, id).putInt(PAGE_SIZE - Integer.BYTES, -id);
+      pageIds.add(PageId.store(id));
+      buffers.add(page);
+    }
+    long writes = diskManager.getNumWrites();
+    diskManager.writePages(pageIds, buffers);
+    diskManager.sync();
+    assertEquals(writes + ids.length, diskManager.getNumWrites());
+
+    ByteBuffer in = ByteBuffer.allocate(PAGE_SIZE);
+    for (int id : ids) {
+      diskManager.readPage(PageId.store(id), in);
+      assertEquals(id, in.getInt(0));
+      assertEquals(-id, in.getInt(PAGE_SIZE - Integer.BYTES));
+    }
+
+    List<ByteBuffer> read = new ArrayList<>();
+    for (int i = 0; i < ids.length; i++) {
+      read.add(ByteBuffer.allocate(PAGE_SIZE));
+    }
+    diskManager.readPages(pageIds, read);
+    for (int i = 0; i < ids.length; i++) {
+      assertEquals(ids[i], read.get(i).getInt(0));
+      assertEquals(-ids[i], read.get(i).getInt(PAGE_SIZE - Integer.BYTES));
+    }
+  }
+
+  @Test
+  void testConcurrentPageWritesAndReads() throws Exception {
+    int threads = 8;
+    int pagesPerThread = 32;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int first = 30_000 + t * pagesPerThread;
+      futures.add(
+          pool.submit(
+              () -> {
+                byte[] data = new byte[PAGE_SIZE];
+                byte[] buf = new byte[PAGE_SIZE];
+                for (int p = first; p < first + pagesPerThread; p++) {
+                  Arrays.fill(data, (byte) p);
+                  diskManager.writePage(PageId.store(p), data);
+                  diskManager.readPage(PageId.store(p), buf);
+                  assertArrayEquals(data, buf);
+                }
+              }));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+
+    // Every page got a slot of its own.
+    byte[] buf = new byte[PAGE_SIZE];
+    for (int p = 30_000; p < 30_000 + threads * pagesPerThread; p++) {
+      diskManager.readPage(PageId.store(p), buf);
+      assertEquals((byte) p, buf[0]);
+      assertEquals((byte) p, buf[PAGE_SIZE - 1]);
+    }
+  }
+
+  @Test
+  void testConcurrentLogWritesAreAllDurable() throws Exception {
+    Path path = Path.of("src/test/group_commit_test.db");
+    Path logPath = Path.of("src/test/group_commit_test.log");
+    Files.deleteIfExists(path);
+    Files.deleteIfExists(logPath);
+    DiskManager logged = new DiskManager(path);
+    int threads = 8;
+    int entries = 50;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      byte[] entry = new byte[16];
+      Arrays.fill(entry, (byte) ('a' + t));
+      futures.add(
+          pool.submit(
+              () -> {
+                for (int i = 0; i < entries; i++) {
+                  logged.writeLog(entry, entry.length);
+                }
+              }));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+      // Every entry is whole, and no append was forced more than once.
+      assertEquals((long) threads * entries * 16, Files.size(logPath));
+      byte[] entry = new byte[16];
+      for (int i = 0; i < threads * entries; i++) {
+        assertTrue(logged.readLog(entry, entry.length, i * entry.length));
+        for (byte b : entry) {
+          assertEquals(entry[0], b);
+        }
+      }
+      long forces = logged.getNumFlushes();
+      assertTrue(forces >= 1 && forces <= threads * entries, forces + " log forces");
+    } finally {
+      pool.shutdownNow();
+      logged.shutDown();
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(logPath);
+    }
+  }
+
+  @Test
+  void testMappedBackendRoundTrip() throws IOException {
+    Path path = Path.of("src/test/mapped_test.db");
+    Path logPath = Path.of("src/test/mapped_test.log");
+    Files.deleteIfExists(path);
+    try {
+      DiskManager mapped = new DiskManager(path, 0, StorageBackend.MMAP);
+      assertEquals(StorageBackend.MMAP, mapped.getBackend());
+      List<PageId> pageIds = new ArrayList<>();
+      List<ByteBuffer> buffers = new ArrayList<>();
+      for (int id = 0; id < 8; id++) {
+        byte[] data = new byte[PAGE_SIZE];
+        Arrays.fill(data, (byte) (id + 1));
+        if (id < 4) {
+          mapped.writePage(PageId.store(id), data);
+        } else {
+          pageIds.add(PageId.store(id));
+          buffers.add(ByteBuffer.wrap(data));
+        }
+      }
+      mapped.writePages(pageIds, buffers);
+      mapped.sync();
+
+      byte[] buf = new byte[PAGE_SIZE];
+      for (int id = 0; id < 8; id++) {
+        mapped.readPage(PageId.store(id), buf);
+        assertEquals(id + 1, buf[0]);
+        assertEquals(id + 1, buf[PAGE_SIZE - 1]);
+      }
+      mapped.shutDown();
+
+      // What was synced through the mapping is in the file for the channel backend too; page 0
+      // was the first page written, so it has the first slot.
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        ByteBuffer first = ByteBuffer.allocate(PAGE_SIZE);
+        channel.read(first, DiskManager.FILE_HEADER_SIZE);
+        assertEquals(1, first.get(0));
+        assertEquals(1, first.get(PAGE_SIZE - 1));
+      }
+    } finally {
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(logPath);
+    }
+  }
+
+  @Test
+  void testMappedBackendKeepsFileWhenCapacityGrows() throws IOException {
+    Path path = Path.of("src/test/mapped_grow_test.db");
+    Path logPath = Path.of("src/test/mapped_grow_test.log");
+    Files.deleteIfExists(path);
+    try {
+      DiskManager mapped = new DiskManager(path, 0, StorageBackend.MMAP);
+      // Past the initial capacity, so allocation doubles it while the first segment is mapped.
+      byte[] data = new byte[PAGE_SIZE];
+      for (int id = 0; id < 40; id++) {
+        Arrays.fill(data, (byte) (id + 1));
+        mapped.writePage(PageId.store(id), data);
+      }
+      assertTrue(Files.size(path) >= MappedPageStore.DEFAULT_SEGMENT_SIZE, "file was shrunk");
+
+      byte[] buf = new byte[PAGE_SIZE];
+      for (int id = 0; id < 40; id++) {
+        mapped.readPage(PageId.store(id), buf);
+        assertEquals(id + 1, buf[PAGE_SIZE - 1]);
+      }
+      mapped.shutDown();
+    } finally {
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(logPath);
+    }
+  }
+
+  @Test
+  void testDirectBackendRoundTrip() throws IOException {
+    Path path = Path.of("src/test/direct_test.db");
+    Path logPath = Path.of("src/test/direct_test.log");
+    Files.deleteIfExists(path);
+    try {
+      DiskManager direct = new DiskManager(path, 0, StorageBackend.DIRECT);
+      // Heap arrays, an unaligned direct buffer and an aligned one all make it through.
+      byte[] heap = new byte[PAGE_SIZE];
+      Arrays.fill(heap, (byte) 1);
+      direct.writePage(PageId.store(0), heap);
+      ByteBuffer unaligned = ByteBuffer.allocateDirect(PAGE_SIZE + 1).position(1).slice();
+      unaligned.put(0, (byte) 2).put(PAGE_SIZE - 1, (byte) 2);
+      direct.writePage(PageId.store(1), unaligned);
+      ByteBuffer aligned = ByteBuffer.allocateDirect(2 * PAGE_SIZE).alignedSlice(PAGE_SIZE);
+      aligned.put(0, (byte) 3).put(PAGE_SIZE - 1, (byte) 3);
+      direct.writePages(List.of(PageId.store(2)), List.of(aligned));
+      direct.sync();
+
+      List<ByteBuffer> read =
+          List.of(
+              ByteBuffer.allocate(PAGE_SIZE),
+              ByteBuffer.allocateDirect(PAGE_SIZE + 1).position(1).slice(),
+              ByteBuffer.allocateDirect(2 * PAGE_SIZE).alignedSlice(PAGE_SIZE));
+      direct.readPages(List.of(PageId.store(0), PageId.store(1), PageId.store(2)), read);
+      for (int i = 0; i < 3; i++) {
+        assertEquals(i + 1, read.get(i).get(0));
+        assertEquals(i + 1, read.get(i).get(PAGE_SIZE - 1));
+      }
+      direct.shutDown();
+
+      // A page size below the block size cannot be read or written directly.
+      Files.delete(path);
+      assertThrows(DBException.class, () -> new DiskManager(path, 1024, StorageBackend.DIRECT));
+    } finally {
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(logPath);
+    }
+  }
+
+  @Test
+  void testPageSizeIsRecordedInFileHeader() throws IOException {
+    Path path = Path.of("src/test/page_size_test.db");
+    Files.deleteIfExists(path);
+    try {
+      DiskManager large = new DiskManager(path, 16 * 1024);
+      assertEquals(16 * 1024, large.getPageSize());
+      byte[] data = new byte[16 * 1024];
+      Arrays.fill(data, (byte) 7);
+      large.writePage(PageId.store(1), data);
+      assertThrows(DBException.class, () -> large.writePage(PageId.store(2), new byte[PAGE_SIZE]));
+      large.shutDown();
+
+      DiskManager reopened = new DiskManager(path);
+      assertEquals(16 * 1024, reopened.getPageSize());
+      reopened.shutDown();
+
+      assertThrows(DBException.class, () -> new DiskManager(path, PAGE_SIZE));
+      assertThrows(DBException.class, () -> new DiskManager(Path.of("src/test/bad.db"), 5000));
+
+      // A file from before headers existed keeps its first page instead of getting a header.
+      byte[] legacy = new byte[PAGE_SIZE];
+      Arrays.fill(legacy, (byte) 3);
+      Files.write(path, legacy);
+      DBException refused = assertThrows(DBException.class, () -> new DiskManager(path));
+      assertEquals(ErrorType.CONFIGURATION_ERROR.getCode(), refused.getErrorCode());
+      assertArrayEquals(legacy, Files.readAllBytes(path));
+    } finally {
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(Path.of("src/test/page_size_test.log"));
+      Files.deleteIfExists(Path.of("src/test/bad.db"));
+      Files.deleteIfExists(Path.of("src/test/bad.log"));
+    }
+  }
 }
@@ -1,11 +1,13 @@
 package com.dbms.yadbms.storage.disk;
 
 import static com.dbms.yadbms.common.utils.Constants.PAGE_SIZE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.dbms.yadbms.config.PageId;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -111,6 +113,141 @@ public class DiskSchedulerTest {
     }
   }
 
+  @Test
+  void testWritesQueuedTogetherShareOneFsync() throws Exception {
+    // A generous delay lets the whole burst join the first write's batch.
+    DiskScheduler grouped = new DiskScheduler(diskManager, 1, 64, 200_000);
+    try {
+      long syncs = diskManager.getNumSyncs();
+      List<CompletableFuture<Boolean>> callbacks = scheduleWrites(grouped, 20_000, 32);
+      for (CompletableFuture<Boolean> callback : callbacks) {
+        assertTrue(callback.get(10, TimeUnit.SECONDS));
+      }
+      long used = diskManager.getNumSyncs() - syncs;
+      assertTrue(used >= 1 && used <= 2, "32 writes took " + used + " fsyncs");
+    } finally {
+      grouped.shutDown();
+    }
+  }
+
+  @Test
+  void testFullBatchIsSyncedWithoutWaitingForTheDelay() throws Exception {
+    DiskScheduler grouped = new DiskScheduler(diskManager, 1, 4, TimeUnit.MINUTES.toMicros(1));
+    try {
+      long syncs = diskManager.getNumSyncs();
+      List<CompletableFuture<Boolean>> callbacks = scheduleWrites(grouped, 20_100, 8);
+      for (CompletableFuture<Boolean> callback : callbacks) {
+        assertTrue(callback.get(10, TimeUnit.SECONDS));
+      }
+      assertEquals(2, diskManager.getNumSyncs() - syncs);
+    } finally {
+      grouped.shutDown();
+    }
+  }
+
+  @Test
+  void testRequestsForOnePageKeepTheirOrderAcrossWorkers() throws Exception {
+    DiskScheduler pooled = new DiskScheduler(diskManager, 4, 64, 0);
+    try {
+      // Each page is written over and read back many times; every read must see the write
+      // scheduled just before it, even though the pages are spread over the workers.
+      int pages = 16;
+      int rounds = 20;
+      List<DiskRequest> reads = new ArrayList<>();
+      for (int round = 0; round < rounds; round++) {
+        for (int p = 0; p < pages; p++) {
+          byte[] data = new byte[PAGE_SIZE];
+          Arrays.fill(data, (byte) round);
+          pooled.schedule(
+              DiskRequest.builder()
+                  .isWrite(true)
+                  .data(data)
+                  .pageId(PageId.store(20_200 + p))
+                  .callback(new CompletableFuture<>())
+                  .build());
+          DiskRequest read =
+              DiskRequest.builder()
+                  .isWrite(false)
+                  .data(new byte[PAGE_SIZE])
+                  .pageId(PageId.store(20_200 + p))
+                  .callback(new CompletableFuture<>())
+                  .build();
+          pooled.schedule(read);
+          reads.add(read);
+        }
+      }
+      for (int i = 0; i < reads.size(); i++) {
+        DiskRequest read = reads.get(i);
+        assertTrue(read.getCallback().get(10, TimeUnit.SECONDS));
+        byte[] expected = new byte[PAGE_SIZE];
+        Arrays.fill(expected, (byte) (i / pages));
+        assertArrayEquals(expected, read.getData(), "stale read of page " + read.getPageId());
+      }
+    } finally {
+      pooled.shutDown();
+    }
+  }
+
+  @Test
+  void testAdjacentRequestsAreServedTogether() throws Exception {
+    // One worker with a long delay: the writes queue up behind the first and go out as a run.
+    DiskScheduler grouped = new DiskScheduler(diskManager, 1, 64, 200_000);
+    try {
+      List<CompletableFuture<Boolean>> callbacks = new ArrayList<>();
+      for (int p = 20_400; p < 20_432; p++) {
+        ByteBuffer page = ByteBuffer.allocateDirect(PAGE_SIZE);
+        page.putInt(0, p);
+        DiskRequest write =
+            DiskRequest.builder()
+                .isWrite(true)
+                .buffer(page)
+                .pageId(PageId.store(p))
+                .callback(new CompletableFuture<>())
+                .build();
+        grouped.schedule(write);
+        callbacks.add(write.getCallback());
+      }
+      List<DiskRequest> reads = new ArrayList<>();
+      for (int p = 20_400; p < 20_432; p++) {
+        DiskRequest read =
+            DiskRequest.builder()
+                .isWrite(false)
+                .buffer(ByteBuffer.allocateDirect(PAGE_SIZE))
+                .pageId(PageId.store(p))
+                .callback(new CompletableFuture<>())
+                .build();
+        grouped.schedule(read);
+        reads.add(read);
+      }
+      for (CompletableFuture<Boolean> callback : callbacks) {
+        assertTrue(callback.get(10, TimeUnit.SECONDS));
+      }
+      for (DiskRequest read : reads) {
+        assertTrue(read.getCallback().get(10, TimeUnit.SECONDS));
+        assertEquals(read.getPageId().getValue(), read.getBuffer().getInt(0));
+      }
+    } finally {
+      grouped.shutDown();
+    }
+  }
+
+  private static List<CompletableFuture<Boolean>> scheduleWrites(
+      DiskScheduler scheduler, int firstPage, int count) {
+    List<CompletableFuture<Boolean>> callbacks = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      DiskRequest request =
+          DiskRequest.builder()
+              .isWrite(true)
+              .data(new byte[PAGE_SIZE])
+              .pageId(PageId.store(firstPage + i))
+              .callback(new CompletableFuture<>())
+              .build();
+      scheduler.schedule(request);
+      callbacks.add(request.getCallback());
+    }
+    return callbacks;
+  }
+
   @Test
   void testDiskSchedulerFailedReadRequest() {
     DiskRequest request =
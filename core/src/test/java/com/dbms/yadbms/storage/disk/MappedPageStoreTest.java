@@ -0,0 +1,64 @@
+package com.dbms.yadbms.storage.disk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+
+class MappedPageStoreTest {
+  private static final Path path = Path.of("src/test/mapped_store_test.db");
+
+  @Test
+  void testPagesSpanningSegmentsRoundTrip() throws IOException {
+    Files.deleteIfExists(path);
+    try (FileChannel channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // Segments of 10000 bytes: most 4096 byte pages straddle a segment boundary.
+      MappedPageStore store = new MappedPageStore(channel, 10_000);
+      ByteBuffer[] run = new ByteBuffer[6];
+      for (int i = 0; i < run.length; i++) {
+        run[i] = ByteBuffer.allocate(4096);
+        for (int b = 0; b < 4096; b += Integer.BYTES) {
+          run[i].putInt(b, i * 4096 + b);
+        }
+      }
+      store.writeRun(100, run);
+      ByteBuffer single = ByteBuffer.allocateDirect(4096);
+      single.putInt(0, -1).putInt(4092, -2);
+      store.write(100 + 6 * 4096, single);
+      store.force();
+      assertEquals(30_000, channel.size(), "the file grows by whole segments");
+
+      ByteBuffer[] back = new ByteBuffer[6];
+      for (int i = 0; i < back.length; i++) {
+        back[i] = ByteBuffer.allocate(4096);
+      }
+      store.readRun(100, back);
+      for (int i = 0; i < back.length; i++) {
+        for (int b = 0; b < 4096; b += Integer.BYTES) {
+          assertEquals(i * 4096 + b, back[i].getInt(b));
+        }
+      }
+
+      // The channel sees the same bytes, and reads past the end of the file come back short
+      // without growing it.
+      ByteBuffer last = ByteBuffer.allocate(4096);
+      channel.read(last, 100 + 6 * 4096);
+      assertEquals(-1, last.getInt(0));
+      assertEquals(-2, last.getInt(4092));
+      ByteBuffer beyond = ByteBuffer.allocate(4096);
+      assertEquals(0, store.read(1_000_000, beyond));
+      ByteBuffer straddling = ByteBuffer.allocate(4096);
+      assertEquals(1000, store.read(29_000, straddling));
+      assertEquals(30_000, channel.size());
+    } finally {
+      Files.deleteIfExists(path);
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package com.dbms.yadbms.storage.index;
+
+import static com.dbms.yadbms.common.utils.Constants.PAGE_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dbms.yadbms.buffer.BufferPoolManager;
+import com.dbms.yadbms.config.PageId;
+import com.dbms.yadbms.storage.disk.DiskManager;
+import com.dbms.yadbms.storage.page.BPlusTreeLeafPage;
+import com.dbms.yadbms.storage.page.BPlusTreePage;
+import com.dbms.yadbms.storage.page.ReadPageGuard;
+import com.dbms.yadbms.storage.page.RecordId;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BPlusTreeTest {
+  private static final Path dbFilePath = Path.of("src/test/bplus_tree_test.db");
+  private static final Path logFilePath = Path.of("src/test/bplus_tree_test.log");
+
+  private DiskManager diskManager;
+  private BufferPoolManager bufferPoolManager;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    Files.deleteIfExists(dbFilePath);
+    diskManager = new DiskManager(dbFilePath);
+    bufferPoolManager = new BufferPoolManager(64, diskManager);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    diskManager.shutDown();
+    Files.deleteIfExists(dbFilePath);
+    Files.deleteIfExists(logFilePath);
+  }
+
+  @Test
+  void testInsertAndLookupWithSmallNodes() {
+    BPlusTree<Integer> tree = newTree(4, 4);
+
+    List<Integer> keys = shuffledKeys(200);
+    for (int key : keys) {
+      assertTrue(tree.insert(key, rid(key)));
+    }
+    assertFalse(tree.insert(keys.get(0), rid(0)), "duplicate keys are rejected");
+
+    List<RecordId> out = new ArrayList<>();
+    for (int key = 0; key < 200; key++) {
+      assertTrue(tree.getValue(key, out), "missing key " + key);
+      assertEquals(rid(key), out.get(0));
+    }
+    assertFalse(tree.getValue(1_000, out));
+  }
+
+  @Test
+  void testFanoutFollowsPageSize() {
+    BPlusTree<Integer> tree =
+        new BPlusTree<>(
+            "idx",
+            bufferPoolManager.newPage(),
+            bufferPoolManager,
+            new IntegerKeySerializer(),
+            Comparator.naturalOrder());
+
+    for (int key = 0; key < 300; key++) {
+      tree.insert(key, rid(key));
+    }
+
+    try (ReadPageGuard guard = bufferPoolManager.readPage(tree.getRootPageId())) {
+      assertTrue(guard.getDataAs(BPlusTreePage::new).isLeafPage(), "300 keys fit in one leaf");
+      BPlusTreeLeafPage<Integer, RecordId> root =
+          guard.getDataAs(
+              data -> new BPlusTreeLeafPage<>(data, new IntegerKeySerializer(), Integer::compare));
+      assertEquals(300, root.getSize());
+      assertTrue(root.getMaxSize() >= 300);
+    }
+  }
+
+  @Test
+  void testLargerPagesGiveLargerNodes() throws IOException {
+    Path largeDbPath = Path.of("src/test/bplus_tree_large_test.db");
+    Files.deleteIfExists(largeDbPath);
+    DiskManager largeDisk = new DiskManager(largeDbPath, 16 * 1024);
+    try {
+      BufferPoolManager largePool = new BufferPoolManager(16, largeDisk);
+      BPlusTree<Integer> tree =
+          new BPlusTree<>(
+              "idx",
+              largePool.newPage(),
+              largePool,
+              new IntegerKeySerializer(),
+              Comparator.naturalOrder());
+
+      int keys = BPlusTreeLeafPage.slotCount(PAGE_SIZE, Integer.BYTES) * 2;
+      for (int key = 0; key < keys; key++) {
+        tree.insert(key, rid(key));
+      }
+      try (ReadPageGuard guard = largePool.readPage(tree.getRootPageId())) {
+        assertTrue(guard.getDataAs(BPlusTreePage::new).isLeafPage(), "one 16 KB leaf holds all");
+      }
+      largePool.shutDown();
+    } finally {
+      largeDisk.shutDown();
+      Files.deleteIfExists(largeDbPath);
+      Files.deleteIfExists(Path.of("src/test/bplus_tree_large_test.log"));
+    }
+  }
+
+  @Test
+  void testRemove() {
+    BPlusTree<Integer> tree = newTree(8, 8);
+    for (int key : shuffledKeys(50)) {
+      tree.insert(key, rid(key));
+    }
+
+    List<RecordId> out = new ArrayList<>();
+    tree.remove(17);
+    assertFalse(tree.getValue(17, out));
+    assertTrue(tree.getValue(18, out));
+  }
+
+  @Test
+  void testCheckpointDuringInsertsAndRemoves() throws Exception {
+    // Splits and underflows latch the header and parents while holding a leaf; a checkpoint
+    // latching pages in file order must never wait on one of them while holding another.
+    BPlusTree<Integer> tree = newTree(4, 4);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> writer =
+          pool.submit(
+              () -> {
+                List<Integer> keys = shuffledKeys(400);
+                for (int round = 0; System.nanoTime() < deadline; round++) {
+                  for (int key : keys) {
+                    tree.insert(key, rid(key));
+                  }
+                  for (int key : keys.subList(0, 200 + round % 100)) {
+                    tree.remove(key);
+                  }
+                }
+                for (int key : keys) {
+                  tree.insert(key, rid(key));
+                }
+              });
+      Future<?> checkpointer =
+          pool.submit(
+              () -> {
+                while (System.nanoTime() < deadline) {
+                  bufferPoolManager.checkpoint(0);
+                }
+              });
+      writer.get(30, TimeUnit.SECONDS);
+      checkpointer.get(30, TimeUnit.SECONDS);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    List<RecordId> out = new ArrayList<>();
+    for (int key = 0; key < 400; key++) {
+      assertTrue(tree.getValue(key, out), "missing key " + key);
+    }
+    bufferPoolManager.checkpoint(0);
+    assertEquals(0, bufferPoolManager.checkpoint(0), "everything was written");
+  }
+
+  private BPlusTree<Integer> newTree(int leafMaxSize, int internalMaxSize) {
+    return new BPlusTree<>(
+        "idx",
+        bufferPoolManager.newPage(),
+        bufferPoolManager,
+        new IntegerKeySerializer(),
+        Comparator.naturalOrder(),
+        leafMaxSize,
+        internalMaxSize);
+  }
+
+  private static List<Integer> shuffledKeys(int n) {
+    List<Integer> keys = new ArrayList<>();
+    for (int i = 0; i < n; i++) keys.add(i);
+    Collections.shuffle(keys, new Random(42));
+    return keys;
+  }
+
+  private static RecordId rid(int key) {
+    return new RecordId(PageId.store(key / 10), key % 10);
+  }
+}
@@ -0,0 +1,119 @@
+package com.dbms.yadbms.storage.table;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dbms.yadbms.buffer.BufferPoolManager;
+import com.dbms.yadbms.catalog.Column;
+import com.dbms.yadbms.catalog.Schema;
+import com.dbms.yadbms.storage.disk.DiskManager;
+import com.dbms.yadbms.storage.page.RecordId;
+import com.dbms.yadbms.type.TypeId;
+import com.dbms.yadbms.type.Value;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TableHeapTest {
+  private static final Path dbFilePath = Path.of("src/test/table_heap_test.db");
+  private static final Path logFilePath = Path.of("src/test/table_heap_test.log");
+
+  private final Schema schema =
+      new Schema(List.of(new Column("id", TypeId.INTEGER), new Column("val", TypeId.BIGINT)));
+
+  private DiskManager diskManager;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    Files.deleteIfExists(dbFilePath);
+    diskManager = new DiskManager(dbFilePath);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    diskManager.shutDown();
+    Files.deleteIfExists(dbFilePath);
+    Files.deleteIfExists(logFilePath);
+  }
+
+  @Test
+  void testInsertAndGetTupleAcrossPages() {
+    TableHeap heap = new TableHeap(new BufferPoolManager(16, diskManager));
+
+    List<RecordId> rids = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      rids.add(heap.insertTuple(new TupleMetaData(i, false), row(i)).orElseThrow());
+    }
+    assertNotEquals(
+        rids.get(0).getPageId(), rids.get(499).getPageId(), "500 rows should span pages");
+
+    for (int i = 0; i < rids.size(); i++) {
+      Map.Entry<TupleMetaData, Tuple> entry =
+          heap.getTuple(rids.get(i)).entrySet().iterator().next();
+      assertEquals(i, entry.getKey().getTs());
+      assertFalse(entry.getKey().isDeleted());
+      assertEquals(i, entry.getValue().getValue(schema, 0).asInt());
+      assertEquals(i * 10L, entry.getValue().getValue(schema, 1).asBigInt());
+    }
+  }
+
+  @Test
+  void testDirtyPagesSurviveEviction() {
+    // Two frames: every new page pushes an older, dirty one out to disk.
+    TableHeap heap = new TableHeap(new BufferPoolManager(2, diskManager));
+
+    List<RecordId> rids = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      rids.add(heap.insertTuple(new TupleMetaData(i, false), row(i)).orElseThrow());
+    }
+
+    for (int i = 0; i < rids.size(); i += 37) {
+      Tuple t = heap.getTuple(rids.get(i)).values().iterator().next();
+      assertEquals(i, t.getValue(schema, 0).asInt());
+    }
+  }
+
+  @Test
+  void testIteratorScansAllTuplesInOrder() {
+    // Few frames, many pages: the scan reads ahead into frames it keeps recycling.
+    TableHeap heap = new TableHeap(new BufferPoolManager(12, diskManager));
+
+    List<RecordId> rids = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      rids.add(heap.insertTuple(new TupleMetaData(i, false), row(i)).orElseThrow());
+    }
+
+    List<RecordId> scanned = new ArrayList<>();
+    TableIterator it = heap.makeIterator();
+    while (it.hasNext()) {
+      scanned.add(it.next());
+    }
+    assertEquals(rids, scanned);
+    assertFalse(it.hasNext());
+  }
+
+  @Test
+  void testUpdateTupleMetaData() {
+    TableHeap heap = new TableHeap(new BufferPoolManager(4, diskManager));
+    RecordId rid = heap.insertTuple(new TupleMetaData(7, false), row(7)).orElseThrow();
+
+    heap.updateTupleMetaData(new TupleMetaData(8, true), rid);
+
+    TupleMetaData meta = heap.getTupleMetaData(rid);
+    assertEquals(8, meta.getTs());
+    assertTrue(meta.isDeleted());
+  }
+
+  private Tuple row(int i) {
+    return new Tuple(
+        List.of(new Value(TypeId.INTEGER, i), new Value(TypeId.BIGINT, i * 10L)), schema);
+  }
+}